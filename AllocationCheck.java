@@ -0,0 +1,79 @@
+import java.lang.management.ManagementFactory;
+import java.util.*;
+
+/**
+ * Checks how many bytes a step allocates, the churn that MemoryFootprint
+ * does not see: it counts what a field keeps, this counts what a step
+ * throws away. A seeded world of each side is run until the population
+ * settles, then the bytes the stepping thread allocates over a number of
+ * steps are read from the JVM and divided by the steps and the animals.
+ * Exits with status 1 if any world exceeds the budget, so a Location,
+ * list or iterator made per animal shows up as a failed check.
+ *
+ * Phases are run on the stepping thread, so every allocation of a step is
+ * counted. Needs a JVM that measures allocation per thread, as HotSpot
+ * does.
+ *
+ * Usage: java AllocationCheck [side ...]
+ */
+public class AllocationCheck {
+
+    // The most bytes a step may allocate per animal. In steady state a
+    // step allocates a few: the animals born while the pool has none
+    // spare, and lists that grow as the population shifts.
+    private static final double BUDGET = 16;
+    private static final int WARM_UP_STEPS = 20;
+    private static final int MEASURED_STEPS = 20;
+
+    /**
+     * Run a seeded world of the given side and check its bytes per step.
+     * @return The failure, one line; empty if the budget is met.
+     */
+    public static String checkBudget(int side)
+    {
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().threadId();
+        Simulator simulator = new Simulator(side, side, 1111, Simulator.DEFAULT_DENSITIES, false);
+        for(int step = 0; step < WARM_UP_STEPS; step++) {
+            simulator.simulateOneStep();
+        }
+        long animals = 0;
+        long before = threads.getThreadAllocatedBytes(thread);
+        for(int step = 0; step < MEASURED_STEPS; step++) {
+            simulator.simulateOneStep();
+            animals += simulator.getField().getAnimals().size();
+        }
+        long bytes = threads.getThreadAllocatedBytes(thread) - before;
+        double perStep = bytes / (double) MEASURED_STEPS;
+        double perAnimal = bytes / (double) Math.max(animals, 1);
+        System.out.printf(Locale.ROOT, "Side %d: %.0f bytes per step, %.2f per animal%n", side, perStep, perAnimal);
+        if(perAnimal > BUDGET) {
+            return String.format(Locale.ROOT, "side %d: %.2f bytes per animal per step, budget %.2f%n",
+                                 side, perAnimal, BUDGET);
+        }
+        return "";
+    }
+
+    public static void main(String[] args)
+    {
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if(!threads.isThreadAllocatedMemorySupported()) {
+            System.out.println("This JVM does not measure allocation per thread.");
+            System.exit(1);
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+        int[] sides = args.length > 0 ? Arrays.stream(args).mapToInt(Integer::parseInt).toArray()
+                                       : new int[] { 130, 400, 1000 };
+        StringBuilder failures = new StringBuilder();
+        for(int side : sides) {
+            failures.append(checkBudget(side));
+        }
+        if(failures.length() > 0) {
+            System.out.print(failures);
+            System.exit(1);
+        }
+        System.out.println("All budgets met.");
+    }
+}
@@ -1,15 +1,19 @@
 
 import java.util.*;
 
-public abstract class Animal {
+public abstract class Animal implements FieldEntity, Cloneable {
 
     private boolean alive;
     private Location location;
+    // Where the animal was when it died, so its cell can be cleared before
+    // it is recycled.
+    private Location deathLocation;
     private static final double DISEASE_PROBABILITY = 0.07;
     private static final double CONTAGIOUS_PROBABILITY = 0.03;
-    private Random rand = new Random();
+    private static final Random rand = Randomizer.getRandom();
     private Disease disease;
     private int infectedSince;
+    private int slot = -1;
 
     public Animal(Location location)
     {
@@ -18,43 +22,194 @@ public abstract class Animal {
     }
     
     abstract public void act(Field currentField, Field nextFieldState);
+
+    /**
+     * Set the species-specific state of a newly born animal.
+     * @param randomAge Whether to give it a random age instead of zero.
+     */
+    abstract protected void initState(boolean randomAge);
+
+    /**
+     * Bring a dead animal back as a newborn at the given location, as if
+     * it had just been constructed, so that it can be reused from a pool.
+     */
+    protected void revive(Location location)
+    {
+        alive = true;
+        this.location = location;
+        deathLocation = null;
+        disease = null;
+        infectedSince = 0;
+        slot = -1;
+        initState(false);
+    }
+
+    abstract public int getAge();
+
+    abstract public int getFoodLevel();
+
+    /**
+     * Overwrite the age and food level, e.g. for an animal that was
+     * transferred from another process.
+     */
+    abstract protected void restoreState(int age, int foodLevel);
     
+    /**
+     * @return An animal in the same state, for a branch of the simulation.
+     *         Every field of an animal is a value, so a shallow copy is a
+     *         full one; it is not yet in any list.
+     */
+    public Animal copy()
+    {
+        try {
+            Animal copy = (Animal) clone();
+            copy.slot = -1;
+            return copy;
+        }
+        catch(CloneNotSupportedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
     public boolean isAlive()
     {
         return alive;
     }
 
-    protected void setDead()
+    protected void setDead(DeathCause cause)
     {
+        if(alive) {
+            Heatmaps heatmaps = Heatmaps.active();
+            if(heatmaps != null && location != null) {
+                heatmaps.recordDeath(cause, location);
+            }
+            EventBus events = EventBus.active();
+            if(events != null) {
+                events.publish(EventType.DEATH, Species.of(this), cause.ordinal(), location);
+            }
+            deathLocation = location;
+        }
         alive = false;
         location = null;
     }
     
+    /**
+     * Count a birth at the given location in the heatmaps and events, if
+     * recording.
+     */
+    protected void recordBirth(Location location)
+    {
+        Heatmaps heatmaps = Heatmaps.active();
+        if(heatmaps != null) {
+            heatmaps.recordBirth(location);
+        }
+        EventBus events = EventBus.active();
+        if(events != null) {
+            events.publish(EventType.BIRTH, Species.of(this), 0, location);
+        }
+    }
+
+    /**
+     * Kill and eat another animal.
+     * @param prey The animal eaten.
+     * @param location Where it was.
+     */
+    protected void kill(Animal prey, Location location)
+    {
+        recordMeal(Species.of(prey), location);
+        prey.setDead(DeathCause.PREDATION);
+    }
+
+    /**
+     * Publish that this animal ate something, if recording events.
+     */
+    protected void recordMeal(Species food, Location location)
+    {
+        EventBus events = EventBus.active();
+        if(events != null) {
+            events.publish(EventType.KILL, Species.of(this), food.ordinal(), location);
+        }
+    }
+
     public Location getLocation()
     {
         return location;
     }
+
+    /**
+     * @return Where the animal died, or null if it is alive or died
+     *         without a location.
+     */
+    public Location getDeathLocation()
+    {
+        return deathLocation;
+    }
     
     protected void setLocation(Location location)
     {
         this.location = location;
     }
 
+    @Override
+    public int getSlot()
+    {
+        return slot;
+    }
+
+    @Override
+    public void setSlot(int slot)
+    {
+        this.slot = slot;
+    }
+
+    /**
+     * Look further than the adjacent cells for food and pick the free
+     * location that brings this animal closest to the nearest one.
+     * @param currentField The field to search.
+     * @param freeLocations Free locations to move to; the chosen one is removed.
+     * @param radius How far away the animal can sense food. A radius of 1
+     *               means adjacent cells only, which the caller's own
+     *               food search already covers, so it disables this one.
+     * @param food The species this animal eats.
+     * @return The location to move to, or null if no food is in range.
+     */
+    protected Location huntToward(Field currentField, List<Location> freeLocations, int radius, Species... food)
+    {
+        if(radius <= 1 || freeLocations.isEmpty()) {
+            return null;
+        }
+        Location target = currentField.findNearest(getLocation(), radius, food);
+        if(target == null) {
+            return null;
+        }
+        Location best = null;
+        int bestDistance = Integer.MAX_VALUE;
+        for(Location loc : freeLocations) {
+            int distance = currentField.distance(loc, target);
+            if(distance < bestDistance) {
+                bestDistance = distance;
+                best = loc;
+            }
+        }
+        freeLocations.remove(best);
+        return best;
+    }
+
     protected boolean isDiseased() {
         return disease!=null;
     }
 
     protected void disease(){
         if (!isDiseased() && (rand.nextDouble() <= DISEASE_PROBABILITY)){
-            disease = new Disease();
+            disease = Disease.INSTANCE;
         }
     }
 
     protected void spreadDisease(Field field){
         if(isDiseased()) {
             List<Location> adjacent = field.getAdjacentLocations(getLocation());
-            for (Location loc : adjacent) {
-                Animal animal = field.getAnimalAt(loc);
+            for (int i = 0; i < adjacent.size(); i++) {
+                Animal animal = field.getAnimalAt(adjacent.get(i));
                 if(animal!=null && this.getClass().equals(animal.getClass())) {
                     if (rand.nextDouble() <= CONTAGIOUS_PROBABILITY ) {
                         animal.passDisease();
@@ -65,12 +220,18 @@ public abstract class Animal {
     }
 
     protected void passDisease() {
-        this.disease = new Disease();
+        if(!isDiseased()) {
+            EventBus events = EventBus.active();
+            if(events != null) {
+                events.publish(EventType.INFECTION, Species.of(this), 0, location);
+            }
+        }
+        this.disease = Disease.INSTANCE;
     }
 
     protected void diseaseDeath(){
         if (disease.diseaseExpired(this) && disease.animalDemise()){
-            setDead();
+            setDead(DeathCause.DISEASE);
         }
         else {
             disease = null;
@@ -82,6 +243,11 @@ public abstract class Animal {
         return infectedSince;
     }
 
+    protected void restoreDisease(boolean diseased, int infectedSince){
+        this.disease = diseased ? Disease.INSTANCE : null;
+        this.infectedSince = infectedSince;
+    }
+
     public void incrementDisease(){
         infectedSince++;
     }
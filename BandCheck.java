@@ -0,0 +1,71 @@
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Checks that a run split into bands by BandCoordinator goes through the
+ * same states as a single-process Simulator run with the same seed and
+ * dimensions, by comparing the state hash after every step. Each worker
+ * count is checked separately.
+ *
+ * Prints the first step where the hashes differ and exits with status 1
+ * if there is one.
+ *
+ * Usage: java BandCheck [steps [depth width [seed [workers...]]]]
+ */
+public class BandCheck {
+
+    private BandCheck()
+    {
+    }
+
+    /**
+     * Run both engines.
+     * @return The first difference, or empty if the runs agree.
+     */
+    public static String check(int workers, int steps, int depth, int width, long seed)
+        throws IOException, InterruptedException
+    {
+        Simulator simulator = new Simulator(depth, width, seed, Simulator.DEFAULT_DENSITIES, false);
+        simulator.simulate(steps);
+        BandCoordinator coordinator = new BandCoordinator(workers, depth, width, seed);
+        coordinator.setReporting(false);
+        coordinator.simulate(steps);
+        List<Long> expected = simulator.getHashHistory();
+        List<Long> actual = coordinator.getHashHistory();
+        for(int step = 0; step < Math.min(expected.size(), actual.size()); step++) {
+            if(!expected.get(step).equals(actual.get(step))) {
+                return String.format(Locale.ROOT, "%d workers: step %d has hash %016x, the single process %016x%n",
+                                     workers, step, actual.get(step), expected.get(step));
+            }
+        }
+        if(expected.size() != actual.size()) {
+            return String.format(Locale.ROOT, "%d workers: ran %d steps, the single process %d%n",
+                                 workers, actual.size() - 1, expected.size() - 1);
+        }
+        return "";
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException
+    {
+        int steps = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int depth = args.length > 1 ? Integer.parseInt(args[1]) : 130;
+        int width = args.length > 2 ? Integer.parseInt(args[2]) : 130;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 1111;
+        List<Integer> counts = new ArrayList<>();
+        for(int i = 4; i < args.length; i++) {
+            counts.add(Integer.parseInt(args[i]));
+        }
+        if(counts.isEmpty()) {
+            counts = List.of(1, 2, 3);
+        }
+        StringBuilder failures = new StringBuilder();
+        for(int workers : counts) {
+            failures.append(check(workers, steps, depth, width, seed));
+        }
+        if(!failures.isEmpty()) {
+            System.out.print(failures);
+            System.exit(1);
+        }
+        System.out.println("Banded runs with " + counts + " workers match the single process for " + steps + " steps.");
+    }
+}
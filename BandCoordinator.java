@@ -0,0 +1,249 @@
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Runs a simulation split across several worker JVMs on this machine.
+ * The field is divided into horizontal bands of whole strips of rows,
+ * one per BandWorker. The coordinator decides the global events of each
+ * step (earthquakes and deforestation) and the seeds of the population
+ * and of every step from generators seeded as Simulator seeds its own,
+ * relays the changes and halos the bands exchange between the phases of
+ * a step, routes entities that crossed a band border to their new owner,
+ * and sums the workers' census to decide viability.
+ *
+ * A run gives the same states as a single-process Simulator run with the
+ * same seed and dimensions, whatever the number of workers; BandCheck
+ * compares the two.
+ *
+ * Usage: java BandCoordinator workers steps [depth width seed]
+ */
+public class BandCoordinator {
+
+    private final int workers, depth, width;
+    // The earthquakes, as Simulator's own generator.
+    private final Random rand;
+    // The seeds of the population and of each step, as Simulator's
+    // shared generator.
+    private final Random seeds;
+    private boolean reporting = true;
+    // The XOR of the bands' state hashes after each step; index 0 is the
+    // populated field.
+    private final List<Long> hashHistory = new ArrayList<>();
+
+    public BandCoordinator(int workers, int depth, int width, long seed)
+    {
+        int strips = BandProtocol.strips(depth);
+        if(workers < 1 || workers > strips) {
+            throw new IllegalArgumentException("Need between 1 and " + strips + " workers, got " + workers);
+        }
+        this.workers = workers;
+        this.depth = depth;
+        this.width = width;
+        this.rand = new Random(seed);
+        this.seeds = new Random(seed);
+    }
+
+    /**
+     * Print the census after every step and the earthquakes, as a visual
+     * Simulator does; on by default.
+     */
+    public void setReporting(boolean reporting)
+    {
+        this.reporting = reporting;
+    }
+
+    /**
+     * @return The field's state hash after each step of the last run,
+     *         starting with the initial population at index 0.
+     */
+    public List<Long> getHashHistory()
+    {
+        return Collections.unmodifiableList(hashHistory);
+    }
+
+    /**
+     * Start the workers and run up to numSteps steps, stopping early if
+     * the ecosystem is no longer viable.
+     * @return The number of steps run.
+     */
+    public int simulate(int numSteps) throws IOException, InterruptedException
+    {
+        hashHistory.clear();
+        long populationSeed = seeds.nextLong();
+        List<Process> processes = new ArrayList<>();
+        DataInputStream[] in = new DataInputStream[workers];
+        DataOutputStream[] out = new DataOutputStream[workers];
+        try(ServerSocket server = new ServerSocket(0, workers, InetAddress.getLoopbackAddress())) {
+            String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+            for(int band = 0; band < workers; band++) {
+                processes.add(new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                                                 "BandWorker", String.valueOf(server.getLocalPort()),
+                                                 String.valueOf(band), String.valueOf(workers),
+                                                 String.valueOf(depth), String.valueOf(width),
+                                                 String.valueOf(populationSeed))
+                              .inheritIO().start());
+            }
+            int[] census = new int[BandProtocol.CENSUS_SIZE];
+            long hash = 0;
+            for(int i = 0; i < workers; i++) {
+                Socket socket = server.accept();
+                socket.setTcpNoDelay(true);
+                DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                int band = input.readInt();
+                in[band] = input;
+                out[band] = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                add(census, BandProtocol.readCensus(input));
+                hash ^= input.readLong();
+            }
+            hashHistory.add(hash);
+            report(0, census);
+
+            int step = 0;
+            boolean viable = isViable(census);
+            int currentDepth = depth, currentWidth = width;
+            while(step < numSteps && viable) {
+                step++;
+                if(step % Simulator.DEFORESTATION_INTERVAL == 0) {
+                    // Mirrors Field.triggerDeforestation.
+                    if(currentDepth > 2 && currentWidth > 2) {
+                        currentDepth--;
+                        currentWidth--;
+                    }
+                }
+                boolean quake = rand.nextDouble() < Simulator.EARTHQUAKE_CREATION_PROBABILITY;
+                int quakeRow = quake ? rand.nextInt(currentDepth) : 0;
+                int quakeCol = quake ? rand.nextInt(currentWidth) : 0;
+                long stepSeed = seeds.nextLong();
+                for(DataOutputStream o : out) {
+                    o.writeInt(BandProtocol.STEP);
+                    o.writeInt(step);
+                    o.writeLong(stepSeed);
+                    o.writeBoolean(quake);
+                    if(quake) {
+                        o.writeInt(quakeRow);
+                        o.writeInt(quakeCol);
+                    }
+                    o.flush();
+                }
+                if(quake && reporting) {
+                    System.out.println("--------Earthquake triggered at step " + step + ". At location: "
+                                       + quakeRow + ", " + quakeCol);
+                }
+
+                for(int sync = 0; sync < BandProtocol.SYNCS_PER_STEP; sync++) {
+                    relay(in, out, BandProtocol::readChanges, BandProtocol::writeChanges, List.of());
+                    relay(in, out, BandProtocol::readHalo, BandProtocol::writeHalo, BandProtocol.NO_HALO);
+                }
+                exchangeMigrants(in, out);
+                census = new int[BandProtocol.CENSUS_SIZE];
+                hash = 0;
+                for(DataInputStream input : in) {
+                    add(census, BandProtocol.readCensus(input));
+                    hash ^= input.readLong();
+                }
+                hashHistory.add(hash);
+                report(step, census);
+                viable = isViable(census);
+            }
+            for(DataOutputStream o : out) {
+                o.writeInt(BandProtocol.STOP);
+                o.flush();
+            }
+            for(Process process : processes) {
+                process.waitFor();
+            }
+            return step;
+        }
+        finally {
+            for(Process process : processes) {
+                process.destroy();
+            }
+        }
+    }
+
+    /**
+     * Pass each band's two messages of a kind on to its neighbours: the
+     * first goes to the band above, the second to the band below.
+     * @param none What a band at the top or bottom gets from beyond it.
+     */
+    private <T> void relay(DataInputStream[] in, DataOutputStream[] out, BandProtocol.Reader<T> reader,
+                           BandProtocol.Writer<T> writer, T none) throws IOException
+    {
+        List<T> ups = new ArrayList<>();
+        List<T> downs = new ArrayList<>();
+        for(DataInputStream input : in) {
+            ups.add(reader.read(input));
+            downs.add(reader.read(input));
+        }
+        for(int band = 0; band < workers; band++) {
+            writer.write(out[band], band > 0 ? downs.get(band - 1) : none);
+            writer.write(out[band], band < workers - 1 ? ups.get(band + 1) : none);
+            out[band].flush();
+        }
+    }
+
+    /**
+     * Route the entities each band placed outside its rows to the bands
+     * that own them.
+     */
+    private void exchangeMigrants(DataInputStream[] in, DataOutputStream[] out) throws IOException
+    {
+        List<List<BandProtocol.EntityRecord>> arrivals = new ArrayList<>();
+        for(int band = 0; band < workers; band++) {
+            arrivals.add(new ArrayList<>());
+        }
+        for(DataInputStream input : in) {
+            for(BandProtocol.EntityRecord record : BandProtocol.readRecords(input)) {
+                arrivals.get(BandProtocol.bandOf(record.row(), workers, depth)).add(record);
+            }
+        }
+        for(int band = 0; band < workers; band++) {
+            BandProtocol.writeRecords(out[band], arrivals.get(band));
+            out[band].flush();
+        }
+    }
+
+    private static void add(int[] total, int[] census)
+    {
+        for(int i = 0; i < total.length; i++) {
+            total[i] += census[i];
+        }
+    }
+
+    private static boolean isViable(int[] census)
+    {
+        for(int count : census) {
+            if(count == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void report(int step, int[] census)
+    {
+        if(!reporting) {
+            return;
+        }
+        System.out.println("Step " + step +
+                           " Mice: " + census[0] +
+                           " Owls: " + census[1] +
+                           " Cats: " + census[2] +
+                           " Wolves: " + census[3] +
+                           " Deers: " + census[4]);
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException
+    {
+        int workers = Integer.parseInt(args[0]);
+        int steps = Integer.parseInt(args[1]);
+        int depth = args.length > 2 ? Integer.parseInt(args[2]) : 130;
+        int width = args.length > 3 ? Integer.parseInt(args[3]) : 130;
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : 1111;
+        new BandCoordinator(workers, depth, width, seed).simulate(steps);
+    }
+}
@@ -0,0 +1,288 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Wire format shared by BandCoordinator and BandWorker.
+ * Entities travel as fixed-size primitive records; lists of records are
+ * prefixed with their length.
+ */
+public class BandProtocol {
+
+    // Commands sent by the coordinator at the start of each step.
+    public static final int STEP = 1;
+    public static final int STOP = 2;
+
+    // The number of species counted in a census.
+    public static final int CENSUS_SIZE = 5;
+    // The times per step the bands exchange changes and halos: before the
+    // animals, after each of their two passes, after the traps and after
+    // the first pass of plant growth.
+    public static final int SYNCS_PER_STEP = 5;
+
+    private BandProtocol()
+    {
+    }
+
+    /**
+     * Reads one message of a kind.
+     */
+    public interface Reader<T>
+    {
+        T read(DataInputStream in) throws IOException;
+    }
+
+    /**
+     * Writes one message of a kind.
+     */
+    public interface Writer<T>
+    {
+        void write(DataOutputStream out, T message) throws IOException;
+    }
+
+    /**
+     * A transferable snapshot of one entity. Dead animals and animals no
+     * longer in the entity list still sit in their cells until the end of
+     * the next step, so they travel too.
+     */
+    public record EntityRecord(Species species, int row, int col, int age, int foodLevel,
+                               boolean diseased, int infectedSince, boolean alive, boolean listed)
+    {
+        /**
+         * @return A record for the given animal, plant or trap.
+         */
+        public static EntityRecord of(Object entity, Location location)
+        {
+            return of(entity, location, true);
+        }
+
+        /**
+         * @param listed Whether the entity is in its field's entity list.
+         */
+        public static EntityRecord of(Object entity, Location location, boolean listed)
+        {
+            return switch (entity) {
+                case Animal animal -> new EntityRecord(Species.of(animal), location.row(), location.col(),
+                                                       animal.getAge(), animal.getFoodLevel(),
+                                                       animal.isDiseased(), animal.getInfectedSince(),
+                                                       animal.isAlive(), listed);
+                case Plant plant -> new EntityRecord(Species.PLANT, location.row(), location.col(),
+                                                     0, 0, false, 0, plant.isAlive(), listed);
+                default -> new EntityRecord(Species.of(entity), location.row(), location.col(),
+                                            0, 0, false, 0, true, listed);
+            };
+        }
+
+        public Location location()
+        {
+            return new Location(row, col);
+        }
+
+        /**
+         * @return A new entity with this record's state.
+         */
+        public Object create()
+        {
+            Location location = location();
+            Animal animal = switch (species) {
+                case MOUSE -> new Mouse(false, location);
+                case OWL -> new Owl(false, location);
+                case CAT -> new Cat(false, location);
+                case WOLF -> new Wolf(false, location);
+                case DEER -> new Deer(false, location);
+                case PLANT -> null;
+                case TRAP -> null;
+                case NONE -> throw new IllegalStateException("Empty record at " + location);
+            };
+            if(animal == null) {
+                if(species == Species.TRAP) {
+                    return new Trap(location);
+                }
+                Plant plant = new Plant(location);
+                if(!alive) {
+                    plant.setDead();
+                }
+                return plant;
+            }
+            animal.restoreState(age, foodLevel);
+            animal.restoreDisease(diseased, infectedSince);
+            if(!alive) {
+                // Only the state matters; the cause was counted where it died.
+                animal.setDead(DeathCause.PREDATION);
+            }
+            return animal;
+        }
+    }
+
+    /**
+     * Something a band did to a cell of its neighbour, or of its own that
+     * the neighbour reads, during one phase of a step.
+     */
+    public record Change(int kind, int row, int col)
+    {
+        // The animal in the cell was killed.
+        public static final int KILLED = 0;
+        // The animal in the cell caught the disease.
+        public static final int INFECTED = 1;
+        // The plant in the cell was eaten or destroyed.
+        public static final int PLANT_REMOVED = 2;
+        // An animal was placed onto the animal in the cell of the next
+        // field, which is dropped from the entity list.
+        public static final int UNLISTED = 3;
+
+        public Location location()
+        {
+            return new Location(row, col);
+        }
+    }
+
+    /**
+     * The entities a band shows its neighbour: those of the current field
+     * within reading distance of the border, and those of the next field
+     * next to it. links[i] is the index in current of the same entity as
+     * next[i], for an animal that moved across, or -1.
+     */
+    public record Halo(List<EntityRecord> current, List<EntityRecord> next, int[] links)
+    {
+    }
+
+    // What a band at the top or bottom of the field gets from beyond it.
+    public static final Halo NO_HALO = new Halo(List.of(), List.of(), new int[0]);
+
+    public static void writeRecords(DataOutputStream out, List<EntityRecord> records) throws IOException
+    {
+        out.writeInt(records.size());
+        for(EntityRecord record : records) {
+            out.writeByte(record.species().id());
+            out.writeInt(record.row());
+            out.writeInt(record.col());
+            out.writeInt(record.age());
+            out.writeInt(record.foodLevel());
+            out.writeBoolean(record.diseased());
+            out.writeInt(record.infectedSince());
+            out.writeBoolean(record.alive());
+            out.writeBoolean(record.listed());
+        }
+    }
+
+    public static List<EntityRecord> readRecords(DataInputStream in) throws IOException
+    {
+        int count = in.readInt();
+        List<EntityRecord> records = new ArrayList<>(count);
+        for(int i = 0; i < count; i++) {
+            records.add(new EntityRecord(Species.fromId(in.readByte()), in.readInt(), in.readInt(),
+                                         in.readInt(), in.readInt(), in.readBoolean(), in.readInt(),
+                                         in.readBoolean(), in.readBoolean()));
+        }
+        return records;
+    }
+
+    public static void writeChanges(DataOutputStream out, List<Change> changes) throws IOException
+    {
+        out.writeInt(changes.size());
+        for(Change change : changes) {
+            out.writeByte(change.kind());
+            out.writeInt(change.row());
+            out.writeInt(change.col());
+        }
+    }
+
+    public static List<Change> readChanges(DataInputStream in) throws IOException
+    {
+        int count = in.readInt();
+        List<Change> changes = new ArrayList<>(count);
+        for(int i = 0; i < count; i++) {
+            changes.add(new Change(in.readByte(), in.readInt(), in.readInt()));
+        }
+        return changes;
+    }
+
+    public static void writeHalo(DataOutputStream out, Halo halo) throws IOException
+    {
+        writeRecords(out, halo.current());
+        writeRecords(out, halo.next());
+        for(int link : halo.links()) {
+            out.writeInt(link);
+        }
+    }
+
+    public static Halo readHalo(DataInputStream in) throws IOException
+    {
+        List<EntityRecord> current = readRecords(in);
+        List<EntityRecord> next = readRecords(in);
+        int[] links = new int[next.size()];
+        for(int i = 0; i < links.length; i++) {
+            links[i] = in.readInt();
+        }
+        return new Halo(current, next, links);
+    }
+
+    public static void writeCensus(DataOutputStream out, int[] census) throws IOException
+    {
+        for(int count : census) {
+            out.writeInt(count);
+        }
+    }
+
+    public static int[] readCensus(DataInputStream in) throws IOException
+    {
+        int[] census = new int[CENSUS_SIZE];
+        for(int i = 0; i < CENSUS_SIZE; i++) {
+            census[i] = in.readInt();
+        }
+        return census;
+    }
+
+    /**
+     * @return The number of strips of Field.STRIP_ROWS rows in a field.
+     *         There can be at most this many bands.
+     */
+    public static int strips(int depth)
+    {
+        return (depth + Field.STRIP_ROWS - 1) / Field.STRIP_ROWS;
+    }
+
+    /**
+     * @return The first row owned by the given band.
+     * Whole strips of rows are split as evenly as possible, so every
+     * band border is a strip border; band i owns
+     * [bandStart(i), bandStart(i + 1)).
+     */
+    public static int bandStart(int band, int bands, int depth)
+    {
+        return Math.min(depth, (int) ((long) band * strips(depth) / bands) * Field.STRIP_ROWS);
+    }
+
+    /**
+     * @return The band that owns the given row.
+     */
+    public static int bandOf(int row, int bands, int depth)
+    {
+        int band = (int) (((long) row * bands + bands - 1) / depth);
+        while(band > 0 && bandStart(band, bands, depth) > row) {
+            band--;
+        }
+        while(band < bands - 1 && bandStart(band + 1, bands, depth) <= row) {
+            band++;
+        }
+        return band;
+    }
+
+    /**
+     * @return The census index of a species, or -1 for non-animals.
+     * The order is mice, owls, cats, wolves, deer.
+     */
+    public static int censusIndex(Species species)
+    {
+        return switch (species) {
+            case MOUSE -> 0;
+            case OWL -> 1;
+            case CAT -> 2;
+            case WOLF -> 3;
+            case DEER -> 4;
+            default -> -1;
+        };
+    }
+}
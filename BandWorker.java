@@ -0,0 +1,398 @@
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.*;
+
+/**
+ * One worker process of a distributed run. The worker owns a horizontal
+ * band of whole strips of rows of the field (see Field.stripParity) and
+ * steps its entities exactly as Simulator steps the same rows of the
+ * whole field, so a banded run gives the same states as a single-process
+ * run with the same seed.
+ *
+ * A step runs in the phases of Simulator.advance, and between them the
+ * worker exchanges two rounds of messages with its neighbours through
+ * the coordinator. First the changes: the neighbour's animals it killed
+ * or infected, the plants it ate, the animals it placed an animal onto,
+ * and the plants of its edge rows that disappeared, since removing them
+ * wakes the plants on the other side. The owner applies them before any
+ * of its entities act again. Then the halos: the current field's rows
+ * within the largest sensing radius of the border, dead animals and
+ * animals dropped from the list included, and the next field's two rows
+ * at the border, placed read-only into the worker's own fields.
+ *
+ * At the end of the step the worker hands whatever it placed outside its
+ * band to the owner of the cell, and reports its census and state hash.
+ *
+ * Started by BandCoordinator as:
+ *   java BandWorker port band bands depth width seed
+ */
+public class BandWorker {
+
+    // How far from its cell an entity reads the current field: the
+    // largest sensing radius. Bands run with the default radii.
+    private static final int READ_ROWS = SensingRadii.DEFAULT.max();
+    private final int band, bands;
+    private final int firstRow, endRow;
+    private Field field;
+    private Field nextFieldState;
+    // The field holding the plant layer: the current one until the next
+    // one adopts it.
+    private Field plantField;
+    // The neighbours' entities put into the current field by the last
+    // halos, as they were then.
+    private final List<HaloEntry> halo = new ArrayList<>();
+    // This band's plants in its first and last rows at the last exchange.
+    private final Map<Location, Plant> edgePlants = new HashMap<>();
+
+    /**
+     * @param seed The seed of the population, as Simulator draws it.
+     */
+    public BandWorker(int band, int bands, int depth, int width, long seed)
+    {
+        this.band = band;
+        this.bands = bands;
+        firstRow = BandProtocol.bandStart(band, bands, depth);
+        endRow = BandProtocol.bandStart(band + 1, bands, depth);
+        field = new Field(depth, width);
+        WorldLoader.populateRows(field, firstRow, endRow, Simulator.DEFAULT_DENSITIES, seed);
+    }
+
+    /**
+     * Serve step commands from the coordinator until told to stop.
+     */
+    public void run(DataInputStream in, DataOutputStream out) throws IOException
+    {
+        out.writeInt(band);
+        BandProtocol.writeCensus(out, census(field));
+        out.writeLong(field.getStateHash());
+        out.flush();
+        while(in.readInt() == BandProtocol.STEP) {
+            int step = in.readInt();
+            long seed = in.readLong();
+            Earthquake earthquake = null;
+            if(in.readBoolean()) {
+                earthquake = new Earthquake(new Location(in.readInt(), in.readInt()));
+            }
+            step(step, seed, earthquake, in, out);
+        }
+    }
+
+    /**
+     * Run the phases of Simulator.advance on this band, exchanging with
+     * the neighbours after each, then swap in the next field.
+     */
+    private void step(int step, long seed, Earthquake earthquake, DataInputStream in, DataOutputStream out)
+        throws IOException
+    {
+        if(step % Simulator.DEFORESTATION_INTERVAL == 0) {
+            field.triggerDeforestation();
+        }
+        nextFieldState = field.createNext();
+        plantField = field;
+        field.setPlantSeed(seed);
+        rememberEdgePlants();
+        exchange(in, out);
+        Simulator.actAnimals(field, nextFieldState, 0, earthquake, seed);
+        exchange(in, out);
+        Simulator.actAnimals(field, nextFieldState, 1, earthquake, seed);
+        exchange(in, out);
+        Simulator.actTraps(field, nextFieldState);
+        nextFieldState.adoptPlants(field);
+        plantField = nextFieldState;
+        if(earthquake != null) {
+            nextFieldState.destroyPlants(earthquake);
+        }
+        exchange(in, out);
+        nextFieldState.prepareGrowth();
+        nextFieldState.growPlants(0);
+        exchange(in, out);
+        nextFieldState.growPlants(1);
+
+        field.clearHalo();
+        nextFieldState.clearHalo();
+        halo.clear();
+        nextFieldState.compactDead();
+        BandProtocol.writeRecords(out, emigrate());
+        out.flush();
+        for(BandProtocol.EntityRecord record : BandProtocol.readRecords(in)) {
+            arrive(record);
+        }
+        nextFieldState.recycleDead(field);
+        field = nextFieldState;
+        nextFieldState = null;
+        BandProtocol.writeCensus(out, census(field));
+        out.writeLong(field.getStateHash());
+        out.flush();
+    }
+
+    /**
+     * Send the changes of the last phase and apply the neighbours', then
+     * replace the halos.
+     */
+    private void exchange(DataInputStream in, DataOutputStream out) throws IOException
+    {
+        List<BandProtocol.Change> up = new ArrayList<>();
+        List<BandProtocol.Change> down = new ArrayList<>();
+        collectChanges(up, down);
+        BandProtocol.writeChanges(out, up);
+        BandProtocol.writeChanges(out, down);
+        out.flush();
+        apply(BandProtocol.readChanges(in));
+        apply(BandProtocol.readChanges(in));
+
+        field.clearHalo();
+        nextFieldState.clearHalo();
+        halo.clear();
+        BandProtocol.writeHalo(out, band > 0 ? halo(firstRow, firstRow + READ_ROWS, firstRow - 1)
+                                             : BandProtocol.NO_HALO);
+        BandProtocol.writeHalo(out, band < bands - 1 ? halo(endRow - READ_ROWS, endRow, endRow - 1)
+                                                     : BandProtocol.NO_HALO);
+        out.flush();
+        place(BandProtocol.readHalo(in), true);
+        place(BandProtocol.readHalo(in), false);
+        rememberEdgePlants();
+    }
+
+    private void collectChanges(List<BandProtocol.Change> up, List<BandProtocol.Change> down)
+    {
+        for(HaloEntry entry : halo) {
+            List<BandProtocol.Change> changes = entry.up() ? up : down;
+            Location location = entry.location();
+            switch (entry.entity()) {
+                case Animal animal -> {
+                    if(entry.alive() && !animal.isAlive()) {
+                        changes.add(change(BandProtocol.Change.KILLED, location));
+                    }
+                    if(!entry.diseased() && animal.isDiseased()) {
+                        changes.add(change(BandProtocol.Change.INFECTED, location));
+                    }
+                }
+                case Plant plant -> {
+                    if(entry.alive() && !plant.isAlive()) {
+                        changes.add(change(BandProtocol.Change.PLANT_REMOVED, location));
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+        for(Map.Entry<Location, Plant> edge : edgePlants.entrySet()) {
+            Location location = edge.getKey();
+            if(plantField.getPlantAt(location) != edge.getValue()) {
+                (location.row() == firstRow ? up : down).add(change(BandProtocol.Change.PLANT_REMOVED, location));
+            }
+        }
+        for(Location location : nextFieldState.takeDisplacedHalo()) {
+            (location.row() <= firstRow ? up : down).add(change(BandProtocol.Change.UNLISTED, location));
+        }
+    }
+
+    private static BandProtocol.Change change(int kind, Location location)
+    {
+        return new BandProtocol.Change(kind, location.row(), location.col());
+    }
+
+    /**
+     * Do to this band's entities what a neighbour did to its copies.
+     */
+    private void apply(List<BandProtocol.Change> changes)
+    {
+        for(BandProtocol.Change change : changes) {
+            Location location = change.location();
+            switch (change.kind()) {
+                case BandProtocol.Change.KILLED -> {
+                    Animal animal = field.getAnimalAt(location);
+                    if(animal != null && animal.isAlive()) {
+                        animal.setDead(DeathCause.PREDATION);
+                    }
+                }
+                case BandProtocol.Change.INFECTED -> {
+                    Animal animal = field.getAnimalAt(location);
+                    if(animal != null) {
+                        animal.passDisease();
+                    }
+                }
+                case BandProtocol.Change.PLANT_REMOVED -> {
+                    Plant plant = plantField.getPlantAt(location);
+                    if(plant != null && plant.isAlive()) {
+                        plantField.removePlant(location);
+                    }
+                    else {
+                        plantField.wakePlants(location);
+                    }
+                }
+                case BandProtocol.Change.UNLISTED -> nextFieldState.unlistAnimal(location);
+                default -> throw new IllegalStateException("Unknown change " + change);
+            }
+        }
+    }
+
+    /**
+     * Collect what a neighbour reads of this band.
+     * @param from The first row of the current field to send.
+     * @param to The row after the last one.
+     * @param nextFrom The first of the two rows of the next field to
+     *                 send, the rows on either side of the border.
+     */
+    private BandProtocol.Halo halo(int from, int to, int nextFrom)
+    {
+        List<BandProtocol.EntityRecord> current = new ArrayList<>();
+        Map<Object, Integer> sent = new IdentityHashMap<>();
+        for(int row = Math.max(from, firstRow); row < Math.min(to, endRow); row++) {
+            for(int col = 0; col < field.getWidth(); col++) {
+                Location location = field.location(row, col);
+                send(field.getAnimalAt(location), location, field, current, sent);
+                send(plantField.getPlantAt(location), location, plantField, current, sent);
+                send(field.getTrapAt(location), location, field, current, sent);
+            }
+        }
+        List<BandProtocol.EntityRecord> next = new ArrayList<>();
+        List<Integer> links = new ArrayList<>();
+        for(int row = nextFrom; row <= nextFrom + 1; row++) {
+            for(int col = 0; col < field.getWidth(); col++) {
+                Location location = field.location(row, col);
+                for(Object entity : new Object[] { nextFieldState.getAnimalAt(location),
+                                                   plantField.getPlantAt(location),
+                                                   nextFieldState.getTrapAt(location) }) {
+                    if(entity != null && !nextFieldState.isHalo(entity) && !plantField.isHalo(entity)) {
+                        next.add(BandProtocol.EntityRecord.of(entity, location));
+                        links.add(sent.getOrDefault(entity, -1));
+                    }
+                }
+            }
+        }
+        return new BandProtocol.Halo(current, next, links.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    private static void send(Object entity, Location location, Field owner,
+                             List<BandProtocol.EntityRecord> records, Map<Object, Integer> sent)
+    {
+        if(entity != null && !owner.isHalo(entity)) {
+            sent.put(entity, records.size());
+            records.add(BandProtocol.EntityRecord.of(entity, location));
+        }
+    }
+
+    /**
+     * Put a neighbour's halo into this band's fields, with one object for
+     * an entity sent for both.
+     * @param up Whether it came from the band above.
+     */
+    private void place(BandProtocol.Halo received, boolean up)
+    {
+        Object[] entities = new Object[received.current().size()];
+        for(int i = 0; i < entities.length; i++) {
+            BandProtocol.EntityRecord record = received.current().get(i);
+            entities[i] = record.create();
+            field.placeHalo(entities[i], record.location());
+            halo.add(new HaloEntry(entities[i], record.location(), up, record.alive(), record.diseased()));
+        }
+        for(int i = 0; i < received.next().size(); i++) {
+            BandProtocol.EntityRecord record = received.next().get(i);
+            int link = received.links()[i];
+            nextFieldState.placeHalo(link >= 0 ? entities[link] : record.create(), record.location());
+        }
+    }
+
+    private void rememberEdgePlants()
+    {
+        edgePlants.clear();
+        for(int row : new int[] { firstRow, endRow - 1 }) {
+            for(int col = 0; col < field.getWidth(); col++) {
+                Location location = field.location(row, col);
+                Plant plant = plantField.getPlantAt(location);
+                if(plant != null && !plantField.isHalo(plant)) {
+                    edgePlants.put(location, plant);
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove and return everything that ended the step outside this band.
+     * Animals and plants only move or grow into the rows next to it.
+     */
+    private List<BandProtocol.EntityRecord> emigrate()
+    {
+        List<BandProtocol.EntityRecord> records = new ArrayList<>();
+        for(int row : new int[] { firstRow - 1, endRow }) {
+            if(row < 0 || row >= nextFieldState.getDepth()) {
+                continue;
+            }
+            for(int col = 0; col < nextFieldState.getWidth(); col++) {
+                Location location = field.location(row, col);
+                Animal animal = nextFieldState.getAnimalAt(location);
+                if(animal != null) {
+                    records.add(BandProtocol.EntityRecord.of(animal, location, nextFieldState.isListed(animal)));
+                }
+                Plant plant = nextFieldState.getPlantAt(location);
+                if(plant != null) {
+                    records.add(BandProtocol.EntityRecord.of(plant, location));
+                }
+                if(animal != null || plant != null) {
+                    nextFieldState.handOver(location);
+                }
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Take over an entity another band placed in this band's rows.
+     */
+    private void arrive(BandProtocol.EntityRecord record)
+    {
+        Location location = record.location();
+        switch (record.create()) {
+            case Animal animal -> {
+                if(nextFieldState.containsTrap(location)) {
+                    // This band's trap was placed after the animal moved in.
+                    if(animal.isAlive()) {
+                        animal.setDead(DeathCause.TRAP);
+                    }
+                    nextFieldState.placeUnlisted(animal, location);
+                }
+                else if(record.listed() && animal.isAlive()) {
+                    nextFieldState.placeAnimal(animal, location);
+                }
+                else {
+                    nextFieldState.placeUnlisted(animal, location);
+                }
+            }
+            case Plant plant -> nextFieldState.placePlant(plant, location);
+            default -> {
+            }
+        }
+    }
+
+    private static int[] census(Field field)
+    {
+        int[] census = new int[BandProtocol.CENSUS_SIZE];
+        for(Animal animal : field.getAnimals()) {
+            int index = BandProtocol.censusIndex(Species.of(animal));
+            if(animal.isAlive() && index >= 0) {
+                census[index]++;
+            }
+        }
+        return census;
+    }
+
+    // A neighbour's entity in the current field and its state when placed.
+    private record HaloEntry(Object entity, Location location, boolean up, boolean alive, boolean diseased)
+    {
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        int port = Integer.parseInt(args[0]);
+        BandWorker worker = new BandWorker(Integer.parseInt(args[1]), Integer.parseInt(args[2]),
+                                           Integer.parseInt(args[3]), Integer.parseInt(args[4]),
+                                           Long.parseLong(args[5]));
+        try(Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            socket.setTcpNoDelay(true);
+            worker.run(new DataInputStream(new BufferedInputStream(socket.getInputStream())),
+                       new DataOutputStream(new BufferedOutputStream(socket.getOutputStream())));
+        }
+    }
+}
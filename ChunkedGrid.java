@@ -0,0 +1,432 @@
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * A sparse two-dimensional grid made of fixed-size square chunks.
+ * A chunk is allocated the first time one of its cells is occupied and
+ * released again when its last cell is emptied, so memory scales with
+ * the occupied area rather than with the size of the map. Cells are
+ * addressed by absolute (row, col), so lookups cross chunk borders
+ * transparently.
+ *
+ * A grid can be forked: the fork shares every chunk with the original,
+ * and whichever of them first writes to a shared chunk copies it, so the
+ * two grow apart one chunk at a time. Values in a copied chunk are passed
+ * through the grid's copier, which lets mutable values be copied along
+ * with their chunk.
+ *
+ * The chunks a clear drops are kept for the chunks allocated until the
+ * next clear, so a grid that is emptied and refilled every step allocates
+ * no new ones and keeps no more than it held before the last clear.
+ */
+public class ChunkedGrid<T> {
+
+    // Chunks are CHUNK_SIZE x CHUNK_SIZE cells.
+    public static final int CHUNK_SHIFT = 6;
+    public static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private static final int INITIAL_TABLE_SIZE = 16;
+    private static final long NO_KEY = Long.MIN_VALUE;
+
+    // Open addressing table from chunk key to chunk.
+    private long[] keys;
+    private Chunk[] chunks;
+    private int chunkCount;
+    private int cellCount;
+    // The most recently used chunk; neighbour queries mostly stay in it.
+    private Chunk lastChunk;
+    // Applied to the values of a shared chunk when it is copied.
+    private final UnaryOperator<T> copier;
+    // Empty chunks of this grid's own from the last clear, ready for reuse.
+    private final List<Chunk> spareChunks = new ArrayList<>();
+
+    public ChunkedGrid()
+    {
+        this(UnaryOperator.identity());
+    }
+
+    /**
+     * @param copier Copies a value when the chunk holding it is copied
+     *               after a fork; the identity for immutable values.
+     */
+    public ChunkedGrid(UnaryOperator<T> copier)
+    {
+        keys = new long[INITIAL_TABLE_SIZE];
+        Arrays.fill(keys, NO_KEY);
+        chunks = new Chunk[INITIAL_TABLE_SIZE];
+        this.copier = copier;
+    }
+
+    private ChunkedGrid(ChunkedGrid<T> original, UnaryOperator<T> copier)
+    {
+        keys = original.keys.clone();
+        chunks = original.chunks.clone();
+        chunkCount = original.chunkCount;
+        cellCount = original.cellCount;
+        this.copier = copier;
+    }
+
+    /**
+     * Create a grid with the same contents that shares all chunks with
+     * this one. From now on both copy a shared chunk before writing to
+     * it, so neither sees the other's changes.
+     * @param copier The copier of the new grid.
+     * @return The fork.
+     */
+    public ChunkedGrid<T> fork(UnaryOperator<T> copier)
+    {
+        for(Chunk chunk : chunks) {
+            if(chunk != null) {
+                chunk.shared = true;
+            }
+        }
+        return new ChunkedGrid<>(this, copier);
+    }
+
+    /**
+     * @return Whether the chunk of a cell is shared with a fork, i.e. its
+     *         values must not be modified in place.
+     */
+    public boolean isShared(int row, int col)
+    {
+        Chunk chunk = findChunk(row >> CHUNK_SHIFT, col >> CHUNK_SHIFT);
+        return chunk != null && chunk.shared;
+    }
+
+    /**
+     * Get the value of a cell for modification: if its chunk is shared,
+     * the chunk is copied first, so the value returned is this grid's own.
+     * @return The value at the given cell, or null if it is empty.
+     */
+    @SuppressWarnings("unchecked")
+    public T own(int row, int col)
+    {
+        Chunk chunk = findChunk(row >> CHUNK_SHIFT, col >> CHUNK_SHIFT);
+        if(chunk == null) {
+            return null;
+        }
+        if(chunk.shared) {
+            chunk = unshare(chunk);
+        }
+        return (T) chunk.cells[cellIndex(row, col)];
+    }
+
+    /**
+     * @return The value at the given cell, or null if it is empty.
+     */
+    @SuppressWarnings("unchecked")
+    public T get(int row, int col)
+    {
+        Chunk chunk = findChunk(row >> CHUNK_SHIFT, col >> CHUNK_SHIFT);
+        if(chunk == null) {
+            return null;
+        }
+        return (T) chunk.cells[cellIndex(row, col)];
+    }
+
+    public T get(Location location)
+    {
+        return get(location.row(), location.col());
+    }
+
+    public boolean containsKey(Location location)
+    {
+        return get(location) != null;
+    }
+
+    /**
+     * Store a value in a cell, allocating its chunk if necessary.
+     * @return The previous value in the cell, or null.
+     */
+    @SuppressWarnings("unchecked")
+    public T put(int row, int col, T value)
+    {
+        if(value == null) {
+            return remove(row, col);
+        }
+        int chunkRow = row >> CHUNK_SHIFT;
+        int chunkCol = col >> CHUNK_SHIFT;
+        Chunk chunk = findChunk(chunkRow, chunkCol);
+        if(chunk == null) {
+            chunk = addChunk(chunkRow, chunkCol);
+        }
+        else if(chunk.shared) {
+            chunk = unshare(chunk);
+        }
+        int index = cellIndex(row, col);
+        Object previous = chunk.cells[index];
+        chunk.cells[index] = value;
+        if(previous == null) {
+            chunk.occupied++;
+            cellCount++;
+        }
+        return (T) previous;
+    }
+
+    public T put(Location location, T value)
+    {
+        return put(location.row(), location.col(), value);
+    }
+
+    /**
+     * Empty a cell, releasing its chunk if it was the last occupied one.
+     * @return The value that was in the cell, or null.
+     */
+    @SuppressWarnings("unchecked")
+    public T remove(int row, int col)
+    {
+        int chunkRow = row >> CHUNK_SHIFT;
+        int chunkCol = col >> CHUNK_SHIFT;
+        Chunk chunk = findChunk(chunkRow, chunkCol);
+        if(chunk == null) {
+            return null;
+        }
+        int index = cellIndex(row, col);
+        if(chunk.shared && chunk.cells[index] != null) {
+            chunk = unshare(chunk);
+        }
+        Object previous = chunk.cells[index];
+        if(previous != null) {
+            chunk.cells[index] = null;
+            cellCount--;
+            if(--chunk.occupied == 0) {
+                removeChunk(chunkRow, chunkCol);
+            }
+        }
+        return (T) previous;
+    }
+
+    public T remove(Location location)
+    {
+        return remove(location.row(), location.col());
+    }
+
+    public void clear()
+    {
+        spareChunks.clear();
+        for(Chunk chunk : chunks) {
+            if(chunk != null && !chunk.shared) {
+                Arrays.fill(chunk.cells, null);
+                spareChunks.add(chunk);
+            }
+        }
+        Arrays.fill(keys, NO_KEY);
+        Arrays.fill(chunks, null);
+        chunkCount = 0;
+        cellCount = 0;
+        lastChunk = null;
+    }
+
+    /**
+     * @return The number of occupied cells.
+     */
+    public int size()
+    {
+        return cellCount;
+    }
+
+    /**
+     * @return The number of allocated (non-empty) chunks.
+     */
+    public int getChunkCount()
+    {
+        return chunkCount;
+    }
+
+    /**
+     * @return The bytes of the grid itself, its table and its chunks,
+     *         spare ones included, without the values in them. Chunks
+     *         shared with a fork are counted in full.
+     */
+    public long estimateBytes(MemoryLayout layout)
+    {
+        return layout.instance(ChunkedGrid.class) + layout.longArray(keys.length)
+               + layout.objectArray(chunks.length) + layout.arrayList(spareChunks.size())
+               + (chunkCount + spareChunks.size())
+                 * (layout.instance(Chunk.class) + layout.objectArray(CHUNK_SIZE * CHUNK_SIZE));
+    }
+
+    /**
+     * Visit every occupied cell. Only live chunks are touched.
+     * @param action The action to apply to each value.
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(Consumer<? super T> action)
+    {
+        for(Chunk chunk : chunks) {
+            if(chunk != null) {
+                for(Object value : chunk.cells) {
+                    if(value != null) {
+                        action.accept((T) value);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Visit every live chunk, giving the row and column of its top-left cell.
+     * @param action Receives the origin row and column of each chunk.
+     */
+    public void forEachLiveChunk(ChunkVisitor action)
+    {
+        for(Chunk chunk : chunks) {
+            if(chunk != null) {
+                action.visit(chunk.chunkRow << CHUNK_SHIFT, chunk.chunkCol << CHUNK_SHIFT);
+            }
+        }
+    }
+
+    /**
+     * Receives the origin of a live chunk.
+     */
+    public interface ChunkVisitor {
+        void visit(int originRow, int originCol);
+    }
+
+    private static int cellIndex(int row, int col)
+    {
+        return ((row & CHUNK_MASK) << CHUNK_SHIFT) | (col & CHUNK_MASK);
+    }
+
+    private static long key(int chunkRow, int chunkCol)
+    {
+        return ((long) chunkRow << 32) | (chunkCol & 0xffffffffL);
+    }
+
+    private static int hash(long key)
+    {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private Chunk findChunk(int chunkRow, int chunkCol)
+    {
+        Chunk last = lastChunk;
+        if(last != null && last.chunkRow == chunkRow && last.chunkCol == chunkCol) {
+            return last;
+        }
+        long key = key(chunkRow, chunkCol);
+        int mask = keys.length - 1;
+        for(int i = hash(key) & mask; keys[i] != NO_KEY; i = (i + 1) & mask) {
+            if(keys[i] == key) {
+                lastChunk = chunks[i];
+                return chunks[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Replace a shared chunk with a private copy of it.
+     */
+    @SuppressWarnings("unchecked")
+    private Chunk unshare(Chunk chunk)
+    {
+        Chunk copy = new Chunk(chunk.chunkRow, chunk.chunkCol);
+        for(int i = 0; i < copy.cells.length; i++) {
+            Object value = chunk.cells[i];
+            if(value != null) {
+                copy.cells[i] = copier.apply((T) value);
+            }
+        }
+        copy.occupied = chunk.occupied;
+        long key = key(chunk.chunkRow, chunk.chunkCol);
+        int mask = keys.length - 1;
+        int i = hash(key) & mask;
+        while(keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        chunks[i] = copy;
+        lastChunk = copy;
+        return copy;
+    }
+
+    private Chunk addChunk(int chunkRow, int chunkCol)
+    {
+        if((chunkCount + 1) * 2 > keys.length) {
+            resize(keys.length * 2);
+        }
+        Chunk chunk;
+        if(spareChunks.isEmpty()) {
+            chunk = new Chunk(chunkRow, chunkCol);
+        }
+        else {
+            chunk = spareChunks.remove(spareChunks.size() - 1);
+            chunk.chunkRow = chunkRow;
+            chunk.chunkCol = chunkCol;
+        }
+        insert(key(chunkRow, chunkCol), chunk);
+        chunkCount++;
+        lastChunk = chunk;
+        return chunk;
+    }
+
+    private void insert(long key, Chunk chunk)
+    {
+        int mask = keys.length - 1;
+        int i = hash(key) & mask;
+        while(keys[i] != NO_KEY) {
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        chunks[i] = chunk;
+    }
+
+    private void removeChunk(int chunkRow, int chunkCol)
+    {
+        long key = key(chunkRow, chunkCol);
+        int mask = keys.length - 1;
+        int i = hash(key) & mask;
+        while(keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        if(chunks[i] == lastChunk) {
+            lastChunk = null;
+        }
+        // Backward-shift deletion keeps probe sequences unbroken.
+        int hole = i;
+        for(int j = (hole + 1) & mask; keys[j] != NO_KEY; j = (j + 1) & mask) {
+            int home = hash(keys[j]) & mask;
+            if(((j - home) & mask) >= ((j - hole) & mask)) {
+                keys[hole] = keys[j];
+                chunks[hole] = chunks[j];
+                hole = j;
+            }
+        }
+        keys[hole] = NO_KEY;
+        chunks[hole] = null;
+        chunkCount--;
+    }
+
+    private void resize(int newSize)
+    {
+        long[] oldKeys = keys;
+        Chunk[] oldChunks = chunks;
+        keys = new long[newSize];
+        Arrays.fill(keys, NO_KEY);
+        chunks = new Chunk[newSize];
+        for(int i = 0; i < oldKeys.length; i++) {
+            if(oldKeys[i] != NO_KEY) {
+                insert(oldKeys[i], oldChunks[i]);
+            }
+        }
+    }
+
+    private static class Chunk
+    {
+        int chunkRow, chunkCol;
+        final Object[] cells = new Object[CHUNK_SIZE * CHUNK_SIZE];
+        int occupied;
+        // Set when a fork shares the chunk; it is then never written again.
+        boolean shared;
+
+        Chunk(int chunkRow, int chunkCol)
+        {
+            this.chunkRow = chunkRow;
+            this.chunkCol = chunkCol;
+        }
+    }
+}
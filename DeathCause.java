@@ -0,0 +1,13 @@
+/**
+ * Why an animal died.
+ */
+public enum DeathCause {
+    HUNGER,
+    AGE,
+    PREDATION,
+    DISEASE,
+    TRAP,
+    EARTHQUAKE,
+    // No free cell to move to.
+    CROWDING
+}
@@ -1,4 +1,3 @@
-import java.util.Iterator;
 import java.util.List;
 import java.util.Random;
 
@@ -9,6 +8,7 @@ public class Deer extends Animal
     private static final double BREEDING_PROBABILITY = 0.08;
     private static final int MAX_LITTER_SIZE = 2;
     private static final int PLANT_FOOD_LEVEL = 9;
+    private static final Species[] FOOD = { Species.PLANT };
     private static final Random rand = Randomizer.getRandom();
     private int age;
     private int foodLevel;
@@ -16,6 +16,12 @@ public class Deer extends Animal
     public Deer(boolean randomAge, Location location)
     {
         super(location);
+        initState(randomAge);
+    }
+
+    @Override
+    protected final void initState(boolean randomAge)
+    {
         age = 0;
         if(randomAge) {
             age = rand.nextInt(MAX_AGE);
@@ -41,6 +47,9 @@ public class Deer extends Animal
                 spreadDisease(currentField);
             }
             Location nextLocation = findFood(currentField);
+            if(nextLocation == null) {
+                nextLocation = huntToward(currentField, freeLocations, currentField.getSensingRadius(Species.DEER), FOOD);
+            }
             if(nextLocation == null && ! freeLocations.isEmpty()) {
                 nextLocation = freeLocations.remove(0);
             }
@@ -50,7 +59,7 @@ public class Deer extends Animal
                 nextFieldState.placeAnimal(this, nextLocation);
             }
             else {
-                setDead();
+                setDead(DeathCause.CROWDING);
             }
         }
     }
@@ -64,11 +73,30 @@ public class Deer extends Animal
                 '}';
     }
 
+    @Override
+    public int getAge()
+    {
+        return age;
+    }
+
+    @Override
+    public int getFoodLevel()
+    {
+        return foodLevel;
+    }
+
+    @Override
+    protected void restoreState(int age, int foodLevel)
+    {
+        this.age = age;
+        this.foodLevel = foodLevel;
+    }
+
     private void incrementAge()
     {
         age++;
         if(age > MAX_AGE) {
-            setDead();
+            setDead(DeathCause.AGE);
         }
     }
 
@@ -76,7 +104,7 @@ public class Deer extends Animal
     {
         foodLevel--;
         if(foodLevel <= 0) {
-            setDead();
+            setDead(DeathCause.HUNGER);
         }
     }
 
@@ -86,8 +114,9 @@ public class Deer extends Animal
         if(births > 0) {
             for (int b = 0; b < births && !freeLocations.isEmpty(); b++) {
                 Location loc = freeLocations.remove(0);
-                Deer young = new Deer(false, loc);
+                Animal young = nextFieldState.getPool().newborn(Species.DEER, loc);
                 nextFieldState.placeAnimal(young, loc);
+                recordBirth(loc);
             }
         }
     }
@@ -111,13 +140,13 @@ public class Deer extends Animal
 
     public Location findFood(Field field){
         List<Location> adjacent = field.getAdjacentLocations(getLocation());
-        Iterator<Location> it = adjacent.iterator();
         Location foodLocation = null;
-        while(foodLocation == null && it.hasNext()) {
-            Location loc = it.next();
+        for(int i = 0; foodLocation == null && i < adjacent.size(); i++) {
+            Location loc = adjacent.get(i);
             Plant plant = field.getPlantAt(loc);  
             if(plant != null && plant.isAlive()) {
-                plant.setDead();
+                field.removePlant(loc);
+                recordMeal(Species.PLANT, loc);
                 foodLevel = PLANT_FOOD_LEVEL;
                 foodLocation = loc;
             }
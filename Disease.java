@@ -1,12 +1,19 @@
 import java.util.*;
 
+/**
+ * The disease animals can catch. It holds no per-animal state (how long an
+ * animal has been infected is kept by the animal), so every infected
+ * animal shares the one instance.
+ */
 public class Disease{
 
+    public static final Disease INSTANCE = new Disease();
+
     private static final int DISEASE_LIFETIME = 2;
     private static final double DEATH_PROBABILITY = 0.5;
     private static final Random rand = Randomizer.getRandom();
 
-    public Disease(){
+    private Disease(){
     }
 
     public boolean diseaseExpired(Animal animal){
@@ -16,4 +23,4 @@ public class Disease{
     public boolean animalDemise(){
         return rand.nextDouble() <= DEATH_PROBABILITY;
     }
-}
\ No newline at end of file
+}
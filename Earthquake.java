@@ -16,6 +16,14 @@ public class Earthquake implements Calamity {
     // public void getAffectedLocation() {
     // }
 
+    public Location getEpicenter() {
+        return epicenter;
+    }
+
+    public int getRadius() {
+        return radius;
+    }
+
     @Override
     public boolean locationWithinCalamity(Location location) {
         if(location == null) {
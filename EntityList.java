@@ -0,0 +1,209 @@
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * An unordered list of field entities with O(1) removal.
+ * Every entity remembers its own index (slot), so removing it
+ * swaps the last element into the hole instead of shifting the
+ * tail of the list. Bulk removal through removeIf is a single
+ * stable compaction pass.
+ *
+ * Each member may carry a 64-bit key; the list keeps the XOR of the
+ * keys of its members, so a hash of its contents is always available
+ * without a scan.
+ */
+public class EntityList<E extends FieldEntity> extends AbstractList<E> implements RandomAccess {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private Object[] elements;
+    private long[] keys;
+    private int size;
+    private long hash;
+
+    public EntityList()
+    {
+        elements = new Object[DEFAULT_CAPACITY];
+        keys = new long[DEFAULT_CAPACITY];
+        size = 0;
+    }
+
+    /**
+     * @return The XOR of the keys of all members.
+     */
+    public long getHash()
+    {
+        return hash;
+    }
+
+    /**
+     * @return The hash key the member at an index was added with.
+     */
+    public long getKey(int index)
+    {
+        Objects.checkIndex(index, size);
+        return keys[index];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(int index)
+    {
+        Objects.checkIndex(index, size);
+        return (E) elements[index];
+    }
+
+    @Override
+    public int size()
+    {
+        return size;
+    }
+
+    @Override
+    public boolean add(E entity)
+    {
+        return add(entity, 0);
+    }
+
+    /**
+     * Add an entity with a hash key.
+     * @param entity The entity to add.
+     * @param key Its contribution to the list's hash.
+     */
+    public boolean add(E entity, long key)
+    {
+        if(size == elements.length) {
+            elements = Arrays.copyOf(elements, size * 2);
+            keys = Arrays.copyOf(keys, size * 2);
+        }
+        entity.setSlot(size);
+        keys[size] = key;
+        hash ^= key;
+        elements[size++] = entity;
+        modCount++;
+        return true;
+    }
+
+    /**
+     * Remove the given entity by swapping the last element into its slot.
+     * An entity belongs to the list it was most recently added to; if its
+     * slot does not point back at it, it is not in this list.
+     * @param o The entity to remove.
+     * @return true if the entity was in this list.
+     */
+    @Override
+    public boolean remove(Object o)
+    {
+        if(!(o instanceof FieldEntity entity)) {
+            return false;
+        }
+        int slot = entity.getSlot();
+        if(slot < 0 || slot >= size || elements[slot] != entity) {
+            return false;
+        }
+        removeAt(slot);
+        entity.setSlot(-1);
+        return true;
+    }
+
+    /**
+     * @return Whether an entity is in this list, found by its slot.
+     */
+    @Override
+    public boolean contains(Object o)
+    {
+        if(!(o instanceof FieldEntity entity)) {
+            return false;
+        }
+        int slot = entity.getSlot();
+        return slot >= 0 && slot < size && elements[slot] == entity;
+    }
+
+    @Override
+    public E remove(int index)
+    {
+        E entity = get(index);
+        removeAt(index);
+        entity.setSlot(-1);
+        return entity;
+    }
+
+    /**
+     * Remove every matching entity in one pass, keeping the relative
+     * order of the survivors and renumbering their slots.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean removeIf(Predicate<? super E> filter)
+    {
+        int kept = 0;
+        for(int i = 0; i < size; i++) {
+            E entity = (E) elements[i];
+            if(filter.test(entity)) {
+                entity.setSlot(-1);
+                hash ^= keys[i];
+            }
+            else {
+                entity.setSlot(kept);
+                keys[kept] = keys[i];
+                elements[kept++] = entity;
+            }
+        }
+        if(kept == size) {
+            return false;
+        }
+        Arrays.fill(elements, kept, size, null);
+        size = kept;
+        modCount++;
+        return true;
+    }
+
+    /**
+     * @return The bytes of the list and its arrays, without the members.
+     */
+    public long estimateBytes(MemoryLayout layout)
+    {
+        return layout.instance(EntityList.class) + layout.objectArray(elements.length)
+               + layout.longArray(keys.length);
+    }
+
+    @Override
+    public void clear()
+    {
+        for(int i = 0; i < size; i++) {
+            ((FieldEntity) elements[i]).setSlot(-1);
+            elements[i] = null;
+        }
+        size = 0;
+        hash = 0;
+        modCount++;
+    }
+
+    /**
+     * Empty the list for reuse without touching its members, which must
+     * all have been added to other lists since, so their slots are no
+     * longer this list's.
+     */
+    public void abandon()
+    {
+        Arrays.fill(elements, 0, size, null);
+        size = 0;
+        hash = 0;
+        modCount++;
+    }
+
+    private void removeAt(int slot)
+    {
+        int last = size - 1;
+        hash ^= keys[slot];
+        if(slot != last) {
+            FieldEntity moved = (FieldEntity) elements[last];
+            elements[slot] = moved;
+            keys[slot] = keys[last];
+            moved.setSlot(slot);
+        }
+        elements[last] = null;
+        size = last;
+        modCount++;
+    }
+}
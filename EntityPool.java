@@ -0,0 +1,165 @@
+import java.util.*;
+
+/**
+ * Recycles dead animals and plants. A field hands its dead entities back
+ * once nothing refers to them any more, and births take an entity from
+ * the pool and reinitialise it instead of allocating a new one, so a
+ * population in steady state allocates almost no entities. Fields built
+ * with createNext share their predecessor's pool.
+ *
+ * The pool also keeps the one Location of every cell used so far, and
+ * the field of the step before last, emptied, for createNext to build
+ * the next state in. A step in steady state therefore allocates neither
+ * locations nor grids.
+ */
+public class EntityPool {
+
+    // Beyond this many spare entities of one kind the rest are left to the GC.
+    private static final int MAX_SPARE = 1 << 16;
+
+    // Indexed by Species ordinal; null for species that are not pooled.
+    private final List<List<Animal>> animals = new ArrayList<>();
+    private final List<Plant> plants = new ArrayList<>();
+    // The Location of each cell, created the first time it is asked for.
+    private final ChunkedGrid<Location> locations = new ChunkedGrid<>();
+    // An emptied field for the next step to be built in, or null.
+    private Field spareField;
+
+    public EntityPool()
+    {
+        for(Species species : Species.values()) {
+            animals.add(species.isAnimal() ? new ArrayList<>() : null);
+        }
+    }
+
+    /**
+     * Give birth to an animal: a recycled one if there is one spare,
+     * otherwise a new one. Either way it is young and alive.
+     * @param species The species of the animal.
+     * @param location Where it is born.
+     * @return The newborn animal.
+     */
+    public Animal newborn(Species species, Location location)
+    {
+        List<Animal> spare = animals.get(species.ordinal());
+        if(spare == null) {
+            throw new IllegalArgumentException("Not an animal species: " + species);
+        }
+        if(spare.isEmpty()) {
+            return switch (species) {
+                case MOUSE -> new Mouse(false, location);
+                case OWL -> new Owl(false, location);
+                case CAT -> new Cat(false, location);
+                case WOLF -> new Wolf(false, location);
+                default -> new Deer(false, location);
+            };
+        }
+        Animal animal = spare.remove(spare.size() - 1);
+        animal.revive(location);
+        return animal;
+    }
+
+    /**
+     * @return A recycled or new plant at the given location.
+     */
+    public Plant newPlant(Location location)
+    {
+        if(plants.isEmpty()) {
+            return new Plant(location);
+        }
+        Plant plant = plants.remove(plants.size() - 1);
+        plant.revive(location);
+        return plant;
+    }
+
+    /**
+     * @return The Location of a cell. Locations are immutable, so one per
+     *         cell is shared by every entity and query of every field
+     *         using this pool.
+     */
+    public Location location(int row, int col)
+    {
+        Location location = locations.get(row, col);
+        if(location == null) {
+            location = new Location(row, col);
+            locations.put(row, col, location);
+        }
+        return location;
+    }
+
+    /**
+     * Keep an emptied field for reuse; see Field.createNext.
+     */
+    public void keepField(Field field)
+    {
+        spareField = field;
+    }
+
+    /**
+     * @return The field kept for reuse, or null; it is handed out once.
+     */
+    public Field takeField()
+    {
+        Field field = spareField;
+        spareField = null;
+        return field;
+    }
+
+    /**
+     * Take back a dead animal. The caller guarantees that no field, list
+     * or queue still refers to it.
+     */
+    public void release(Animal animal)
+    {
+        List<Animal> spare = animals.get(Species.of(animal).ordinal());
+        if(spare.size() < MAX_SPARE) {
+            spare.add(animal);
+        }
+    }
+
+    /**
+     * Take back a dead plant. The caller guarantees that no field, list
+     * or queue still refers to it.
+     */
+    public void release(Plant plant)
+    {
+        if(plants.size() < MAX_SPARE) {
+            plants.add(plant);
+        }
+    }
+
+    /**
+     * Count the spare entities and their lists, the spare field, and the
+     * locations of the cells.
+     */
+    public void accountMemory(MemoryFootprint footprint)
+    {
+        MemoryLayout layout = footprint.getLayout();
+        footprint.add(MemoryFootprint.Part.LOCATIONS, locations.estimateBytes(layout)
+                                                      + locations.size() * layout.instance(Location.class));
+        if(spareField != null) {
+            spareField.accountSpareMemory(footprint);
+        }
+        footprint.add(MemoryFootprint.Part.POOL, layout.instance(EntityPool.class)
+                                                 + layout.arrayList(animals.size()) + layout.arrayList(plants.size()));
+        for(List<Animal> spare : animals) {
+            if(spare != null) {
+                footprint.add(MemoryFootprint.Part.POOL, layout.arrayList(spare.size()));
+                spare.forEach(footprint::addSpare);
+            }
+        }
+        plants.forEach(footprint::addSpare);
+    }
+
+    /**
+     * @return The number of spare entities of a species.
+     */
+    public int getSpareCount(Species species)
+    {
+        if(species == Species.PLANT) {
+            return plants.size();
+        }
+        List<Animal> spare = animals.get(species.ordinal());
+        return spare == null ? 0 : spare.size();
+    }
+}
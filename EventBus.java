@@ -0,0 +1,285 @@
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A stream of what happens during a run: births, kills, deaths,
+ * infections and earthquakes. The thread stepping the simulation writes
+ * each event as four ints into a preallocated ring; a thread of the bus
+ * drains the ring and hands the events to the listeners, so a slow
+ * listener such as a log file never runs on the step loop.
+ *
+ * There is one producer and one consumer, so the ring needs no locks:
+ * each side owns one position counter and publishes it with release
+ * semantics. When the ring is full the producer waits rather than
+ * dropping events, unless the bus has been closed or its thread has
+ * died; events published then are counted as dropped.
+ *
+ * Like Heatmaps, the simulation publishes to the bus attached to its
+ * thread. A bus is only active while it is open and has a listener, so
+ * events nobody would receive are not published, and until some bus
+ * has a listener the recording calls cost one branch.
+ *
+ * A listener that throws is unsubscribed so it cannot stall the run.
+ * The first exception is kept, see getFailure, and thrown by close.
+ */
+public class EventBus implements AutoCloseable {
+
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    // Ints per event: type, subject and detail; step; row; column.
+    private static final int RECORD_INTS = 4;
+    private static final long IDLE_NANOS = 100_000;
+    private static final ThreadLocal<EventBus> ACTIVE = new ThreadLocal<>();
+    // The number of open buses with at least one listener.
+    private static volatile int listenedBuses;
+
+    private final int[] ring;
+    private final int capacity;
+    private final int mask;
+    // Events written and events consumed, counted from the start.
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+    // The producer's last view of head, re-read only when the ring seems full.
+    private long cachedHead;
+    private int step;
+    private final List<EventListener> listeners = new CopyOnWriteArrayList<>();
+    private final Thread drainer;
+    private volatile boolean closed;
+    // Whether this bus is counted in listenedBuses.
+    private volatile boolean listened;
+    private volatile Throwable failure;
+    private long dropped;
+
+    public EventBus()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Create a bus and start its thread.
+     * @param capacity How many events the ring holds, rounded up to a
+     *                 power of two.
+     */
+    public EventBus(int capacity)
+    {
+        if(capacity <= 0) {
+            throw new IllegalArgumentException("The capacity must be positive, got " + capacity);
+        }
+        int rounded = 1;
+        while(rounded < capacity) {
+            rounded <<= 1;
+        }
+        this.capacity = rounded;
+        mask = rounded - 1;
+        ring = new int[rounded * RECORD_INTS];
+        drainer = new Thread(this::drain, "event-bus");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    /**
+     * Make this bus the one the calling thread publishes to.
+     * @param bus The bus, or null to stop publishing.
+     */
+    public static void attach(EventBus bus)
+    {
+        if(bus == null) {
+            ACTIVE.remove();
+        }
+        else {
+            ACTIVE.set(bus);
+        }
+    }
+
+    /**
+     * @return The bus attached to the calling thread, or null.
+     */
+    public static EventBus active()
+    {
+        if(listenedBuses == 0) {
+            return null;
+        }
+        EventBus bus = ACTIVE.get();
+        return bus == null || !bus.listened ? null : bus;
+    }
+
+    public void subscribe(EventListener listener)
+    {
+        listeners.add(listener);
+        updateListened();
+    }
+
+    public void unsubscribe(EventListener listener)
+    {
+        listeners.remove(listener);
+        updateListened();
+    }
+
+    /**
+     * Set the step stamped on the events published from now on.
+     */
+    public void setStep(int step)
+    {
+        this.step = step;
+    }
+
+    /**
+     * @return How many events have been published.
+     */
+    public long getPublished()
+    {
+        return tail.get();
+    }
+
+    /**
+     * @return How many events were published after the bus was closed or
+     *         its thread died, and so never delivered.
+     */
+    public long getDropped()
+    {
+        return dropped;
+    }
+
+    public boolean isClosed()
+    {
+        return closed;
+    }
+
+    /**
+     * @return The first exception a listener threw, or null. The listener
+     *         was unsubscribed; any later failures are suppressed by it.
+     */
+    public Throwable getFailure()
+    {
+        return failure;
+    }
+
+    /**
+     * Publish an event. Only the thread stepping the simulation may call this.
+     * @param location Where it happened, or null.
+     */
+    public void publish(EventType type, Species subject, int detail, Location location)
+    {
+        if(closed) {
+            dropped++;
+            return;
+        }
+        long position = tail.getPlain();
+        if(position - cachedHead >= capacity) {
+            cachedHead = head.getAcquire();
+            while(position - cachedHead >= capacity) {
+                if(closed || !drainer.isAlive()) {
+                    dropped++;
+                    return;
+                }
+                LockSupport.parkNanos(IDLE_NANOS);
+                cachedHead = head.getAcquire();
+            }
+        }
+        int base = (int) (position & mask) * RECORD_INTS;
+        ring[base] = type.ordinal() << 24 | subject.ordinal() << 16 | (detail & 0xFFFF);
+        ring[base + 1] = step;
+        ring[base + 2] = location == null ? -1 : location.row();
+        ring[base + 3] = location == null ? -1 : location.col();
+        tail.setRelease(position + 1);
+    }
+
+    /**
+     * Deliver every event published so far, then stop the bus's thread
+     * and tell the listeners the stream has ended. If the calling thread
+     * is interrupted it stops waiting for the delivery, and keeps its
+     * interrupt status.
+     * @throws IllegalStateException If a listener failed during the run,
+     *         with its exception as the cause.
+     */
+    @Override
+    public void close()
+    {
+        if(closed) {
+            return;
+        }
+        closed = true;
+        updateListened();
+        LockSupport.unpark(drainer);
+        try {
+            drainer.join();
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if(failure != null) {
+            throw new IllegalStateException("An event listener failed and was unsubscribed", failure);
+        }
+    }
+
+    private void drain()
+    {
+        long position = 0;
+        while(true) {
+            long available = tail.getAcquire();
+            if(available == position) {
+                if(closed && tail.getAcquire() == position) {
+                    break;
+                }
+                LockSupport.parkNanos(IDLE_NANOS);
+                continue;
+            }
+            for(; position < available; position++) {
+                int base = (int) (position & mask) * RECORD_INTS;
+                int header = ring[base];
+                EventType type = EventType.fromId(header >>> 24);
+                Species subject = Species.fromId(header >>> 16 & 0xFF);
+                for(EventListener listener : listeners) {
+                    try {
+                        listener.event(type, ring[base + 1], subject, header & 0xFFFF,
+                                       ring[base + 2], ring[base + 3]);
+                    }
+                    catch(RuntimeException | Error e) {
+                        // A broken listener must not stall the simulation.
+                        listeners.remove(listener);
+                        updateListened();
+                        fail(e);
+                    }
+                }
+            }
+            head.setRelease(position);
+        }
+        for(EventListener listener : listeners) {
+            try {
+                listener.finish();
+            }
+            catch(RuntimeException | Error e) {
+                fail(e);
+            }
+        }
+    }
+
+    private synchronized void fail(Throwable e)
+    {
+        if(failure == null) {
+            failure = e;
+        }
+        else if(failure != e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    /**
+     * Count this bus in listenedBuses while it is open and has listeners.
+     */
+    private synchronized void updateListened()
+    {
+        boolean now = !closed && !listeners.isEmpty();
+        if(now != listened) {
+            listened = now;
+            counted(now ? 1 : -1);
+        }
+    }
+
+    private static synchronized void counted(int change)
+    {
+        listenedBuses += change;
+    }
+}
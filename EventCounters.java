@@ -0,0 +1,78 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Running totals of the events of a bus, safe to read from any thread
+ * while the run goes on: events by type and species, who ate whom, and
+ * deaths by species and cause.
+ */
+public class EventCounters implements EventListener {
+
+    private static final int SPECIES = Species.values().length;
+    private static final int CAUSES = DeathCause.values().length;
+
+    private final AtomicLongArray events = new AtomicLongArray(EventType.values().length * SPECIES);
+    private final AtomicLongArray kills = new AtomicLongArray(SPECIES * SPECIES);
+    private final AtomicLongArray deaths = new AtomicLongArray(SPECIES * CAUSES);
+
+    @Override
+    public void event(EventType type, int step, Species subject, int detail, int row, int col)
+    {
+        events.incrementAndGet(type.ordinal() * SPECIES + subject.ordinal());
+        if(type == EventType.KILL) {
+            kills.incrementAndGet(subject.ordinal() * SPECIES + detail);
+        }
+        else if(type == EventType.DEATH) {
+            deaths.incrementAndGet(subject.ordinal() * CAUSES + detail);
+        }
+    }
+
+    public long getCount(EventType type, Species subject)
+    {
+        return events.get(type.ordinal() * SPECIES + subject.ordinal());
+    }
+
+    /**
+     * @return How many times the predator ate the prey.
+     */
+    public long getKills(Species predator, Species prey)
+    {
+        return kills.get(predator.ordinal() * SPECIES + prey.ordinal());
+    }
+
+    public long getDeaths(Species species, DeathCause cause)
+    {
+        return deaths.get(species.ordinal() * CAUSES + cause.ordinal());
+    }
+
+    /**
+     * @return A table of the counts so far.
+     */
+    public String report()
+    {
+        StringBuilder report = new StringBuilder("species");
+        for(EventType type : EventType.values()) {
+            report.append('\t').append(type);
+        }
+        report.append('\n');
+        for(Species species : Species.values()) {
+            report.append(species);
+            for(EventType type : EventType.values()) {
+                report.append('\t').append(getCount(type, species));
+            }
+            report.append('\n');
+        }
+        report.append("kills");
+        for(Species prey : Species.values()) {
+            report.append('\t').append(prey);
+        }
+        report.append('\n');
+        for(Species predator : Species.values()) {
+            report.append(predator);
+            for(Species prey : Species.values()) {
+                report.append('\t').append(getKills(predator, prey));
+            }
+            report.append('\n');
+        }
+        return report.toString();
+    }
+}
@@ -0,0 +1,22 @@
+/**
+ * Receives the events of an EventBus, on the bus's own thread.
+ */
+public interface EventListener {
+
+    /**
+     * @param type What happened.
+     * @param step The step it happened in.
+     * @param subject Who it happened to; see EventType.
+     * @param detail Depends on the type; see EventType.
+     * @param row The row, or -1 if the event has no location.
+     * @param col The column, or -1 if the event has no location.
+     */
+    void event(EventType type, int step, Species subject, int detail, int row, int col);
+
+    /**
+     * Called once the bus has been closed and every event delivered.
+     */
+    default void finish()
+    {
+    }
+}
@@ -0,0 +1,64 @@
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes the events of a bus to a tab-separated file, one line per
+ * event, and closes the file when the bus is closed.
+ */
+public class EventLog implements EventListener {
+
+    private static final String HEADER = "step\ttype\tsubject\tdetail\trow\tcol";
+
+    private final BufferedWriter out;
+    private IOException failure;
+
+    public EventLog(Path file) throws IOException
+    {
+        out = Files.newBufferedWriter(file);
+        out.write(HEADER);
+        out.newLine();
+    }
+
+    @Override
+    public void event(EventType type, int step, Species subject, int detail, int row, int col)
+    {
+        if(failure != null) {
+            return;
+        }
+        String what = switch (type) {
+            case KILL -> Species.fromId(detail).name();
+            case DEATH -> DeathCause.values()[detail].name();
+            case CALAMITY -> String.valueOf(detail);
+            default -> "";
+        };
+        try {
+            out.write(step + "\t" + type + "\t" + subject + "\t" + what + "\t" + row + "\t" + col);
+            out.newLine();
+        }
+        catch(IOException e) {
+            failure = e;
+        }
+    }
+
+    @Override
+    public void finish()
+    {
+        try {
+            out.close();
+        }
+        catch(IOException e) {
+            if(failure == null) {
+                failure = e;
+            }
+        }
+    }
+
+    /**
+     * @return The first error writing the file, or null.
+     */
+    public IOException getFailure()
+    {
+        return failure;
+    }
+}
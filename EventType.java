@@ -0,0 +1,25 @@
+/**
+ * The kinds of event on an EventBus, and what the subject and detail of
+ * each one hold.
+ */
+public enum EventType {
+    // An animal was born; the subject is its species.
+    BIRTH,
+    // The subject ate something; the detail is the Species ordinal of
+    // what it ate, at the location of the food.
+    KILL,
+    // The subject died; the detail is the DeathCause ordinal.
+    DEATH,
+    // The subject caught a disease from a neighbour.
+    INFECTION,
+    // An earthquake struck; the subject is NONE, the location is the
+    // epicenter and the detail is the radius.
+    CALAMITY;
+
+    private static final EventType[] VALUES = values();
+
+    public static EventType fromId(int id)
+    {
+        return VALUES[id];
+    }
+}
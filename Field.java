@@ -1,31 +1,299 @@
 import java.util.*;
+import java.util.function.Consumer;
 
 public class Field {
     private static final Random rand = Randomizer.getRandom();
     
-    private static int depth = 0, width = 0;
+    private final int depth, width;
     private int currentDepth, currentWidth;
+    private Topology topology = Topology.BOUNDED;
+    private SensingRadii sensingRadii = SensingRadii.DEFAULT;
+    // neighbourRows[k][row] is the row at offset k - 1 from row, wrapped
+    // on a torus; likewise for columns. Tables are never modified, so
+    // fields created by createNext share them.
+    private int[][] neighbourRows, neighbourCols;
     private static final int DEFORESTATION_RATE = 1;
+    // The rows of the field are grouped into strips of this many rows; see
+    // stripParity.
+    public static final int STRIP_ROWS = 16;
 
-    private final Map<Location, Animal> field = new HashMap<>();
-    private final Map<Location, Plant> fieldPlant = new HashMap<>();
-    private final Map<Location, Trap> fieldTrap = new HashMap<>();
+    // Sparse chunked layers: memory follows the occupied area, not the map size.
+    private final ChunkedGrid<Animal> field = new ChunkedGrid<>();
+    // Plants persist across steps; see adoptPlants.
+    private PlantLayer fieldPlant;
+    private final ChunkedGrid<Trap> fieldTrap = new ChunkedGrid<>();
+    // Plants of a neighbouring band; kept apart so they are not adopted.
+    private final ChunkedGrid<Plant> haloPlants = new ChunkedGrid<>();
+    // Every entity of a neighbouring band placed in this field, with its
+    // cell, and the cells where an animal of this field was placed onto
+    // one of its animals; see placeHalo.
+    private final Map<Object, Location> halo = new IdentityHashMap<>();
+    private final List<Location> displacedHalo = new ArrayList<>();
+    // One occupancy bitmap per animal species, indexed by Species ordinal,
+    // for radius searches and snapshots. The bit of an animal that dies in
+    // its cell is cleared when it is dropped from the entity list, so a
+    // finished step's bitmaps hold live animals only; a search also
+    // clears the bits of dead animals it runs into.
+    private final OccupancyBitmap[] speciesBits = new OccupancyBitmap[Species.values().length];
+    // Bitboards of the cells holding an animal (alive or not), a trap and
+    // a halo plant, for neighbourhood queries a word at a time. The plant
+    // layer keeps its own.
+    private final OccupancyBitmap animalBits;
+    private final OccupancyBitmap trapBits;
+    private final OccupancyBitmap haloPlantBits;
 
-    private final List<Animal> animals = new ArrayList<>();
-    private final List<Plant> plants = new ArrayList<>();
-    private final List<Trap> traps = new ArrayList<>();
+    private final EntityList<Animal> animals = new EntityList<>();
+    private final EntityList<Trap> traps = new EntityList<>();
+
+    // Shared with every field created from this one by createNext.
+    private final EntityPool pool;
+    // Dead animals still in this field's cells, recycled one step later.
+    private final List<Animal> deadInCells = new ArrayList<>();
+    // Cells of live animals that placeAnimal dropped from the entity list
+    // when another animal moved onto them. Searches still see them, but
+    // they are not part of the population, so snapshots leave them out.
+    private final List<Location> unlistedCells = new ArrayList<>();
+    // How the grids are visited; shared like the pool.
+    private ScanStrategy scans = new ScanStrategy();
+    // The lists returned by getFreeAdjacentLocations and
+    // getAdjacentLocations, refilled by every call.
+    private final List<Location> freeAdjacent = new ArrayList<>(8);
+    private final List<Location> adjacent = new ArrayList<>(8);
+    // The bitmaps of the species a findNearest call looks for.
+    private final OccupancyBitmap[] searchMaps = new OccupancyBitmap[Species.values().length];
 
 
     public Field(int depth, int width)
     {
-        if (Field.depth == 0){
-            Field.depth = depth;
-        }
-        if (Field.width == 0){
-            Field.width = width;
-        }
+        this(depth, width, new EntityPool(), null);
+    }
+
+    /**
+     * @param plants The plant layer, or null for a new empty one.
+     */
+    private Field(int depth, int width, EntityPool pool, PlantLayer plants)
+    {
+        this.depth = depth;
+        this.width = width;
         this.currentDepth = depth;
         this.currentWidth = width;
+        buildNeighbourTables();
+        this.pool = pool;
+        this.fieldPlant = plants != null ? plants : new PlantLayer(width, pool);
+        this.animalBits = new OccupancyBitmap(width);
+        this.trapBits = new OccupancyBitmap(width);
+        this.haloPlantBits = new OccupancyBitmap(width);
+        for(int i = 0; i < speciesBits.length; i++) {
+            speciesBits[i] = new OccupancyBitmap(width);
+        }
+    }
+
+    /**
+     * Create the empty field that the next step is built in. It has the
+     * same full and current dimensions, topology, sensing radii, entity
+     * pool and scan strategy, and already refers to this field's plant
+     * layer, which it takes over with adoptPlants. It is the field
+     * recycleDead last gave back to the pool, if any, so its grids and
+     * lists are reused.
+     */
+    public Field createNext()
+    {
+        Field next = pool.takeField();
+        if(next == null) {
+            next = new Field(depth, width, pool, fieldPlant);
+        }
+        next.fieldPlant = fieldPlant;
+        next.scans = scans;
+        next.currentDepth = currentDepth;
+        next.currentWidth = currentWidth;
+        next.topology = topology;
+        next.sensingRadii = sensingRadii;
+        next.neighbourRows = neighbourRows;
+        next.neighbourCols = neighbourCols;
+        return next;
+    }
+
+    /**
+     * Count the grids, bitmaps and lists of an emptied field kept for
+     * reuse as part of the pool.
+     */
+    void accountSpareMemory(MemoryFootprint footprint)
+    {
+        MemoryLayout layout = footprint.getLayout();
+        long bytes = layout.instance(Field.class) + field.estimateBytes(layout) + fieldTrap.estimateBytes(layout)
+                     + haloPlants.estimateBytes(layout) + animalBits.estimateBytes(layout)
+                     + trapBits.estimateBytes(layout) + haloPlantBits.estimateBytes(layout)
+                     + animals.estimateBytes(layout) + traps.estimateBytes(layout);
+        for(OccupancyBitmap bits : speciesBits) {
+            bytes += bits.estimateBytes(layout);
+        }
+        footprint.add(MemoryFootprint.Part.POOL, bytes);
+    }
+
+    /**
+     * Empty this field's grids and lists, keeping their storage, so it
+     * can be reused by createNext. Its entities are left alone, as they
+     * have moved on to later fields.
+     */
+    private void recycle()
+    {
+        field.clear();
+        fieldTrap.clear();
+        haloPlants.clear();
+        for(OccupancyBitmap bits : speciesBits) {
+            bits.clear();
+        }
+        animalBits.clear();
+        trapBits.clear();
+        haloPlantBits.clear();
+        halo.clear();
+        displacedHalo.clear();
+        unlistedCells.clear();
+        animals.abandon();
+        traps.abandon();
+    }
+
+    /**
+     * @return The Location of a cell, shared by every field of the run,
+     *         so asking for one does not allocate.
+     */
+    public Location location(int row, int col)
+    {
+        return pool.location(row, col);
+    }
+
+    /**
+     * Count the memory this field holds, by subsystem. The plant layer
+     * and the pool are shared with the fields of the previous steps.
+     */
+    public void accountMemory(MemoryFootprint footprint)
+    {
+        MemoryLayout layout = footprint.getLayout();
+        animals.forEach(footprint::addEntity);
+        deadInCells.forEach(footprint::addEntity);
+        traps.forEach(footprint::addEntity);
+        fieldPlant.accountMemory(footprint);
+        pool.accountMemory(footprint);
+
+        long grids = layout.instance(Field.class) + field.estimateBytes(layout) + fieldTrap.estimateBytes(layout)
+                     + haloPlants.estimateBytes(layout);
+        for(int[][] table : new int[][][] { neighbourRows, neighbourCols }) {
+            grids += layout.objectArray(table.length);
+            for(int[] offsets : table) {
+                grids += layout.intArray(offsets.length);
+            }
+        }
+        footprint.add(MemoryFootprint.Part.GRIDS, grids);
+
+        long bitmaps = layout.objectArray(speciesBits.length) + animalBits.estimateBytes(layout)
+                       + trapBits.estimateBytes(layout) + haloPlantBits.estimateBytes(layout);
+        for(OccupancyBitmap bits : speciesBits) {
+            bitmaps += bits.estimateBytes(layout);
+        }
+        footprint.add(MemoryFootprint.Part.BITMAPS, bitmaps);
+
+        footprint.add(MemoryFootprint.Part.LISTS, animals.estimateBytes(layout) + traps.estimateBytes(layout)
+                                                  + layout.arrayList(deadInCells.size())
+                                                  + layout.arrayList(unlistedCells.size()));
+    }
+
+    /**
+     * Create an independent copy of this field for a branch of the
+     * simulation. Animals and traps are copied, since every one of them is
+     * re-placed each step anyway; the plant layer, which persists, is
+     * shared copy-on-write, so the fork costs memory only for the plant
+     * chunks either field changes later. The fork has its own entity pool.
+     * Call between steps.
+     * @return The fork.
+     */
+    public Field fork()
+    {
+        EntityPool forkPool = new EntityPool();
+        Field fork = new Field(depth, width, forkPool, fieldPlant.fork(forkPool));
+        fork.currentDepth = currentDepth;
+        fork.currentWidth = currentWidth;
+        fork.topology = topology;
+        fork.sensingRadii = sensingRadii;
+        fork.neighbourRows = neighbourRows;
+        fork.neighbourCols = neighbourCols;
+        fork.scans = scans.copy();
+        // Copy the grid, dead animals included since the next step can
+        // see them, then the list in its own order.
+        Map<Animal, Animal> copies = new IdentityHashMap<>();
+        field.forEachLiveChunk((originRow, originCol) -> {
+            for(int row = originRow; row < originRow + ChunkedGrid.CHUNK_SIZE; row++) {
+                for(int col = originCol; col < originCol + ChunkedGrid.CHUNK_SIZE; col++) {
+                    Animal animal = field.get(row, col);
+                    if(animal != null) {
+                        Animal copy = copies.computeIfAbsent(animal, Animal::copy);
+                        fork.field.put(row, col, copy);
+                        fork.animalBits.set(row, col);
+                        if(copy.isAlive()) {
+                            fork.speciesBits[Species.of(copy).ordinal()].set(row, col);
+                        }
+                    }
+                }
+            }
+        });
+        for(int i = 0; i < animals.size(); i++) {
+            Animal copy = copies.computeIfAbsent(animals.get(i), Animal::copy);
+            fork.animals.add(copy, animals.getKey(i));
+        }
+        fork.unlistedCells.addAll(unlistedCells);
+        for(Animal animal : deadInCells) {
+            fork.deadInCells.add(copies.get(animal));
+        }
+        for(Trap trap : traps) {
+            Trap copy = trap.copy();
+            fork.fieldTrap.put(trap.getLocation(), copy);
+            fork.trapBits.set(trap.getLocation().row(), trap.getLocation().col());
+            fork.traps.add(copy, Zobrist.key(Species.TRAP, trap.getLocation()));
+        }
+        return fork;
+    }
+
+    public Topology getTopology()
+    {
+        return topology;
+    }
+
+    public void setTopology(Topology topology)
+    {
+        this.topology = topology;
+        buildNeighbourTables();
+    }
+
+    /**
+     * @return How far the animals of a species sense food in this field.
+     */
+    public int getSensingRadius(Species species)
+    {
+        return sensingRadii.of(species);
+    }
+
+    public void setSensingRadii(SensingRadii sensingRadii)
+    {
+        this.sensingRadii = sensingRadii;
+    }
+
+    /**
+     * @return The number of steps a king would need between two cells,
+     *         taking the shorter way round on a torus.
+     */
+    public int distance(Location a, Location b)
+    {
+        int rows = Math.abs(a.row() - b.row());
+        int cols = Math.abs(a.col() - b.col());
+        if(topology.wraps()) {
+            rows = Math.min(rows, wrapDepth() - rows);
+            cols = Math.min(cols, wrapWidth() - cols);
+        }
+        return Math.max(rows, cols);
+    }
+
+    public EntityPool getPool()
+    {
+        return pool;
     }
 
     public void placeAnimal(Animal anAnimal, Location location)
@@ -33,48 +301,378 @@ public class Field {
         assert location != null;
         Object other = field.get(location);
         if(other != null && other instanceof Animal animal) {
-            animals.remove(animal);
+            if(!animals.remove(animal) && halo.containsKey(animal)) {
+                displacedHalo.add(location);
+            }
+            else if(!animal.isAlive()) {
+                clearDeadBit(animal, location);
+            }
+            else {
+                unlistedCells.add(location);
+            }
         }
         else if (other == null || other instanceof Plant){
             field.put(location, anAnimal);
-            animals.add(anAnimal);
-        }
-        else if (other instanceof Trap){
-            animals.remove(anAnimal);
-            anAnimal.setDead();
+            animalBits.set(location.row(), location.col());
+            animals.add(anAnimal, Zobrist.key(Species.of(anAnimal), location));
+            speciesBits[Species.of(anAnimal).ordinal()].set(location.row(), location.col());
+            Heatmaps heatmaps = Heatmaps.active();
+            if(heatmaps != null) {
+                heatmaps.recordOccupancy(Species.of(anAnimal), location);
+            }
         }
     }
 
     public void placePlant(Plant plant, Location location){
         assert location != null;
-        Object other = field.get(location);
-        if (other != null && other instanceof Trap){
-            plants.remove(plant);
+        // A cell holds at most one plant; a new one replaces the old.
+        fieldPlant.place(plant, location);
+    }
+
+    /**
+     * Kill the plant at a location, e.g. because it was eaten, and remove
+     * it. Plants are only modified through the field, since a plant may be
+     * shared with a fork of the simulation.
+     */
+    public void removePlant(Location location){
+        if(fieldPlant.destroy(location) == null) {
+            // A neighbouring band's plant stays in the halo, marked eaten;
+            // its cell is free for this band's plants around it.
+            Plant plant = haloPlants.get(location);
+            if(plant != null) {
+                plant.setDead();
+                fieldPlant.wake(location);
+            }
+        }
+    }
+
+    /**
+     * Schedule the parked plants around a cell whose plant another band
+     * removed, as removing it here would have.
+     */
+    public void wakePlants(Location location)
+    {
+        fieldPlant.wake(location);
+    }
+
+    /**
+     * Take over the plant layer of the previous step's field. Plants do
+     * not move, so this replaces carrying every plant over one by one.
+     * @param previous The field this one is the next state of.
+     */
+    public void adoptPlants(Field previous){
+        fieldPlant = previous.fieldPlant;
+    }
+
+    /**
+     * Destroy every plant within an earthquake.
+     */
+    public void destroyPlants(Earthquake earthquake){
+        Location epicenter = earthquake.getEpicenter();
+        int radius = earthquake.getRadius();
+        for(int row = epicenter.row() - radius; row <= epicenter.row() + radius; row++) {
+            for(int col = epicenter.col() - radius; col <= epicenter.col() + radius; col++) {
+                Location location = location(row, col);
+                if(fieldPlant.get(location) != null && earthquake.locationWithinCalamity(location)) {
+                    fieldPlant.destroy(location);
+                }
+            }
+        }
+    }
+
+    /**
+     * Seed the plants' draws for the current step; see PlantLayer.setSeed.
+     * The plant layer is handed on to the next field, so this is set on
+     * the field the step starts from.
+     */
+    public void setPlantSeed(long seed)
+    {
+        fieldPlant.setSeed(seed);
+    }
+
+    /**
+     * Take the plant growth events due this step off the wheel; only
+     * plants on the growth frontier are visited.
+     */
+    public void prepareGrowth()
+    {
+        fieldPlant.prepareGrowth();
+    }
+
+    /**
+     * Run the prepared growth events in the strips of one parity.
+     */
+    public void growPlants(int parity)
+    {
+        fieldPlant.grow(this, parity);
+    }
+
+    /**
+     * @return 0 if a row is in an even strip of STRIP_ROWS rows, 1 if it
+     *         is in an odd one. In each step the entities of the even
+     *         strips act before those of the odd ones. Entities read at
+     *         most five rows and change at most two rows away from their
+     *         own, so the strips of one parity do not affect each other,
+     *         and the run is the same whether a process steps every strip
+     *         or only those of its band.
+     */
+    public static int stripParity(int row)
+    {
+        return row / STRIP_ROWS & 1;
+    }
+
+    /**
+     * Visit the live animals of the entity list in the strips of one
+     * parity, in row-major order of their cells, as the animal bitmap
+     * holds them. Unlisted animals, such as those of a halo, are skipped.
+     * Nothing may be placed in this field meanwhile.
+     */
+    public void forEachActingAnimal(int parity, Consumer<Animal> action)
+    {
+        OccupancyBitmap.CellVisitor visitor = (row, col) -> {
+            Animal animal = field.get(row, col);
+            if(animal != null && animal.isAlive() && animals.contains(animal)) {
+                action.accept(animal);
+            }
+        };
+        for(int first = parity * STRIP_ROWS; first < depth; first += 2 * STRIP_ROWS) {
+            animalBits.forEachSet(first, Math.min(first + STRIP_ROWS, depth), visitor);
         }
-        fieldPlant.put(location, plant);
-        plants.add(plant);
     }
 
     public void placeTrap(Trap trap, Location location){
         assert location != null;
-        Object other = field.get(location);
-        if (other != null && other instanceof Animal animal){
+        Animal animal = field.get(location);
+        if(animal != null) {
             animals.remove(animal);
-        }
-        else if (other != null && other instanceof Plant plant){
-            plants.remove(plant);
+            if(animal.isAlive()) {
+                animal.setDead(DeathCause.TRAP);
+            }
+            clearDeadBit(animal, location);
         }
         fieldTrap.put(location, trap);
-        traps.add(trap);
+        trapBits.set(location.row(), location.col());
+        traps.add(trap, Zobrist.key(Species.TRAP, location));
     }
     
+    /**
+     * Install a row of new entities into empty cells, skipping the
+     * collision checks of the place methods. Used to load a whole world.
+     * @param entities One animal, plant, trap or null per column, each
+     *                 already at its location.
+     */
+    public void fillRow(Object[] entities)
+    {
+        for(Object entity : entities) {
+            switch (entity) {
+                case Animal animal -> {
+                    Location location = animal.getLocation();
+                    field.put(location, animal);
+                    animalBits.set(location.row(), location.col());
+                    animals.add(animal, Zobrist.key(Species.of(animal), location));
+                    speciesBits[Species.of(animal).ordinal()].set(location.row(), location.col());
+                }
+                case Plant plant -> placePlant(plant, plant.getLocation());
+                case Trap trap -> {
+                    Location location = trap.getLocation();
+                    fieldTrap.put(location, trap);
+                    trapBits.set(location.row(), location.col());
+                    traps.add(trap, Zobrist.key(Species.TRAP, location));
+                }
+                case null, default -> {
+                }
+            }
+        }
+    }
+
+    /**
+     * Take over the traps of the previous field, in the same order, as
+     * their act methods would. Traps never move, and the animals of the
+     * step never look at this field's traps, so this may run while they
+     * act; evictAnimalsOnTraps must follow once they have.
+     */
+    public void carryTraps(Field previous)
+    {
+        for(Trap trap : previous.traps) {
+            Location location = trap.getLocation();
+            fieldTrap.put(location, trap);
+            trapBits.set(location.row(), location.col());
+            traps.add(trap, Zobrist.key(Species.TRAP, location));
+        }
+    }
+
+    /**
+     * Kill the animals that moved onto a trap and drop them from the
+     * entity list, in trap order, as placeTrap does.
+     */
+    public void evictAnimalsOnTraps()
+    {
+        for(Trap trap : traps) {
+            Animal animal = field.get(trap.getLocation());
+            if(animal != null) {
+                animals.remove(animal);
+                if(animal.isAlive()) {
+                    animal.setDead(DeathCause.TRAP);
+                }
+                clearDeadBit(animal, trap.getLocation());
+            }
+        }
+    }
+
+    /**
+     * Put a read-only copy of a neighbouring band's entity into the grid
+     * without adding it to the entity lists, so it is visible to neighbour
+     * queries but never acts. An animal of this field placed onto a halo
+     * animal is recorded, as the band that owns the animal has to drop it
+     * from its list; see takeDisplacedHalo.
+     */
+    public void placeHalo(Object entity, Location location)
+    {
+        switch (entity) {
+            case Animal animal -> putAnimal(animal, location);
+            case Plant plant -> {
+                haloPlants.put(location, plant);
+                haloPlantBits.set(location.row(), location.col());
+            }
+            case Trap trap -> {
+                fieldTrap.put(location, trap);
+                trapBits.set(location.row(), location.col());
+            }
+            default -> {
+                return;
+            }
+        }
+        halo.put(entity, location);
+    }
+
+    /**
+     * @return Whether an entity was put in this field by placeHalo.
+     */
+    public boolean isHalo(Object entity)
+    {
+        return halo.containsKey(entity);
+    }
+
+    /**
+     * Take every entity put in by placeHalo out of the grids again.
+     */
+    public void clearHalo()
+    {
+        for(Map.Entry<Object, Location> entry : halo.entrySet()) {
+            Location location = entry.getValue();
+            int row = location.row();
+            int col = location.col();
+            switch (entry.getKey()) {
+                case Animal animal -> {
+                    if(field.get(location) == animal) {
+                        field.remove(location);
+                        animalBits.clear(row, col);
+                        speciesBits[Species.of(animal).ordinal()].clear(row, col);
+                    }
+                }
+                case Plant plant -> {
+                    if(haloPlants.get(location) == plant) {
+                        haloPlants.remove(location);
+                        haloPlantBits.clear(row, col);
+                    }
+                }
+                case Trap trap -> {
+                    if(fieldTrap.get(location) == trap) {
+                        fieldTrap.remove(location);
+                        trapBits.clear(row, col);
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+        halo.clear();
+        displacedHalo.clear();
+    }
+
+    /**
+     * @return The cells where an animal was placed onto a halo animal
+     *         since the last call. placeAnimal leaves the animal already
+     *         there in its cell but drops it from the entity list.
+     */
+    public List<Location> takeDisplacedHalo()
+    {
+        List<Location> taken = new ArrayList<>(displacedHalo);
+        displacedHalo.clear();
+        return taken;
+    }
+
+    /**
+     * Put an animal into a cell without adding it to the entity list, as
+     * for one that died there or was dropped from the list by placeAnimal
+     * in another band; it never acts, but the next step can see it.
+     */
+    public void placeUnlisted(Animal animal, Location location)
+    {
+        putAnimal(animal, location);
+    }
+
+    private void putAnimal(Animal animal, Location location)
+    {
+        field.put(location, animal);
+        animalBits.set(location.row(), location.col());
+        speciesBits[Species.of(animal).ordinal()].set(location.row(), location.col());
+    }
+
+    /**
+     * Drop the animal in a cell from the entity list, leaving it in the
+     * cell, as placeAnimal does when another animal is placed onto it.
+     */
+    public void unlistAnimal(Location location)
+    {
+        Animal animal = field.get(location);
+        if(animal != null) {
+            animals.remove(animal);
+        }
+    }
+
+    /**
+     * @return Whether an animal is in this field's entity list.
+     */
+    public boolean isListed(Animal animal)
+    {
+        return animals.contains(animal);
+    }
+
+    /**
+     * Take the animal and the plant in a cell out of this field without
+     * waking any plant, because they now belong to another band.
+     */
+    public void handOver(Location location)
+    {
+        Animal animal = field.remove(location);
+        if(animal != null) {
+            animals.remove(animal);
+            animalBits.clear(location.row(), location.col());
+            speciesBits[Species.of(animal).ordinal()].clear(location.row(), location.col());
+        }
+        fieldPlant.take(location);
+    }
+
     public Animal getAnimalAt(Location location)
     {
         return field.get(location);
     }
 
     public Plant getPlantAt(Location location){
-        return fieldPlant.get(location);
+        Plant plant = fieldPlant.get(location);
+        if(plant == null && haloPlants.size() > 0) {
+            plant = haloPlants.get(location);
+        }
+        return plant;
+    }
+
+    /**
+     * @return Whether a cell holds a plant of this field's own layer.
+     */
+    public boolean hasPlant(int row, int col)
+    {
+        return fieldPlant.getBitmap().get(row, col);
     }
 
     public Trap getTrapAt(Location location){
@@ -85,116 +683,572 @@ public class Field {
         return fieldTrap.containsKey(location);
     }
 
-    public List<Location> getFreeAdjacentLocations(Location location)
+    /**
+     * Find the closest live animal of the given species (or plant, if
+     * PLANT is among them) within a square radius, using the occupancy
+     * bitmaps. Rows are searched outwards from the origin, each with a
+     * few word operations, so the cost is about one row scan per unit of
+     * radius rather than one lookup per cell.
+     * @param from The location to search around; it is not itself a match.
+     * @param radius The maximum Chebyshev distance.
+     * @param kinds The species to look for.
+     * @return The nearest match, or null if there is none in range.
+     */
+    public Location findNearest(Location from, int radius, Species... kinds)
     {
-        List<Location> free = new LinkedList<>();
-        List<Location> adjacent = getAdjacentLocations(location);
-        for(Location next : adjacent) {
-            Object item = field.get(next);
-            if(item instanceof Plant || item == null) {
-                free.add(next);
+        OccupancyBitmap[] maps = searchMaps;
+        for(int i = 0; i < kinds.length; i++) {
+            maps[i] = kinds[i] == Species.PLANT ? fieldPlant.getBitmap() : speciesBits[kinds[i].ordinal()];
+        }
+        if(topology.wraps()) {
+            return findNearestWrapped(from, radius, maps, kinds);
+        }
+        int col = from.col();
+        int lo = Math.max(0, col - radius);
+        int hi = Math.min(currentWidth - 1, col + radius);
+        int bestRow = -1;
+        int bestCol = -1;
+        int bestDistance = radius + 1;
+        for(int d = 0; d <= radius && d < bestDistance; d++) {
+            for(int side = d == 0 ? 1 : -1; side <= 1; side += 2) {
+                int row = from.row() + side * d;
+                if(row < 0 || row >= currentDepth) {
+                    continue;
+                }
+                int found;
+                if(d == 0) {
+                    // Search either side of the origin, but not the origin itself.
+                    int right = nearestLive(maps, kinds, row, col + 1, col + 1, hi);
+                    int left = nearestLive(maps, kinds, row, col - 1, lo, col - 1);
+                    found = left < 0 || (right >= 0 && right - col <= col - left) ? right : left;
+                }
+                else {
+                    found = nearestLive(maps, kinds, row, col, lo, hi);
+                }
+                if(found >= 0 && Math.max(d, Math.abs(found - col)) < bestDistance) {
+                    bestDistance = Math.max(d, Math.abs(found - col));
+                    bestRow = row;
+                    bestCol = found;
+                }
             }
-            else if(item instanceof Animal anAnimal && !anAnimal.isAlive()) {
-                free.add(next);
+        }
+        return bestRow < 0 ? null : location(bestRow, bestCol);
+    }
+
+    /**
+     * findNearest on a torus. Rows and columns are searched in unwrapped
+     * coordinates around the origin, and each unwrapped column range is
+     * split where it crosses an edge. The radius is capped at half the
+     * size, the furthest any cell can be; on an even size the cell half
+     * way round is reached both ways, so it is searched from one side only.
+     */
+    private Location findNearestWrapped(Location from, int radius, OccupancyBitmap[] maps, Species[] kinds)
+    {
+        int depth = wrapDepth();
+        int width = wrapWidth();
+        int rowRadius = Math.min(radius, depth / 2);
+        int colRadius = Math.min(radius, width / 2);
+        int col = from.col();
+        // The first column of the range, leaving out the far end's twin.
+        int left = col - colRadius + (2 * colRadius == width ? 1 : 0);
+        int bestRow = -1;
+        int bestCol = -1;
+        int bestDistance = radius + 1;
+        for(int d = 0; d <= rowRadius && d < bestDistance; d++) {
+            // The row d above is also d below on the other side when d is
+            // half the depth, so only the one below is searched.
+            int firstSide = d == 0 || 2 * d == depth ? 1 : -1;
+            for(int side = firstSide; side <= 1; side += 2) {
+                int row = Math.floorMod(from.row() + side * d, depth);
+                int found;
+                if(d == 0) {
+                    int right = nearestWrapped(maps, kinds, row, col, col + 1, col + colRadius, width);
+                    int leftFound = nearestWrapped(maps, kinds, row, col, left, col - 1, width);
+                    found = leftFound == Integer.MIN_VALUE
+                            || (right != Integer.MIN_VALUE && right - col <= col - leftFound) ? right : leftFound;
+                }
+                else {
+                    found = nearestWrapped(maps, kinds, row, col, left, col + colRadius, width);
+                }
+                if(found != Integer.MIN_VALUE && Math.max(d, Math.abs(found - col)) < bestDistance) {
+                    bestDistance = Math.max(d, Math.abs(found - col));
+                    bestRow = row;
+                    bestCol = Math.floorMod(found, width);
+                }
             }
         }
-        return free;
+        return bestRow < 0 ? null : location(bestRow, bestCol);
     }
 
-    public List<Location> getAdjacentLocations(Location location)
+    /**
+     * The live match nearest to a column within an unwrapped column range
+     * of a row; the range is at most one width long.
+     * @return The unwrapped column of the match, or Integer.MIN_VALUE.
+     */
+    private int nearestWrapped(OccupancyBitmap[] maps, Species[] kinds, int row, int col, int lo, int hi, int width)
     {
-        List<Location> locations = new ArrayList<>();
-        if(location != null) {
-            int row = location.row();
-            int col = location.col();
-            for(int roffset = -1; roffset <= 1; roffset++) {
-                int nextRow = row + roffset;
-                if(nextRow >= 0 && nextRow < currentDepth) {
-                    for(int coffset = -1; coffset <= 1; coffset++) {
-                        int nextCol = col + coffset;
-                        // Exclude invalid locations and the original location.
-                        if(nextCol >= 0 && nextCol < currentWidth && (roffset != 0 || coffset != 0)) {
-                            locations.add(new Location(nextRow, nextCol));
-                        }
+        int best = Integer.MIN_VALUE;
+        for(int shift = -width; shift <= width; shift += width) {
+            int from = Math.max(lo, shift);
+            int to = Math.min(hi, shift + width - 1);
+            if(from > to) {
+                continue;
+            }
+            int found = nearestLive(maps, kinds, row, col - shift, from - shift, to - shift);
+            if(found >= 0 && (best == Integer.MIN_VALUE || Math.abs(found + shift - col) < Math.abs(best - col))) {
+                best = found + shift;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * The nearest set bit in a row that holds a live match, clearing any
+     * stale bits of dead animals on the way.
+     */
+    private int nearestLive(OccupancyBitmap[] maps, Species[] kinds, int row, int col, int lo, int hi)
+    {
+        if(lo > hi) {
+            return -1;
+        }
+        int found;
+        while((found = OccupancyBitmap.nearestInRow(maps, kinds.length, row, Math.max(lo, Math.min(col, hi)), lo, hi)) >= 0) {
+            boolean live = false;
+            for(int i = 0; i < kinds.length; i++) {
+                if(maps[i].get(row, found)) {
+                    if(isLive(kinds[i], row, found)) {
+                        live = true;
+                    }
+                    else {
+                        maps[i].clear(row, found);
                     }
                 }
             }
+            if(live) {
+                return found;
+            }
+        }
+        return -1;
+    }
 
-            Collections.shuffle(locations, rand);
+    private boolean isLive(Species kind, int row, int col)
+    {
+        if(kind == Species.PLANT) {
+            Plant plant = fieldPlant.get(row, col);
+            if(plant == null && haloPlants.size() > 0) {
+                plant = haloPlants.get(row, col);
+            }
+            return plant != null && plant.isAlive();
+        }
+        Animal animal = field.get(row, col);
+        return animal != null && animal.isAlive() && Species.of(animal) == kind;
+    }
+
+    /**
+     * @return The adjacent cells without a live animal, in random order.
+     *         The list is this field's own and is refilled by the next
+     *         call; the caller may remove from it.
+     */
+    public List<Location> getFreeAdjacentLocations(Location location)
+    {
+        freeAdjacent.clear();
+        if(location != null) {
+            addLocations(freeAdjacent, location, draw(location, ~liveAnimalMask(location.row(), location.col())));
         }
+        return freeAdjacent;
+    }
+
+    /**
+     * @return The adjacent cells a plant can spread into: no plant, trap
+     *         or live animal. In random order.
+     */
+    public List<Location> getPlantableAdjacentLocations(Location location)
+    {
+        List<Location> locations = new ArrayList<>();
+        addLocations(locations, location, drawPlantableAdjacent(location));
         return locations;
     }
 
+    /**
+     * Draw the adjacent cells a plant can spread into in random order, as
+     * getPlantableAdjacentLocations does, without building a list.
+     * @return The cells drawn; see drawnCount and drawnLocation.
+     */
+    public long drawPlantableAdjacent(Location location)
+    {
+        int row = location.row();
+        int col = location.col();
+        return draw(location, ~(plantMask(row, col) | liveAnimalMask(row, col)));
+    }
+
+    /**
+     * @return The number of adjacent cells with neither a plant nor a trap.
+     */
+    public int countUnplantedAdjacent(Location location)
+    {
+        int row = location.row();
+        int col = location.col();
+        return Integer.bitCount(inBoundsMask(row, col) & ~plantMask(row, col));
+    }
+
+    /**
+     * @return The adjacent cells, in random order. The list is this
+     *         field's own and is refilled by the next call.
+     */
+    public List<Location> getAdjacentLocations(Location location)
+    {
+        adjacent.clear();
+        if(location != null) {
+            addLocations(adjacent, location, draw(location, -1));
+        }
+        return adjacent;
+    }
+
+    // Neighbourhood masks have bit (roffset + 1) * 3 + (coffset + 1) for
+    // the cell at (row + roffset, col + coffset); bit 4 is the centre.
+    // A draw packs the cells it picked into a long: their number in bits
+    // 0-3, then the neighbourhood bit of each cell in four bits, in the
+    // order drawn.
+
+    /**
+     * @return The number of cells in a draw.
+     */
+    public static int drawnCount(long drawn)
+    {
+        return (int) drawn & 15;
+    }
+
+    /**
+     * @return The i-th cell of a draw around a location.
+     */
+    public Location drawnLocation(Location location, long drawn, int i)
+    {
+        int cell = (int) (drawn >>> (4 + 4 * i)) & 15;
+        return location(neighbourRows[cell / 3][location.row()], neighbourCols[cell % 3][location.col()]);
+    }
+
+    /**
+     * Shuffle the adjacent cells inside the bounds, then keep those whose
+     * bit is set in a neighbourhood mask. The shuffle draws the same random
+     * numbers whatever the mask, so filtering does not change the sequence.
+     * The cells are shuffled four bits each within a long.
+     */
+    private long draw(Location location, int keep)
+    {
+        long cells = 0;
+        int count = 0;
+        for(int bits = inBoundsMask(location.row(), location.col()); bits != 0; bits &= bits - 1) {
+            cells |= (long) Integer.numberOfTrailingZeros(bits) << (4 * count++);
+        }
+        // The same swaps as Collections.shuffle on a random access list.
+        for(int i = count; i > 1; i--) {
+            int j = rand.nextInt(i);
+            long swap = ((cells >>> (4 * (i - 1))) ^ (cells >>> (4 * j))) & 15;
+            cells ^= swap << (4 * (i - 1)) | swap << (4 * j);
+        }
+        long drawn = 0;
+        int kept = 0;
+        for(int i = 0; i < count; i++) {
+            int cell = (int) (cells >>> (4 * i)) & 15;
+            if((keep & (1 << cell)) != 0) {
+                drawn |= (long) cell << (4 + 4 * kept++);
+            }
+        }
+        return drawn | kept;
+    }
+
+    private void addLocations(List<Location> locations, Location location, long drawn)
+    {
+        for(int i = 0; i < drawnCount(drawn); i++) {
+            locations.add(drawnLocation(location, drawn, i));
+        }
+    }
+
+    /**
+     * @return The mask of the adjacent cells inside the current bounds;
+     *         on a torus every neighbour is inside.
+     */
+    private int inBoundsMask(int row, int col)
+    {
+        if(topology.wraps()) {
+            return 0b111_101_111;
+        }
+        int cols = 0;
+        for(int c = 0; c < 3; c++) {
+            if(col + c - 1 >= 0 && col + c - 1 < currentWidth) {
+                cols |= 1 << c;
+            }
+        }
+        int mask = 0;
+        for(int r = 0; r < 3; r++) {
+            if(row + r - 1 >= 0 && row + r - 1 < currentDepth) {
+                mask |= cols << (3 * r);
+            }
+        }
+        return mask & ~(1 << 4);
+    }
+
+    /**
+     * @return The mask of the neighbourhood cells holding a live animal.
+     *         Only cells whose bit is set are looked at individually, as a
+     *         dead animal keeps its bit until its cell is cleared.
+     */
+    private int liveAnimalMask(int row, int col)
+    {
+        int occupied = neighbourhood(row, col, animalBits, null, null);
+        for(int bits = occupied; bits != 0; bits &= bits - 1) {
+            int cell = Integer.numberOfTrailingZeros(bits);
+            Animal animal = field.get(neighbourRows[cell / 3][row], neighbourCols[cell % 3][col]);
+            if(animal == null || !animal.isAlive()) {
+                occupied &= ~(1 << cell);
+            }
+        }
+        return occupied;
+    }
+
+    /**
+     * @return The mask of the neighbourhood cells with a plant or a trap.
+     */
+    private int plantMask(int row, int col)
+    {
+        return neighbourhood(row, col, fieldPlant.getBitmap(), haloPlantBits, trapBits);
+    }
+
+    /**
+     * @return The neighbourhood mask of the union of up to three bitmaps.
+     *         Each of the three rows is read once from every bitmap, the
+     *         words ORed, and the three columns shifted out together.
+     */
+    private int neighbourhood(int row, int col, OccupancyBitmap a, OccupancyBitmap b, OccupancyBitmap c)
+    {
+        int left = neighbourCols[0][col];
+        int right = neighbourCols[2][col];
+        int mask = 0;
+        for(int r = 0; r < 3; r++) {
+            int neighbourRow = neighbourRows[r][row];
+            long bits;
+            if(right - left == 2) {
+                bits = union(neighbourRow, left, a, b, c);
+            }
+            else {
+                // The neighbourhood wraps around the left or right edge.
+                bits = union(neighbourRow, left, a, b, c) & 1 | (union(neighbourRow, col, a, b, c) & 1) << 1
+                       | (union(neighbourRow, right, a, b, c) & 1) << 2;
+            }
+            mask |= ((int) bits & 7) << (3 * r);
+        }
+        return mask;
+    }
+
+    private static long union(int row, int start, OccupancyBitmap a, OccupancyBitmap b, OccupancyBitmap c)
+    {
+        long bits = a.bits(row, start);
+        if(b != null) {
+            bits |= b.bits(row, start) | c.bits(row, start);
+        }
+        return bits;
+    }
+
+    /**
+     * Fill the neighbour tables for the current topology and bounds.
+     * Bounded tables hold plain offsets, which may fall outside the field;
+     * inBoundsMask excludes those.
+     */
+    private void buildNeighbourTables()
+    {
+        neighbourRows = neighbourTable(depth, topology.wraps() ? wrapDepth() : 0);
+        neighbourCols = neighbourTable(width, topology.wraps() ? wrapWidth() : 0);
+    }
+
+    /**
+     * @param size The number of rows or columns.
+     * @param wrap The size to wrap at, or 0 not to wrap.
+     */
+    private static int[][] neighbourTable(int size, int wrap)
+    {
+        int[][] table = new int[3][size];
+        for(int k = 0; k < 3; k++) {
+            for(int i = 0; i < size; i++) {
+                int neighbour = i + k - 1;
+                table[k][i] = wrap > 0 && i < wrap ? Math.floorMod(neighbour, wrap) : neighbour;
+            }
+        }
+        return table;
+    }
+
+    private int wrapDepth()
+    {
+        return topology == Topology.TORUS ? depth : currentDepth;
+    }
+
+    private int wrapWidth()
+    {
+        return topology == Topology.TORUS ? width : currentWidth;
+    }
+
     public void fieldStats()
     {
-        int numOwls = 0, numMice = 0, numDeers = 0, numCats = 0, numWolves = 0;
-        for(Animal anAnimal : field.values()) {
+        int[] counts = new int[5];
+        forEachAnimal(anAnimal -> {
             switch (anAnimal) {
                 case Owl owl -> {
                     if(owl.isAlive()) {
-                        numOwls++;
+                        counts[0]++;
                     }
                 }
                 case Mouse mouse -> {
                     if(mouse.isAlive()) {
-                        numMice++;
+                        counts[1]++;
                     }
                 }
                 case Deer deer -> {
                     if(deer.isAlive()) {
-                        numDeers++;
+                        counts[2]++;
                     }
                 }
                 case Cat cat -> {
                     if(cat.isAlive()) {
-                        numCats++;
+                        counts[3]++;
                     }
                 }
                 case Wolf wolf -> {
                     if(wolf.isAlive()) {
-                        numWolves++;
+                        counts[4]++;
                     }
                 }
                 default -> {
                 }
             }
-        }
-        System.out.println("Mice: " + numMice +
-                           " Owls: " + numOwls +
-                           " Cats: " + numCats +
-                           " Wolves: " + numWolves +
-                           " Deers: " + numDeers);
+        });
+        System.out.println("Mice: " + counts[1] +
+                           " Owls: " + counts[0] +
+                           " Cats: " + counts[3] +
+                           " Wolves: " + counts[4] +
+                           " Deers: " + counts[2]);
     }
 
     public void clear()
     {
         field.clear();
+        fieldPlant.clear();
+        fieldTrap.clear();
+        haloPlants.clear();
+        for(OccupancyBitmap bits : speciesBits) {
+            bits.clear();
+        }
+        animalBits.clear();
+        trapBits.clear();
+        haloPlantBits.clear();
+        halo.clear();
+        displacedHalo.clear();
+        unlistedCells.clear();
+        animals.clear();
+        traps.clear();
     }
 
     public void clear(Location location) {
-        // Remove any animal, plant, or trap at this location
-        field.remove(location);
+        // Remove any animal, plant, or trap at this location.
+        // Each entity knows its list slot, so this is a swap-remove.
+        Animal animal = field.remove(location);
+        if(animal != null) {
+            animals.remove(animal);
+            animalBits.clear(location.row(), location.col());
+            speciesBits[Species.of(animal).ordinal()].clear(location.row(), location.col());
+        }
         fieldPlant.remove(location);
-        fieldTrap.remove(location);
+        Trap trap = fieldTrap.remove(location);
+        if(trap != null) {
+            traps.remove(trap);
+            trapBits.clear(location.row(), location.col());
+        }
+    }
 
-        // Remove from the lists, checking for null locations
+    /**
+     * Drop dead animals from the entity list. Called once per step, so
+     * deaths during the step cost nothing extra. Plants are removed from
+     * their layer as soon as they die.
+     */
+    public void compactDead()
+    {
         animals.removeIf(animal -> {
-            Location loc = animal.getLocation();
-            return loc != null && loc.equals(location);
+            if(animal.isAlive()) {
+                return false;
+            }
+            clearDeadBit(animal, animal.getDeathLocation());
+            return true;
         });
+    }
 
-        plants.removeIf(plant -> {
-            Location loc = plant.getLocation();
-            return loc != null && loc.equals(location);
-        });
+    /**
+     * Clear the species bit of a dead animal if it is still in the given
+     * cell. It stays in the grid, where the next step can see it.
+     */
+    private void clearDeadBit(Animal animal, Location location)
+    {
+        if(location != null && field.get(location) == animal) {
+            speciesBits[Species.of(animal).ordinal()].clear(location.row(), location.col());
+        }
+    }
 
-        traps.removeIf(trap -> {
-            Location loc = trap.getLocation();
-            return loc != null && loc.equals(location);
-        });
+    /**
+     * Return the animals that died during the step from the previous field
+     * to this one to the pool. Animals that died after moving into this
+     * field still sit in its cells, where the next step can see them, so
+     * they are held back until this field is itself the previous one.
+     * Call once this field is complete; the previous field must not be
+     * used afterwards, as its dead animals may be reborn.
+     * @param previous The field this one is the next state of.
+     */
+    public void recycleDead(Field previous)
+    {
+        previous.deadInCells.forEach(pool::release);
+        previous.deadInCells.clear();
+        for(int i = 0; i < previous.animals.size(); i++) {
+            Animal animal = previous.animals.get(i);
+            if(animal.isAlive()) {
+                continue;
+            }
+            Location location = animal.getDeathLocation();
+            if(location != null && field.get(location) == animal) {
+                deadInCells.add(animal);
+            }
+            else {
+                pool.release(animal);
+            }
+        }
+        previous.recycle();
+        pool.keepField(previous);
     }
 
 
+    /**
+     * The Zobrist hash of the entities in this field: the XOR of a key for
+     * every (species, cell) pair held in the entity lists. It is updated
+     * on every placement and removal, and for dead animals when they are
+     * compacted away, so reading it never needs a scan. Two fields with
+     * the same entities in the same cells have the same hash.
+     * @return The state hash.
+     */
+    public long getStateHash()
+    {
+        return animals.getHash() ^ traps.getHash() ^ fieldPlant.getHash();
+    }
+
+    /**
+     * Count the live animals of each species.
+     * @return Counts indexed by Species ordinal.
+     */
+    public int[] getPopulationCounts()
+    {
+        int[] counts = new int[Species.values().length];
+        for(Animal animal : animals) {
+            if(animal.isAlive()) {
+                counts[Species.of(animal).ordinal()]++;
+            }
+        }
+        return counts;
+    }
+
     public boolean isViable()
     {
         boolean mouseFound = false; 
@@ -234,16 +1288,131 @@ public class Field {
         return mouseFound && owlFound && deerFound && catFound && wolfFound;
     }   
     
+    /**
+     * Visit every animal held in the grid, dead ones included, in no
+     * particular order: by scanning the live chunks or through the
+     * occupancy bitmap, as the scan strategy chose for this step.
+     */
+    public void forEachAnimal(Consumer<Animal> action)
+    {
+        if(scans.getMode(ScanStrategy.Layer.ANIMALS) == ScanStrategy.Mode.DENSE) {
+            field.forEach(action);
+        }
+        else {
+            animalBits.forEachSet((row, col) -> {
+                Animal animal = field.get(row, col);
+                if(animal != null) {
+                    action.accept(animal);
+                }
+            });
+        }
+    }
+
+    /**
+     * Choose how the animal and plant grids are visited until the next
+     * call, from how full their live chunks are. Call once per step.
+     */
+    public void chooseScanModes()
+    {
+        long chunkCells = (long) ChunkedGrid.CHUNK_SIZE * ChunkedGrid.CHUNK_SIZE;
+        scans.update(ScanStrategy.Layer.ANIMALS, field.size(), field.getChunkCount() * chunkCells);
+        scans.update(ScanStrategy.Layer.PLANTS, fieldPlant.size(), fieldPlant.getChunkCount() * chunkCells);
+    }
+
+    public ScanStrategy getScanStrategy()
+    {
+        return scans;
+    }
+
+    /**
+     * @return The number of chunks allocated across all layers.
+     */
+    public int getLiveChunkCount()
+    {
+        return field.getChunkCount() + fieldPlant.getChunkCount() + fieldTrap.getChunkCount();
+    }
+
     public List<Animal> getAnimals()
     {
         return animals;
     }
 
+    /**
+     * @return A new list of the plants, in no particular order.
+     */
     public List<Plant> getPlants()
     {
+        List<Plant> plants = new ArrayList<>(fieldPlant.size());
+        forEachPlant(plants::add);
         return plants;
     }
 
+    public int getPlantCount()
+    {
+        return fieldPlant.size();
+    }
+
+    /**
+     * @return The plant occupancy as it is now, unaffected by later steps:
+     *         a fork sharing its rows with the live plant layer until the
+     *         layer writes to them.
+     */
+    public OccupancyBitmap forkPlantBits()
+    {
+        return fieldPlant.getBitmap().fork();
+    }
+
+    /**
+     * @return Forks, as forkPlantBits, of the occupancy of each animal
+     *         species, indexed by Species ordinal, with null for the
+     *         other species. Once a step is done they hold the animals
+     *         of the entity list only.
+     */
+    public OccupancyBitmap[] forkAnimalBits()
+    {
+        OccupancyBitmap[] forks = new OccupancyBitmap[speciesBits.length];
+        for(Species species : Species.values()) {
+            if(species.isAnimal()) {
+                forks[species.ordinal()] = speciesBits[species.ordinal()].fork();
+            }
+        }
+        for(int i = 0; i < unlistedCells.size(); i++) {
+            Location location = unlistedCells.get(i);
+            Animal animal = field.get(location);
+            if(animal != null && !animals.contains(animal)) {
+                forks[Species.of(animal).ordinal()].clear(location.row(), location.col());
+            }
+        }
+        return forks;
+    }
+
+    /**
+     * @return A fork, as forkPlantBits, of the trap occupancy.
+     */
+    public OccupancyBitmap forkTrapBits()
+    {
+        return trapBits.fork();
+    }
+
+    /**
+     * @return The cells whose plant came or went since the reader last
+     *         asked, or null if it has to visit every plant instead.
+     * @see PlantLayer#takeChanges
+     */
+    public List<Location> takePlantChanges(Object reader)
+    {
+        return fieldPlant.takeChanges(reader);
+    }
+
+    /**
+     * Visit every plant in no particular order, as the scan strategy
+     * chose for this step. The plants must only be read.
+     */
+    public void forEachPlant(Consumer<Plant> action)
+    {
+        fieldPlant.forEach(action, scans.getMode(ScanStrategy.Layer.PLANTS));
+    }
+
     public List<Trap> getTraps()
     {
         return traps;
@@ -270,13 +1439,21 @@ public class Field {
     }
 
     public void triggerDeforestation(){
+        if(topology == Topology.TORUS) {
+            return;
+        }
+        int oldDepth = currentDepth, oldWidth = currentWidth;
         if (currentDepth > 2 * DEFORESTATION_RATE && currentWidth > 2 * DEFORESTATION_RATE){
             currentDepth -= DEFORESTATION_RATE;
             currentWidth -= DEFORESTATION_RATE;
         }
+        if(topology == Topology.TORUS_WITHIN_BOUNDS) {
+            buildNeighbourTables();
+        }
 
         animals.removeIf(animal -> !isInsideBounds(animal.getLocation()));
-        plants.removeIf(plant -> !isInsideBounds(plant.getLocation()));
+        // Only the cleared strip is visited for plants.
+        fieldPlant.removeOutside(oldDepth, oldWidth, currentDepth, currentWidth);
         traps.removeIf(trap -> !isInsideBounds(trap.getLocation()));
         
     }
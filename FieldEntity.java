@@ -0,0 +1,17 @@
+/**
+ * Something that can be placed in a Field and kept in one of its
+ * entity lists. The slot is the entity's index in the list it was most
+ * recently added to, which lets the list remove it without a scan.
+ */
+public interface FieldEntity {
+
+    Location getLocation();
+
+    /**
+     * @return The index of this entity in its owning EntityList,
+     *         or -1 if it is not in a list.
+     */
+    int getSlot();
+
+    void setSlot(int slot);
+}
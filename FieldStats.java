@@ -95,14 +95,8 @@ public class FieldStats {
     private void generateCounts(Field field)
     {
         reset();
-        for(int row = 0; row < field.getDepth(); row++) {
-            for(int col = 0; col < field.getWidth(); col++) {
-                Animal animal = field.getAnimalAt(new Location(row, col));
-                if(animal != null) {
-                    incrementCount(animal.getClass());
-                }
-            }
-        }
+        // Only the live chunks of the field are visited.
+        field.forEachAnimal(animal -> incrementCount(animal.getClass()));
         countsValid = true;
     }
 }
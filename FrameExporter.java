@@ -0,0 +1,297 @@
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Writes every k-th step of a run as a numbered PNG, frame-000000.png
+ * onwards, for turning headless runs into movies, for example with
+ *   ffmpeg -framerate 20 -i frame-%06d.png run.mp4
+ * Cells are coloured as in WorldLoader images, scaled up to a square of
+ * pixels, with the area of an earthquake tinted red.
+ *
+ * The simulation thread only paints the cells into a raster of one int
+ * per cell, taken from a fixed set of buffers. Scaling and PNG encoding
+ * happen on a pool of encoder threads, which hand the buffer back when
+ * the file is written. When every buffer is still waiting to be encoded
+ * the backpressure policy decides: DROP skips the frame, so the run goes
+ * on at full speed with gaps in the movie, and THROTTLE waits for a
+ * buffer, so every frame is kept and the run slows to the encoders' pace.
+ *
+ * An encoder that fails on a frame records the failure and goes on with
+ * the next one, so buffers keep coming back and THROTTLE cannot wait
+ * forever. Once a frame has failed, the next stepCompleted throws, which
+ * stops the run, and close throws without waiting for the frames left.
+ *
+ * Usage: java FrameExporter directory steps [depth width seed [interval [encoders [scale [drop|throttle]]]]]
+ */
+public class FrameExporter implements SimulationObserver, AutoCloseable {
+
+    /**
+     * What to do with a frame when the encoders are behind.
+     */
+    public enum Backpressure {
+        DROP,
+        THROTTLE
+    }
+
+    private static final int EARTHQUAKE_RGB = 0xFF0000;
+    private static final Frame END = new Frame(-1, 0, 0, null, null);
+
+    private final Path directory;
+    private final int interval;
+    private final int scale;
+    private final Backpressure policy;
+    private final BlockingQueue<int[]> freeBuffers;
+    private final BlockingQueue<Frame> frames;
+    private final ExecutorService encoders;
+    private final List<Future<?>> workers = new ArrayList<>();
+    private final AtomicInteger written = new AtomicInteger();
+    private final AtomicInteger dropped = new AtomicInteger();
+    // The first exception of an encoder; later ones are suppressed by it.
+    private volatile Throwable failure;
+    private boolean closed;
+
+    /**
+     * @param directory Where the frames go; created if missing.
+     * @param interval Export every interval-th step.
+     * @param encoders The number of encoder threads.
+     * @param buffers How many frames may wait for or be in encoding.
+     * @param scale The side of the square of pixels for each cell.
+     * @param policy What to do when all buffers are in use.
+     */
+    public FrameExporter(Path directory, int interval, int encoders, int buffers, int scale,
+                         Backpressure policy) throws IOException
+    {
+        if(interval < 1 || encoders < 1 || buffers < 1 || scale < 1) {
+            throw new IllegalArgumentException("Interval, encoders, buffers and scale must be positive");
+        }
+        this.directory = Files.createDirectories(directory);
+        this.interval = interval;
+        this.scale = scale;
+        this.policy = policy;
+        freeBuffers = new ArrayBlockingQueue<>(buffers);
+        frames = new ArrayBlockingQueue<>(buffers + encoders);
+        for(int i = 0; i < buffers; i++) {
+            freeBuffers.add(new int[0]);
+        }
+        this.encoders = Executors.newFixedThreadPool(encoders, task -> {
+            Thread thread = new Thread(task, "frame-encoder");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for(int i = 0; i < encoders; i++) {
+            workers.add(this.encoders.submit(this::encode));
+        }
+    }
+
+    /**
+     * @throws IllegalStateException If an earlier frame could not be
+     *         written, with the encoder's exception as the cause.
+     */
+    @Override
+    public void stepCompleted(int step, Field field, Earthquake earthquake)
+    {
+        if(failure != null) {
+            throw new IllegalStateException("A frame could not be written", failure);
+        }
+        if(step % interval != 0) {
+            return;
+        }
+        int[] pixels = freeBuffers.poll();
+        if(pixels == null) {
+            if(policy == Backpressure.DROP) {
+                dropped.incrementAndGet();
+                return;
+            }
+            try {
+                pixels = freeBuffers.take();
+            }
+            catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                dropped.incrementAndGet();
+                return;
+            }
+        }
+        int width = field.getWidth();
+        int depth = field.getDepth();
+        if(pixels.length != width * depth) {
+            // Buffers start empty and are sized by the first frames.
+            pixels = new int[width * depth];
+        }
+        render(field, pixels);
+        // Cannot block: there are never more frames than buffers.
+        frames.add(new Frame(step / interval, width, depth, pixels, earthquake));
+    }
+
+    /**
+     * Paint the cells of a field, one int per cell, in the order
+     * WorldLoader.save uses: traps over animals over plants.
+     */
+    private static void render(Field field, int[] pixels)
+    {
+        int width = field.getWidth();
+        Arrays.fill(pixels, WorldLoader.rgb(Species.NONE));
+        int plant = WorldLoader.rgb(Species.PLANT);
+        field.forEachPlant(p -> pixels[p.getLocation().row() * width + p.getLocation().col()] = plant);
+        for(Animal animal : field.getAnimals()) {
+            if(animal.isAlive()) {
+                Location location = animal.getLocation();
+                pixels[location.row() * width + location.col()] = WorldLoader.rgb(Species.of(animal));
+            }
+        }
+        int trap = WorldLoader.rgb(Species.TRAP);
+        for(Trap t : field.getTraps()) {
+            pixels[t.getLocation().row() * width + t.getLocation().col()] = trap;
+        }
+    }
+
+    private void encode()
+    {
+        try {
+            for(Frame frame = frames.take(); frame != END; frame = frames.take()) {
+                try {
+                    write(frame);
+                    written.incrementAndGet();
+                }
+                catch(IOException | RuntimeException | Error e) {
+                    // The encoder must live on to hand the buffer back.
+                    fail(e);
+                }
+                finally {
+                    freeBuffers.add(frame.pixels());
+                }
+            }
+        }
+        catch(InterruptedException e) {
+            // Closed without waiting.
+        }
+    }
+
+    private synchronized void fail(Throwable e)
+    {
+        if(failure == null) {
+            failure = e;
+        }
+        else if(failure != e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    private void write(Frame frame) throws IOException
+    {
+        int width = frame.width() * scale;
+        BufferedImage image = new BufferedImage(width, frame.depth() * scale, BufferedImage.TYPE_INT_RGB);
+        int[] out = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        int[] cells = frame.pixels();
+        Earthquake earthquake = frame.earthquake();
+        Location epicenter = earthquake == null ? new Location(-1, -1) : earthquake.getEpicenter();
+        long radius = earthquake == null ? -1 : earthquake.getRadius();
+        for(int row = 0; row < frame.depth(); row++) {
+            for(int col = 0; col < frame.width(); col++) {
+                int rgb = cells[row * frame.width() + col];
+                long dr = row - epicenter.row();
+                long dc = col - epicenter.col();
+                // As Earthquake.locationWithinCalamity, without a Location per cell.
+                if(dr * dr + dc * dc <= radius * radius && radius >= 0) {
+                    // Half way towards red, so the species stays visible.
+                    rgb = (rgb >>> 1 & 0x7F7F7F) + (EARTHQUAKE_RGB >>> 1 & 0x7F7F7F);
+                }
+                int start = row * scale * width + col * scale;
+                for(int y = 0; y < scale; y++) {
+                    Arrays.fill(out, start + y * width, start + y * width + scale, rgb);
+                }
+            }
+        }
+        ImageIO.write(image, "png", directory.resolve(String.format("frame-%06d.png", frame.number())).toFile());
+    }
+
+    public int getWritten()
+    {
+        return written.get();
+    }
+
+    public int getDropped()
+    {
+        return dropped.get();
+    }
+
+    /**
+     * Wait for the frames already handed over to be written, then stop
+     * the encoders. If a frame has already failed, the encoders are
+     * stopped at once instead. Closing again does nothing.
+     * @throws IOException If any frame could not be written.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        if(closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if(failure == null) {
+                for(int i = 0; i < workers.size(); i++) {
+                    frames.put(END);
+                }
+                for(Future<?> worker : workers) {
+                    worker.get();
+                }
+            }
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        catch(ExecutionException e) {
+            fail(e.getCause());
+        }
+        finally {
+            encoders.shutdownNow();
+        }
+        Throwable failed = failure;
+        if(failed instanceof IOException io) {
+            throw io;
+        }
+        if(failed != null) {
+            throw new IOException("A frame could not be written", failed);
+        }
+    }
+
+    // A rendered step waiting to be encoded. Frames are numbered
+    // consecutively by step / interval, so dropped frames leave gaps.
+    private record Frame(int number, int width, int depth, int[] pixels, Earthquake earthquake)
+    {
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        if(args.length < 2) {
+            System.out.println("Usage: java FrameExporter directory steps [depth width seed [interval [encoders [scale [drop|throttle]]]]]");
+            return;
+        }
+        int steps = Integer.parseInt(args[1]);
+        int depth = args.length > 2 ? Integer.parseInt(args[2]) : 130;
+        int width = args.length > 3 ? Integer.parseInt(args[3]) : 130;
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : 1111;
+        int interval = args.length > 5 ? Integer.parseInt(args[5]) : 1;
+        int encoders = args.length > 6 ? Integer.parseInt(args[6]) : Runtime.getRuntime().availableProcessors();
+        int scale = args.length > 7 ? Integer.parseInt(args[7]) : 4;
+        Backpressure policy = args.length > 8 ? Backpressure.valueOf(args[8].toUpperCase()) : Backpressure.THROTTLE;
+
+        Simulator simulator = new Simulator(depth, width, seed, Simulator.DEFAULT_DENSITIES, false);
+        long start = System.nanoTime();
+        FrameExporter exporter = new FrameExporter(Path.of(args[0]), interval, encoders, 2 * encoders, scale, policy);
+        try(exporter) {
+            exporter.stepCompleted(0, simulator.getField(), null);
+            simulator.addObserver(exporter);
+            simulator.simulate(steps);
+        }
+        System.out.printf(Locale.ROOT, "%d steps, %d frames written, %d dropped, %.1f s%n", simulator.getStep(),
+                          exporter.getWritten(), exporter.getDropped(), (System.nanoTime() - start) / 1e9);
+    }
+}
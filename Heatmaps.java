@@ -0,0 +1,290 @@
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import javax.imageio.ImageIO;
+
+/**
+ * Per-cell counters accumulated over a run: how many steps each species
+ * spent in each cell, how many animals died there of each cause, and how
+ * many were born there. Each counter layer is kept in chunks of 64 x 64
+ * cells, like a ChunkedGrid, allocated when a cell of the chunk is first
+ * counted; an update is a chunk lookup and an array increment, and a
+ * layer's memory follows the area where something happened.
+ *
+ * The simulation records into the heatmaps attached to its thread (see
+ * attach), so the recording calls in the species code need no extra
+ * parameters. Like EventBus, active costs one branch until heatmaps are
+ * attached to some thread.
+ * Births and deaths can instead be fed from an EventBus by subscribing
+ * the heatmaps to it; they should then not also be attached.
+ */
+public class Heatmaps implements EventListener {
+
+    private static final Species[] ANIMALS = { Species.MOUSE, Species.OWL, Species.CAT, Species.WOLF, Species.DEER };
+    private static final ThreadLocal<Heatmaps> ACTIVE = new ThreadLocal<>();
+    private static final DeathCause[] CAUSES = DeathCause.values();
+    // The number of threads with heatmaps attached. A thread that ends
+    // with heatmaps attached keeps it above 0, which only costs the branch.
+    private static volatile int attachedThreads;
+
+    private final int depth, width;
+    // Indexed by Species ordinal; null for non-animals.
+    private final Layer[] occupancy = new Layer[Species.values().length];
+    private final Layer[] deaths = new Layer[CAUSES.length];
+    private final Layer births;
+
+    public Heatmaps(int depth, int width)
+    {
+        this.depth = depth;
+        this.width = width;
+        for(Species species : ANIMALS) {
+            occupancy[species.ordinal()] = new Layer(depth, width);
+        }
+        for(DeathCause cause : CAUSES) {
+            deaths[cause.ordinal()] = new Layer(depth, width);
+        }
+        births = new Layer(depth, width);
+    }
+
+    /**
+     * Make these heatmaps the ones the calling thread records into.
+     * @param heatmaps The heatmaps, or null to stop recording.
+     */
+    public static void attach(Heatmaps heatmaps)
+    {
+        if(heatmaps == null && attachedThreads == 0) {
+            return;
+        }
+        Heatmaps previous = ACTIVE.get();
+        if(heatmaps == null) {
+            ACTIVE.remove();
+        }
+        else {
+            ACTIVE.set(heatmaps);
+        }
+        if((previous == null) != (heatmaps == null)) {
+            attached(heatmaps != null ? 1 : -1);
+        }
+    }
+
+    /**
+     * @return The heatmaps attached to the calling thread, or null.
+     */
+    public static Heatmaps active()
+    {
+        if(attachedThreads == 0) {
+            return null;
+        }
+        return ACTIVE.get();
+    }
+
+    public void recordOccupancy(Species species, Location location)
+    {
+        Layer layer = occupancy[species.ordinal()];
+        if(layer != null) {
+            layer.increment(location.row(), location.col());
+        }
+    }
+
+    public void recordDeath(DeathCause cause, Location location)
+    {
+        deaths[cause.ordinal()].increment(location.row(), location.col());
+    }
+
+    public void recordBirth(Location location)
+    {
+        births.increment(location.row(), location.col());
+    }
+
+    @Override
+    public void event(EventType type, int step, Species subject, int detail, int row, int col)
+    {
+        if(type == EventType.BIRTH) {
+            births.increment(row, col);
+        }
+        else if(type == EventType.DEATH && row >= 0) {
+            deaths[detail].increment(row, col);
+        }
+    }
+
+    public int getDepth()
+    {
+        return depth;
+    }
+
+    public int getWidth()
+    {
+        return width;
+    }
+
+    /**
+     * @return The number of steps animals of a species spent in a cell.
+     */
+    public int getOccupancy(Species species, int row, int col)
+    {
+        Layer layer = occupancy[species.ordinal()];
+        if(layer == null) {
+            throw new IllegalArgumentException("Not an animal species: " + species);
+        }
+        return layer.get(row, col);
+    }
+
+    /**
+     * @return The number of animals that died of a cause in a cell.
+     */
+    public int getDeaths(DeathCause cause, int row, int col)
+    {
+        return deaths[cause.ordinal()].get(row, col);
+    }
+
+    public int getBirths(int row, int col)
+    {
+        return births.get(row, col);
+    }
+
+    /**
+     * @return Every layer by name, in a fixed order: occupancy-SPECIES,
+     *         deaths-CAUSE, then births.
+     */
+    private Map<String, Layer> getLayers()
+    {
+        Map<String, Layer> layers = new LinkedHashMap<>();
+        for(Species species : ANIMALS) {
+            layers.put("occupancy-" + species.name().toLowerCase(), occupancy[species.ordinal()]);
+        }
+        for(DeathCause cause : CAUSES) {
+            layers.put("deaths-" + cause.name().toLowerCase(), deaths[cause.ordinal()]);
+        }
+        layers.put("births", births);
+        return layers;
+    }
+
+    /**
+     * Write every layer as a PNG image into a directory, one pixel per
+     * cell, on a logarithmic black-red-yellow-white scale.
+     * @param directory Where to write; created if necessary.
+     */
+    public void exportPng(Path directory) throws IOException
+    {
+        Files.createDirectories(directory);
+        for(Map.Entry<String, Layer> layer : getLayers().entrySet()) {
+            ImageIO.write(toImage(layer.getValue()), "png", directory.resolve(layer.getKey() + ".png").toFile());
+        }
+    }
+
+    /**
+     * Write every layer as raw data: the depth and width, the number of
+     * layers, then for each layer its name and depth * width big-endian
+     * ints in row-major order.
+     * @param file The file to write.
+     */
+    public void exportRaw(Path file) throws IOException
+    {
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            Map<String, Layer> layers = getLayers();
+            out.writeInt(depth);
+            out.writeInt(width);
+            out.writeInt(layers.size());
+            for(Map.Entry<String, Layer> layer : layers.entrySet()) {
+                out.writeUTF(layer.getKey());
+                for(int row = 0; row < depth; row++) {
+                    for(int col = 0; col < width; col++) {
+                        out.writeInt(layer.getValue().get(row, col));
+                    }
+                }
+            }
+        }
+    }
+
+    private BufferedImage toImage(Layer layer)
+    {
+        int max = layer.max();
+        double scale = max > 0 ? 1.0 / Math.log1p(max) : 0;
+        BufferedImage image = new BufferedImage(width, depth, BufferedImage.TYPE_INT_RGB);
+        int[] pixels = new int[width];
+        for(int row = 0; row < depth; row++) {
+            for(int col = 0; col < width; col++) {
+                pixels[col] = heatColor(Math.log1p(layer.get(row, col)) * scale);
+            }
+            image.setRGB(0, row, width, 1, pixels, 0, width);
+        }
+        return image;
+    }
+
+    /**
+     * @return Black at 0, through red and yellow, to white at 1.
+     */
+    private static int heatColor(double t)
+    {
+        int r = (int) (255 * Math.min(1, t * 3));
+        int g = (int) (255 * Math.min(1, Math.max(0, t * 3 - 1)));
+        int b = (int) (255 * Math.min(1, Math.max(0, t * 3 - 2)));
+        return (r << 16) | (g << 8) | b;
+    }
+
+    private static synchronized void attached(int change)
+    {
+        attachedThreads += change;
+    }
+
+    /**
+     * One counter per cell, in chunks allocated on the first increment.
+     * Counts outside the field are ignored.
+     */
+    private static class Layer
+    {
+        private static final int SHIFT = ChunkedGrid.CHUNK_SHIFT;
+        private static final int MASK = (1 << SHIFT) - 1;
+
+        private final int depth, width;
+        private final int chunkCols;
+        // chunks[(row >> SHIFT) * chunkCols + (col >> SHIFT)]
+        private final int[][] chunks;
+
+        Layer(int depth, int width)
+        {
+            this.depth = depth;
+            this.width = width;
+            chunkCols = ((width - 1) >> SHIFT) + 1;
+            chunks = new int[(((depth - 1) >> SHIFT) + 1) * chunkCols][];
+        }
+
+        void increment(int row, int col)
+        {
+            if(row < 0 || row >= depth || col < 0 || col >= width) {
+                return;
+            }
+            int index = (row >> SHIFT) * chunkCols + (col >> SHIFT);
+            int[] chunk = chunks[index];
+            if(chunk == null) {
+                chunk = new int[1 << (2 * SHIFT)];
+                chunks[index] = chunk;
+            }
+            chunk[(row & MASK) << SHIFT | (col & MASK)]++;
+        }
+
+        int get(int row, int col)
+        {
+            if(row < 0 || row >= depth || col < 0 || col >= width) {
+                return 0;
+            }
+            int[] chunk = chunks[(row >> SHIFT) * chunkCols + (col >> SHIFT)];
+            return chunk == null ? 0 : chunk[(row & MASK) << SHIFT | (col & MASK)];
+        }
+
+        int max()
+        {
+            int max = 0;
+            for(int[] chunk : chunks) {
+                if(chunk != null) {
+                    for(int value : chunk) {
+                        max = Math.max(max, value);
+                    }
+                }
+            }
+            return max;
+        }
+    }
+}
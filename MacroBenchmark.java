@@ -0,0 +1,217 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Measures how full headless runs scale, as opposed to the cost of any
+ * single method. For every combination of field side, density scale and
+ * thread count it runs one seeded simulation per thread side by side and
+ * records the step throughput, when (if ever) the ecosystem died out,
+ * the peak heap and the time spent in garbage collection. The step loop
+ * itself is single-threaded, so the thread count measures how well
+ * independent runs share the machine, as in a sweep or the service.
+ *
+ * Each combination stops at the step limit, at the time limit or when
+ * every run has died out, whichever comes first. Run i of a combination
+ * is seeded with seed + i, so two reports of the same tree differ only in
+ * their timings.
+ *
+ * The report is tab-separated with one header line; lines starting
+ * with # describe the machine and the arguments.
+ *
+ * Usage: java MacroBenchmark report.tsv [steps [sides [threads [scales [seed [seconds]]]]]]
+ *        e.g. java MacroBenchmark bench.tsv 500 130,1000,8000 1,2,4 0.5,1,2 1111 120
+ */
+public class MacroBenchmark {
+
+    private static final String HEADER =
+        "side\tscale\tthreads\tstatus\tpopulate_s\tsteps\twall_s\tsteps_per_s\tsteps_per_s_per_run"
+        + "\textinct\tmean_extinction_step\tmean_extinction_s\tpeak_heap_mb\tgc_ms\tgc_count";
+
+    private final int steps;
+    private final long seed;
+    private final double seconds;
+
+    public MacroBenchmark(int steps, long seed, double seconds)
+    {
+        this.steps = steps;
+        this.seed = seed;
+        this.seconds = seconds;
+    }
+
+    /**
+     * Scale the creation probabilities of the animals and traps. Plants
+     * fill whatever is left over, so they are not scaled.
+     * @param scale The factor, where 1 gives the simulator's defaults.
+     */
+    public static PopulationDensities scaled(double scale)
+    {
+        PopulationDensities d = Simulator.DEFAULT_DENSITIES;
+        return new PopulationDensities(Math.min(1, d.trap() * scale), Math.min(1, d.owl() * scale),
+                                       Math.min(1, d.mouse() * scale), Math.min(1, d.cat() * scale),
+                                       Math.min(1, d.wolf() * scale), Math.min(1, d.deer() * scale),
+                                       d.plant());
+    }
+
+    /**
+     * Run one combination.
+     * @return Its line of the report.
+     */
+    public String measure(int side, double scale, int threads) throws InterruptedException
+    {
+        PopulationDensities densities = scaled(scale);
+        System.gc();
+        List<MemoryPoolMXBean> heap = new ArrayList<>();
+        for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if(pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+                heap.add(pool);
+            }
+        }
+        long gcTime = gcTime(), gcCount = gcCount();
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Run>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        for(int i = 0; i < threads; i++) {
+            long runSeed = seed + i;
+            futures.add(executor.submit(() -> run(side, runSeed, densities)));
+        }
+        List<Run> runs = new ArrayList<>();
+        String status = "ok";
+        try {
+            for(Future<Run> future : futures) {
+                runs.add(future.get());
+            }
+        }
+        catch(ExecutionException e) {
+            status = e.getCause() instanceof OutOfMemoryError ? "out_of_memory" : "failed";
+            executor.shutdownNow();
+        }
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.DAYS);
+        double wall = (System.nanoTime() - start) / 1e9;
+
+        long peak = 0;
+        for(MemoryPoolMXBean pool : heap) {
+            peak += pool.getPeakUsage().getUsed();
+        }
+        long totalSteps = 0;
+        int extinct = 0;
+        double populate = 0, extinctionSteps = 0, extinctionSeconds = 0, stepping = 0;
+        for(Run run : runs) {
+            totalSteps += run.steps;
+            populate += run.populateSeconds;
+            stepping += run.stepSeconds;
+            if(run.extinct) {
+                extinct++;
+                extinctionSteps += run.steps;
+                extinctionSeconds += run.stepSeconds;
+            }
+        }
+        int n = Math.max(runs.size(), 1);
+        return side + "\t" + scale + "\t" + threads + "\t" + status
+               + "\t" + format(populate / n)
+               + "\t" + totalSteps
+               + "\t" + format(wall)
+               + "\t" + format(totalSteps / wall)
+               + "\t" + format(stepping > 0 ? totalSteps / stepping : 0)
+               + "\t" + extinct
+               + "\t" + (extinct > 0 ? format(extinctionSteps / extinct) : "-1")
+               + "\t" + (extinct > 0 ? format(extinctionSeconds / extinct) : "-1")
+               + "\t" + format(peak / (1024.0 * 1024))
+               + "\t" + (gcTime() - gcTime)
+               + "\t" + (gcCount() - gcCount);
+    }
+
+    private Run run(int side, long runSeed, PopulationDensities densities)
+    {
+        long start = System.nanoTime();
+        Simulator simulator = new Simulator(side, side, runSeed, densities, false);
+        long populated = System.nanoTime();
+        long deadline = populated + (long) (seconds * 1e9);
+        Field field = simulator.getField();
+        while(simulator.getStep() < steps && field.isViable() && System.nanoTime() < deadline) {
+            simulator.simulateOneStep();
+            field = simulator.getField();
+        }
+        return new Run(simulator.getStep(), !field.isViable(),
+                       (populated - start) / 1e9, (System.nanoTime() - populated) / 1e9);
+    }
+
+    private record Run(int steps, boolean extinct, double populateSeconds, double stepSeconds) {}
+
+    private static long gcTime()
+    {
+        long total = 0;
+        for(GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(gc.getCollectionTime(), 0);
+        }
+        return total;
+    }
+
+    private static long gcCount()
+    {
+        long total = 0;
+        for(GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(gc.getCollectionCount(), 0);
+        }
+        return total;
+    }
+
+    private static String format(double value)
+    {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+
+    private static int[] ints(String list)
+    {
+        return Arrays.stream(list.split(",")).mapToInt(Integer::parseInt).toArray();
+    }
+
+    private static double[] doubles(String list)
+    {
+        return Arrays.stream(list.split(",")).mapToDouble(Double::parseDouble).toArray();
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException
+    {
+        if(args.length < 1) {
+            System.out.println("Usage: java MacroBenchmark report.tsv [steps [sides [threads [scales [seed [seconds]]]]]]");
+            return;
+        }
+        Path report = Path.of(args[0]);
+        int steps = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+        int[] sides = ints(args.length > 2 ? args[2] : "130,500,1000,2000,4000,8000");
+        int[] threads = ints(args.length > 3 ? args[3] : "1,2,4");
+        double[] scales = doubles(args.length > 4 ? args[4] : "0.5,1,2");
+        long seed = args.length > 5 ? Long.parseLong(args[5]) : 1111;
+        double seconds = args.length > 6 ? Double.parseDouble(args[6]) : 120;
+
+        MacroBenchmark benchmark = new MacroBenchmark(steps, seed, seconds);
+        // Compile the step loop before anything is timed.
+        benchmark.run(80, seed, Simulator.DEFAULT_DENSITIES);
+
+        try(PrintWriter out = new PrintWriter(Files.newBufferedWriter(report))) {
+            Runtime runtime = Runtime.getRuntime();
+            out.println("# java " + System.getProperty("java.version") + ", " + runtime.availableProcessors()
+                        + " processors, max heap " + runtime.maxMemory() / (1024 * 1024) + " MB");
+            out.println("# steps " + steps + ", seed " + seed + ", time limit " + seconds + " s per combination");
+            out.println(HEADER);
+            for(int side : sides) {
+                for(double scale : scales) {
+                    for(int count : threads) {
+                        String line = benchmark.measure(side, scale, count);
+                        out.println(line);
+                        out.flush();
+                        System.out.println(line);
+                    }
+                }
+            }
+        }
+    }
+}
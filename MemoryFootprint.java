@@ -0,0 +1,204 @@
+import java.util.*;
+
+/**
+ * The bytes a field holds live, by subsystem, computed from object
+ * layout sizes rather than measured, so it is cheap, repeatable and
+ * independent of the garbage collector. Locations are counted once per
+ * cell the pool has interned; objects shared with the previous step, such
+ * as the plant layer, are counted once per field that refers to them. ArrayLists are
+ * taken to be full, so the result is a lower bound; on a 1000x1000 world
+ * it is about a sixth below the heap the run actually keeps.
+ *
+ * Run as a program it checks per-entity byte budgets on worlds of
+ * several sizes and exits with status 1 if any is exceeded, so a class
+ * that grows a field shows up as a failed check rather than as a heap
+ * that no longer fits.
+ *
+ * Usage: java MemoryFootprint [side ...]
+ */
+public class MemoryFootprint {
+
+    /**
+     * The subsystems whose memory is reported.
+     */
+    public enum Part {
+        // The animal objects in the field.
+        ANIMALS,
+        PLANTS,
+        TRAPS,
+        // The Locations the pool has interned, one per cell used so far.
+        LOCATIONS,
+        // Random generators owned by individual entities.
+        RANDOMS,
+        // Chunked grids and the topology's neighbour tables.
+        GRIDS,
+        // Occupancy bitmaps.
+        BITMAPS,
+        // Entity lists and the plant growth wheel.
+        LISTS,
+        // Spare entities waiting to be reused, their lists, and the
+        // emptied field kept for the next step.
+        POOL
+    }
+
+    // The most bytes each part may take per entity of the world, at the
+    // default densities after the first steps.
+    private static final Map<Part, Double> BUDGETS = new EnumMap<>(Part.class);
+    static {
+        BUDGETS.put(Part.ANIMALS, 20.0);
+        BUDGETS.put(Part.PLANTS, 18.0);
+        BUDGETS.put(Part.TRAPS, 0.1);
+        BUDGETS.put(Part.LOCATIONS, 42.0);
+        BUDGETS.put(Part.RANDOMS, 0.0);
+        BUDGETS.put(Part.GRIDS, 18.0);
+        BUDGETS.put(Part.BITMAPS, 4.0);
+        BUDGETS.put(Part.LISTS, 14.0);
+        BUDGETS.put(Part.POOL, 28.0);
+    }
+    private static final double TOTAL_BUDGET = 130;
+
+    private final MemoryLayout layout;
+    private final long[] bytes = new long[Part.values().length];
+    private long entities;
+
+    public MemoryFootprint(MemoryLayout layout)
+    {
+        this.layout = layout;
+    }
+
+    /**
+     * @return The footprint of a field on the running JVM.
+     */
+    public static MemoryFootprint of(Field field)
+    {
+        MemoryFootprint footprint = new MemoryFootprint(MemoryLayout.CURRENT);
+        field.accountMemory(footprint);
+        return footprint;
+    }
+
+    /**
+     * @return The most bytes a world of the given size keeps at the
+     *         budgets, were every cell to hold both an animal and a plant.
+     */
+    public static long estimateBytes(int depth, int width)
+    {
+        return (long) (2.0 * depth * width * TOTAL_BUDGET);
+    }
+
+    public MemoryLayout getLayout()
+    {
+        return layout;
+    }
+
+    public void add(Part part, long size)
+    {
+        bytes[part.ordinal()] += size;
+    }
+
+    /**
+     * Count an animal, plant or trap of the field, with any generator of
+     * its own. Its Location is the pool's and is counted there.
+     */
+    public void addEntity(Object entity)
+    {
+        Part part = switch (entity) {
+            case Animal animal -> Part.ANIMALS;
+            case Plant plant -> Part.PLANTS;
+            default -> Part.TRAPS;
+        };
+        add(part, layout.instance(entity.getClass()));
+        add(Part.RANDOMS, layout.ownedRandoms(entity.getClass()));
+        entities++;
+    }
+
+    /**
+     * Count a spare entity of the pool.
+     */
+    public void addSpare(Object entity)
+    {
+        add(Part.POOL, layout.instance(entity.getClass()));
+        add(Part.RANDOMS, layout.ownedRandoms(entity.getClass()));
+    }
+
+    public long getBytes(Part part)
+    {
+        return bytes[part.ordinal()];
+    }
+
+    public long getTotal()
+    {
+        return Arrays.stream(bytes).sum();
+    }
+
+    /**
+     * @return The number of entities counted with addEntity.
+     */
+    public long getEntities()
+    {
+        return entities;
+    }
+
+    /**
+     * @return The bytes of a part per entity, or 0 for an empty field.
+     */
+    public double perEntity(Part part)
+    {
+        return entities == 0 ? 0 : getBytes(part) / (double) entities;
+    }
+
+    public String report()
+    {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format(Locale.ROOT, "%-10s %14s %10s%n", "part", "bytes", "per entity"));
+        for(Part part : Part.values()) {
+            report.append(String.format(Locale.ROOT, "%-10s %14d %10.2f%n",
+                                        part.name().toLowerCase(), getBytes(part), perEntity(part)));
+        }
+        report.append(String.format(Locale.ROOT, "%-10s %14d %10.2f%n", "total", getTotal(),
+                                    entities == 0 ? 0 : getTotal() / (double) entities));
+        return report.toString();
+    }
+
+    /**
+     * Check the budgets on a seeded world of each side after a few steps.
+     * @return The budgets exceeded, one per line; empty if none.
+     */
+    public static String checkBudgets(int side)
+    {
+        Simulator simulator = new Simulator(side, side, 1111, Simulator.DEFAULT_DENSITIES, false);
+        for(int step = 0; step < 10; step++) {
+            simulator.simulateOneStep();
+        }
+        MemoryFootprint footprint = of(simulator.getField());
+        System.out.println("Side " + side + ", " + footprint.getEntities() + " entities");
+        System.out.print(footprint.report());
+        StringBuilder failures = new StringBuilder();
+        for(Part part : Part.values()) {
+            if(footprint.perEntity(part) > BUDGETS.get(part)) {
+                failures.append(String.format(Locale.ROOT, "side %d: %s takes %.2f bytes per entity, budget %.2f%n",
+                                              side, part, footprint.perEntity(part), BUDGETS.get(part)));
+            }
+        }
+        double total = footprint.getTotal() / (double) Math.max(footprint.getEntities(), 1);
+        if(total > TOTAL_BUDGET) {
+            failures.append(String.format(Locale.ROOT, "side %d: %.2f bytes per entity in total, budget %.2f%n",
+                                          side, total, TOTAL_BUDGET));
+        }
+        return failures.toString();
+    }
+
+    public static void main(String[] args)
+    {
+        int[] sides = args.length > 0 ? Arrays.stream(args).mapToInt(Integer::parseInt).toArray()
+                                       : new int[] { 130, 500, 1000 };
+        StringBuilder failures = new StringBuilder();
+        for(int side : sides) {
+            failures.append(checkBudgets(side));
+        }
+        if(failures.length() > 0) {
+            System.out.print(failures);
+            System.exit(1);
+        }
+        System.out.println("All budgets met.");
+    }
+}
@@ -0,0 +1,150 @@
+import com.sun.management.HotSpotDiagnosticMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The sizes of objects on a 64-bit HotSpot heap: object and array
+ * headers, references, and 8-byte alignment. An instance size is the
+ * header plus the sizes of the declared instance fields of the class and
+ * its superclasses, computed once per class. HotSpot fills the gaps
+ * between fields, so this is exact for the small classes of the
+ * simulation and close for the rest.
+ */
+public class MemoryLayout {
+
+    /**
+     * The layout of the running JVM.
+     */
+    public static final MemoryLayout CURRENT = detect();
+
+    private static final int ALIGNMENT = 8;
+
+    private final int header;
+    private final int reference;
+    private final int arrayHeader;
+    private final Map<Class<?>, Long> instanceSizes = new ConcurrentHashMap<>();
+
+    /**
+     * @param compressedOops Whether references take 4 bytes instead of 8.
+     * @param compressedClassPointers Whether headers take 12 bytes instead of 16.
+     */
+    public MemoryLayout(boolean compressedOops, boolean compressedClassPointers)
+    {
+        header = compressedClassPointers ? 12 : 16;
+        reference = compressedOops ? 4 : 8;
+        arrayHeader = header + 4;
+    }
+
+    private static MemoryLayout detect()
+    {
+        try {
+            HotSpotDiagnosticMXBean vm = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+            return new MemoryLayout(Boolean.parseBoolean(vm.getVMOption("UseCompressedOops").getValue()),
+                                    Boolean.parseBoolean(vm.getVMOption("UseCompressedClassPointers").getValue()));
+        }
+        catch(RuntimeException e) {
+            // Not HotSpot; assume the defaults of a heap under 32 GB.
+            return new MemoryLayout(true, true);
+        }
+    }
+
+    public int getReference()
+    {
+        return reference;
+    }
+
+    /**
+     * @return The size of an instance of a class, without anything its
+     *         fields refer to.
+     */
+    public long instance(Class<?> type)
+    {
+        return instanceSizes.computeIfAbsent(type, this::computeInstance);
+    }
+
+    /**
+     * @return The size of the Random objects an instance of a class owns
+     *         through its own fields.
+     */
+    public long ownedRandoms(Class<?> type)
+    {
+        long bytes = 0;
+        for(Class<?> c = type; c != null; c = c.getSuperclass()) {
+            for(java.lang.reflect.Field field : c.getDeclaredFields()) {
+                if(!Modifier.isStatic(field.getModifiers()) && Random.class.isAssignableFrom(field.getType())) {
+                    bytes += instance(Random.class) + instance(AtomicLong.class);
+                }
+            }
+        }
+        return bytes;
+    }
+
+    public long objectArray(int length)
+    {
+        return align(arrayHeader + (long) length * reference);
+    }
+
+    public long longArray(int length)
+    {
+        return align(arrayHeader + 8L * length);
+    }
+
+    public long intArray(int length)
+    {
+        return align(arrayHeader + 4L * length);
+    }
+
+    public long booleanArray(int length)
+    {
+        return align(arrayHeader + (long) length);
+    }
+
+    /**
+     * @return The size of an ArrayList and its backing array, taking the
+     *         capacity to be the size.
+     */
+    public long arrayList(int size)
+    {
+        return instance(ArrayList.class) + objectArray(size);
+    }
+
+    private long computeInstance(Class<?> type)
+    {
+        long bytes = header;
+        for(Class<?> c = type; c != null; c = c.getSuperclass()) {
+            for(java.lang.reflect.Field field : c.getDeclaredFields()) {
+                if(!Modifier.isStatic(field.getModifiers())) {
+                    bytes += fieldSize(field.getType());
+                }
+            }
+        }
+        return align(bytes);
+    }
+
+    private int fieldSize(Class<?> type)
+    {
+        if(type == long.class || type == double.class) {
+            return 8;
+        }
+        if(type == int.class || type == float.class) {
+            return 4;
+        }
+        if(type == short.class || type == char.class) {
+            return 2;
+        }
+        if(type == byte.class || type == boolean.class) {
+            return 1;
+        }
+        return reference;
+    }
+
+    private static long align(long bytes)
+    {
+        return (bytes + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+}
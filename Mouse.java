@@ -1,4 +1,3 @@
-import java.util.Iterator;
 import java.util.List;
 import java.util.Random;
 
@@ -9,6 +8,7 @@ public class Mouse extends Animal
     private static final double BREEDING_PROBABILITY = 0.25;
     private static final int MAX_LITTER_SIZE = 6;
     private static final int PLANT_FOOD_LEVEL = 9;
+    private static final Species[] FOOD = { Species.PLANT };
     private static final Random rand = Randomizer.getRandom();
     private int age;
     private int foodLevel;
@@ -16,6 +16,12 @@ public class Mouse extends Animal
     public Mouse(boolean randomAge, Location location)
     {
         super(location);
+        initState(randomAge);
+    }
+
+    @Override
+    protected final void initState(boolean randomAge)
+    {
         age = 0;
         if(randomAge) {
             age = rand.nextInt(MAX_AGE);
@@ -42,6 +48,9 @@ public class Mouse extends Animal
             }
 
             Location nextLocation = findFood(currentField);
+            if(nextLocation == null) {
+                nextLocation = huntToward(currentField, freeLocations, currentField.getSensingRadius(Species.MOUSE), FOOD);
+            }
             if(nextLocation == null && ! freeLocations.isEmpty()) {
                 nextLocation = freeLocations.remove(0);
             }
@@ -51,7 +60,7 @@ public class Mouse extends Animal
                 nextFieldState.placeAnimal(this, nextLocation);
             }
             else {
-                setDead();
+                setDead(DeathCause.CROWDING);
             }
         }
     }
@@ -65,11 +74,30 @@ public class Mouse extends Animal
                 '}';
     }
 
+    @Override
+    public int getAge()
+    {
+        return age;
+    }
+
+    @Override
+    public int getFoodLevel()
+    {
+        return foodLevel;
+    }
+
+    @Override
+    protected void restoreState(int age, int foodLevel)
+    {
+        this.age = age;
+        this.foodLevel = foodLevel;
+    }
+
     private void incrementAge()
     {
         age++;
         if(age > MAX_AGE) {
-            setDead();
+            setDead(DeathCause.AGE);
         }
     }
 
@@ -77,7 +105,7 @@ public class Mouse extends Animal
     {
         foodLevel--;
         if(foodLevel <= 0) {
-            setDead();
+            setDead(DeathCause.HUNGER);
         }
     }
     
@@ -87,8 +115,9 @@ public class Mouse extends Animal
         if(births > 0) {
             for (int b = 0; b < births && !freeLocations.isEmpty(); b++) {
                 Location loc = freeLocations.remove(0);
-                Mouse young = new Mouse(false, loc);
+                Animal young = nextFieldState.getPool().newborn(Species.MOUSE, loc);
                 nextFieldState.placeAnimal(young, loc);
+                recordBirth(loc);
             }
         }
     }
@@ -112,13 +141,13 @@ public class Mouse extends Animal
 
     public Location findFood(Field field){
         List<Location> adjacent = field.getAdjacentLocations(getLocation());
-        Iterator<Location> it = adjacent.iterator();
         Location foodLocation = null;
-        while(foodLocation == null && it.hasNext()) {
-            Location loc = it.next();
+        for(int i = 0; foodLocation == null && i < adjacent.size(); i++) {
+            Location loc = adjacent.get(i);
             Plant plant = field.getPlantAt(loc);  
             if(plant != null && plant.isAlive()) {
-                plant.setDead();
+                field.removePlant(loc);
+                recordMeal(Species.PLANT, loc);
                 foodLevel = PLANT_FOOD_LEVEL;
                 foodLocation = loc;
             }
@@ -0,0 +1,180 @@
+import java.util.*;
+
+/**
+ * Checks Field.findNearest against a brute-force search on small random
+ * fields of every topology, including fields shrunk by deforestation and
+ * fields with dead animals whose bits are still set. A query fails if it
+ * finds nothing where a match is in range, or a cell that is not a
+ * match or not at the nearest distance; ties may go either way.
+ *
+ * Each query looks for what one species eats. Half of them use that
+ * species' radius from a set of sensing radii that are all above 1, as
+ * the field reports it; the rest use a random radius.
+ *
+ * Prints the first failures and exits with status 1 if there are any.
+ *
+ * Usage: java NearestSearchCheck [queries [seed]]
+ */
+public class NearestSearchCheck {
+
+    private static final int MAX_FAILURES_SHOWN = 10;
+    private static final SensingRadii RADII = new SensingRadii(2, 5, 3, 4, 2);
+    private static final Species[] HUNTERS = { Species.MOUSE, Species.OWL, Species.CAT, Species.WOLF, Species.DEER };
+
+    private NearestSearchCheck()
+    {
+    }
+
+    /**
+     * Run random queries.
+     * @return The failures, one per line; empty if none.
+     */
+    public static String check(int queries, long seed)
+    {
+        Random random = new Random(seed);
+        StringBuilder failures = new StringBuilder();
+        int failed = 0;
+        for(int done = 0; done < queries; ) {
+            Topology topology = Topology.values()[random.nextInt(Topology.values().length)];
+            int depth = 1 + random.nextInt(12);
+            int width = 1 + random.nextInt(45);
+            Field field = new Field(depth, width);
+            field.setTopology(topology);
+            field.setSensingRadii(RADII);
+            double plants = random.nextDouble() * 0.1;
+            double mice = random.nextDouble() * 0.1;
+            double cats = random.nextDouble() * 0.05;
+            double deer = random.nextDouble() * 0.05;
+            for(int row = 0; row < depth; row++) {
+                for(int col = 0; col < width; col++) {
+                    Location location = new Location(row, col);
+                    double draw = random.nextDouble();
+                    if(draw < plants) {
+                        field.placePlant(new Plant(location), location);
+                    }
+                    else if(draw < plants + mice + cats + deer) {
+                        Animal animal;
+                        if(draw < plants + mice) {
+                            animal = new Mouse(false, location);
+                        }
+                        else if(draw < plants + mice + cats) {
+                            animal = new Cat(false, location);
+                        }
+                        else {
+                            animal = new Deer(false, location);
+                        }
+                        field.placeAnimal(animal, location);
+                        if(random.nextInt(4) == 0) {
+                            animal.setDead(DeathCause.AGE);
+                        }
+                    }
+                }
+            }
+            for(int shrink = random.nextInt(3); shrink > 0; shrink--) {
+                field.triggerDeforestation();
+            }
+            // Several queries per field, so stale bits cleared by one
+            // query are tested by the next.
+            for(int q = 0; q < 15 && done < queries; q++, done++) {
+                Location from = new Location(random.nextInt(field.getCurrentDepth()),
+                                             random.nextInt(field.getCurrentWidth()));
+                Species hunter = HUNTERS[random.nextInt(HUNTERS.length)];
+                int radius = random.nextBoolean() ? field.getSensingRadius(hunter)
+                                                  : random.nextInt(Math.max(depth, width) + 2);
+                Species[] kinds = food(hunter);
+                int expected = nearestDistance(field, from, radius, kinds);
+                Location found = field.findNearest(from, radius, kinds);
+                String problem = null;
+                if(found == null) {
+                    if(expected >= 0) {
+                        problem = "found nothing, nearest is " + expected + " away";
+                    }
+                }
+                else if(!isMatch(field, found, kinds) || found.equals(from)) {
+                    problem = "found " + found + ", which is not a match";
+                }
+                else if(field.distance(from, found) != expected) {
+                    problem = "found " + found + " at " + field.distance(from, found) + ", nearest is "
+                              + (expected < 0 ? "out of range" : expected + " away");
+                }
+                if(problem != null) {
+                    if(failed++ < MAX_FAILURES_SHOWN) {
+                        failures.append(String.format(Locale.ROOT, "%s d=%d w=%d current %dx%d from=%s r=%d %s: %s%n",
+                                                      topology, depth, width, field.getCurrentDepth(),
+                                                      field.getCurrentWidth(), from, radius,
+                                                      Arrays.toString(kinds), problem));
+                    }
+                }
+            }
+        }
+        if(failed > MAX_FAILURES_SHOWN) {
+            failures.append("... ").append(failed - MAX_FAILURES_SHOWN).append(" more\n");
+        }
+        return failures.toString();
+    }
+
+    /**
+     * @return The species an animal species hunts toward.
+     */
+    private static Species[] food(Species hunter)
+    {
+        return switch (hunter) {
+            case MOUSE, DEER -> new Species[] { Species.PLANT };
+            case OWL -> new Species[] { Species.MOUSE, Species.CAT };
+            case CAT -> new Species[] { Species.MOUSE };
+            case WOLF -> new Species[] { Species.DEER };
+            default -> throw new IllegalArgumentException("Not an animal species: " + hunter);
+        };
+    }
+
+    /**
+     * @return The distance of the nearest match other than the origin
+     *         within the radius, or -1 if there is none.
+     */
+    private static int nearestDistance(Field field, Location from, int radius, Species[] kinds)
+    {
+        int best = -1;
+        for(int row = 0; row < field.getCurrentDepth(); row++) {
+            for(int col = 0; col < field.getCurrentWidth(); col++) {
+                Location location = new Location(row, col);
+                int distance = field.distance(from, location);
+                if(!location.equals(from) && distance <= radius && (best < 0 || distance < best)
+                   && isMatch(field, location, kinds)) {
+                    best = distance;
+                }
+            }
+        }
+        return best;
+    }
+
+    private static boolean isMatch(Field field, Location location, Species[] kinds)
+    {
+        for(Species kind : kinds) {
+            if(kind == Species.PLANT) {
+                Plant plant = field.getPlantAt(location);
+                if(plant != null && plant.isAlive()) {
+                    return true;
+                }
+            }
+            else {
+                Animal animal = field.getAnimalAt(location);
+                if(animal != null && animal.isAlive() && Species.of(animal) == kind) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    public static void main(String[] args)
+    {
+        int queries = args.length > 0 ? Integer.parseInt(args[0]) : 45000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 1111;
+        String failures = check(queries, seed);
+        if(!failures.isEmpty()) {
+            System.out.print(failures);
+            System.exit(1);
+        }
+        System.out.println(queries + " queries agree with a brute-force search.");
+    }
+}
@@ -0,0 +1,304 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * One bit per cell, packed 64 cells to a long along each row. The bits
+ * are kept in chunks of 64 x 64 cells, one long per row of a chunk, laid
+ * out like the chunks of a ChunkedGrid. A chunk is only allocated once a
+ * bit in it is set and is released when its last bit is cleared, so a
+ * mostly empty world costs little. Range queries work a word at a time.
+ *
+ * A fork shares the chunks of the original, and a shared chunk is copied
+ * by whichever bitmap writes to it first. The chunks a clear drops are
+ * kept for the chunks set until the next clear, so clearing and refilling
+ * a bitmap allocates nothing.
+ */
+public class OccupancyBitmap {
+
+    private static final int CHUNK_SHIFT = ChunkedGrid.CHUNK_SHIFT;
+    private static final int CHUNK_MASK = ChunkedGrid.CHUNK_SIZE - 1;
+
+    // chunks[chunkRow][chunkCol][row & CHUNK_MASK]; a row of chunks is
+    // allocated with its first chunk.
+    private long[][][] chunks = new long[0][][];
+    // Whether each chunk is this bitmap's own, rather than shared with a fork.
+    private boolean[][] owned = new boolean[0][];
+    private final int wordsPerRow;
+    // Chunks of this bitmap's own from the last clear, all zero.
+    private final List<long[]> spareChunks = new ArrayList<>();
+
+    public OccupancyBitmap(int width)
+    {
+        wordsPerRow = (width + 63) >>> 6;
+    }
+
+    /**
+     * Create a bitmap with the same bits that shares all chunks with this
+     * one; each copies a shared chunk before writing to it.
+     * @return The fork.
+     */
+    public OccupancyBitmap fork()
+    {
+        OccupancyBitmap fork = new OccupancyBitmap(wordsPerRow << 6);
+        fork.chunks = new long[chunks.length][][];
+        fork.owned = new boolean[chunks.length][];
+        for(int chunkRow = 0; chunkRow < chunks.length; chunkRow++) {
+            if(chunks[chunkRow] != null) {
+                fork.chunks[chunkRow] = chunks[chunkRow].clone();
+                fork.owned[chunkRow] = new boolean[wordsPerRow];
+                Arrays.fill(owned[chunkRow], false);
+            }
+        }
+        return fork;
+    }
+
+    public void set(int row, int col)
+    {
+        if(row < 0 || col < 0 || (col >>> 6) >= wordsPerRow) {
+            return;
+        }
+        int chunkRow = row >> CHUNK_SHIFT;
+        if(chunkRow >= chunks.length) {
+            int length = Math.max(chunkRow + 1, chunks.length * 2);
+            chunks = Arrays.copyOf(chunks, length);
+            owned = Arrays.copyOf(owned, length);
+        }
+        if(chunks[chunkRow] == null) {
+            chunks[chunkRow] = new long[wordsPerRow][];
+            owned[chunkRow] = new boolean[wordsPerRow];
+        }
+        int chunkCol = col >>> 6;
+        if(chunks[chunkRow][chunkCol] == null) {
+            chunks[chunkRow][chunkCol] = spareChunks.isEmpty() ? new long[ChunkedGrid.CHUNK_SIZE]
+                                                               : spareChunks.remove(spareChunks.size() - 1);
+            owned[chunkRow][chunkCol] = true;
+        }
+        ownChunk(chunkRow, chunkCol)[row & CHUNK_MASK] |= 1L << col;
+    }
+
+    public void clear(int row, int col)
+    {
+        if((word(row, col >>> 6) & (1L << col)) == 0) {
+            return;
+        }
+        int chunkRow = row >> CHUNK_SHIFT;
+        int chunkCol = col >>> 6;
+        long[] chunk = ownChunk(chunkRow, chunkCol);
+        chunk[row & CHUNK_MASK] &= ~(1L << col);
+        if(chunk[row & CHUNK_MASK] == 0 && isEmpty(chunk)) {
+            chunks[chunkRow][chunkCol] = null;
+        }
+    }
+
+    private long[] ownChunk(int chunkRow, int chunkCol)
+    {
+        if(!owned[chunkRow][chunkCol]) {
+            chunks[chunkRow][chunkCol] = chunks[chunkRow][chunkCol].clone();
+            owned[chunkRow][chunkCol] = true;
+        }
+        return chunks[chunkRow][chunkCol];
+    }
+
+    private static boolean isEmpty(long[] chunk)
+    {
+        for(long word : chunk) {
+            if(word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The bytes of the bitmap, counting chunks shared with a fork
+     *         and spare ones.
+     */
+    public long estimateBytes(MemoryLayout layout)
+    {
+        long bytes = layout.instance(OccupancyBitmap.class) + layout.objectArray(chunks.length)
+                     + layout.objectArray(owned.length) + layout.arrayList(spareChunks.size())
+                     + spareChunks.size() * layout.longArray(ChunkedGrid.CHUNK_SIZE);
+        for(long[][] chunkRow : chunks) {
+            if(chunkRow != null) {
+                bytes += layout.objectArray(chunkRow.length) + layout.booleanArray(chunkRow.length);
+                for(long[] chunk : chunkRow) {
+                    if(chunk != null) {
+                        bytes += layout.longArray(chunk.length);
+                    }
+                }
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * @return The number of set bits.
+     */
+    public int count()
+    {
+        int count = 0;
+        for(long[][] chunkRow : chunks) {
+            if(chunkRow != null) {
+                for(long[] chunk : chunkRow) {
+                    if(chunk != null) {
+                        for(long word : chunk) {
+                            count += Long.bitCount(word);
+                        }
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    public boolean get(int row, int col)
+    {
+        return (word(row, col >>> 6) & (1L << col)) != 0;
+    }
+
+    /**
+     * @return The bits of the 64 columns of a row from start on, column
+     *         start in bit 0. Columns outside the bitmap read as 0, so
+     *         start may be negative.
+     */
+    public long bits(int row, int start)
+    {
+        int shift = start & 63;
+        long bits = word(row, start >> 6) >>> shift;
+        if(shift != 0) {
+            bits |= word(row, (start >> 6) + 1) << (64 - shift);
+        }
+        return bits;
+    }
+
+    /**
+     * Clear every bit, keeping this bitmap's own chunks for reuse.
+     */
+    public void clear()
+    {
+        spareChunks.clear();
+        for(int chunkRow = 0; chunkRow < chunks.length; chunkRow++) {
+            long[][] chunkRowWords = chunks[chunkRow];
+            if(chunkRowWords == null) {
+                continue;
+            }
+            for(int w = 0; w < chunkRowWords.length; w++) {
+                if(chunkRowWords[w] != null && owned[chunkRow][w]) {
+                    Arrays.fill(chunkRowWords[w], 0);
+                    spareChunks.add(chunkRowWords[w]);
+                }
+                chunkRowWords[w] = null;
+                owned[chunkRow][w] = false;
+            }
+        }
+    }
+
+    /**
+     * @return The given word of a row; 0 for rows or words that do not exist.
+     */
+    public long word(int row, int wordIndex)
+    {
+        int chunkRow = row >> CHUNK_SHIFT;
+        if(row < 0 || chunkRow >= chunks.length || wordIndex < 0 || wordIndex >= wordsPerRow) {
+            return 0;
+        }
+        long[][] chunkRowWords = chunks[chunkRow];
+        long[] chunk = chunkRowWords == null ? null : chunkRowWords[wordIndex];
+        return chunk == null ? 0 : chunk[row & CHUNK_MASK];
+    }
+
+    /**
+     * Visit every set bit, row by row, a word at a time, skipping the
+     * chunks that are not allocated.
+     */
+    public void forEachSet(CellVisitor action)
+    {
+        forEachSet(0, chunks.length << CHUNK_SHIFT, action);
+    }
+
+    /**
+     * Visit the set bits of the rows from fromRow up to toRow, row by row,
+     * a word at a time, skipping the chunks that are not allocated.
+     */
+    public void forEachSet(int fromRow, int toRow, CellVisitor action)
+    {
+        int end = Math.min(toRow, chunks.length << CHUNK_SHIFT);
+        for(int row = Math.max(fromRow, 0); row < end; row++) {
+            long[][] chunkRowWords = chunks[row >> CHUNK_SHIFT];
+            if(chunkRowWords == null) {
+                row |= CHUNK_MASK;
+                continue;
+            }
+            int offset = row & CHUNK_MASK;
+            for(int w = 0; w < chunkRowWords.length; w++) {
+                long[] chunk = chunkRowWords[w];
+                long bits = chunk == null ? 0 : chunk[offset];
+                while(bits != 0) {
+                    action.visit(row, (w << 6) + Long.numberOfTrailingZeros(bits));
+                    bits &= bits - 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * Receives the row and column of a cell.
+     */
+    public interface CellVisitor {
+        void visit(int row, int col);
+    }
+
+    /**
+     * Find the set bit in a row of the union of the first count bitmaps
+     * that is closest to a column, looking no further than [from, to].
+     * @return The column of that bit, or -1 if there is none.
+     */
+    public static int nearestInRow(OccupancyBitmap[] maps, int count, int row, int col, int from, int to)
+    {
+        int right = -1;
+        for(int w = col >>> 6; w <= (to >>> 6) && right < 0; w++) {
+            long bits = union(maps, count, row, w) & rangeMask(w, col, to);
+            if(bits != 0) {
+                right = (w << 6) + Long.numberOfTrailingZeros(bits);
+            }
+        }
+        int left = -1;
+        int limit = right < 0 ? from : Math.max(from, 2 * col - right);
+        for(int w = col >>> 6; w >= (limit >>> 6) && left < 0 && col > limit; w--) {
+            long bits = union(maps, count, row, w) & rangeMask(w, limit, col - 1);
+            if(bits != 0) {
+                left = (w << 6) + 63 - Long.numberOfLeadingZeros(bits);
+            }
+        }
+        if(left < 0) {
+            return right;
+        }
+        if(right < 0) {
+            return left;
+        }
+        return col - left < right - col ? left : right;
+    }
+
+    private static long union(OccupancyBitmap[] maps, int count, int row, int wordIndex)
+    {
+        long bits = 0;
+        for(int i = 0; i < count; i++) {
+            bits |= maps[i].word(row, wordIndex);
+        }
+        return bits;
+    }
+
+    /**
+     * @return The bits of word w that fall in columns [from, to].
+     */
+    private static long rangeMask(int w, int from, int to)
+    {
+        int lo = Math.max(from - (w << 6), 0);
+        int hi = Math.min(to - (w << 6), 63);
+        if(lo > hi) {
+            return 0;
+        }
+        return (-1L >>> (63 - hi)) & (-1L << lo);
+    }
+}
@@ -1,4 +1,3 @@
-import java.util.Iterator;
 import java.util.List;
 import java.util.Random;
 
@@ -10,6 +9,8 @@ public class Owl extends Animal
     private static final int MAX_LITTER_SIZE = 5;
     private static final int MOUSE_FOOD_VALUE = 5;
     private static final int CAT_FOOD_VALUE = 9;
+    // Passed to every huntToward call, so the varargs array is built once.
+    private static final Species[] PREY = { Species.MOUSE, Species.CAT };
     private static final Random rand = Randomizer.getRandom();
     private int age;
     private int foodLevel;
@@ -17,6 +18,12 @@ public class Owl extends Animal
     public Owl(boolean randomAge, Location location)
     {
         super(location);
+        initState(randomAge);
+    }
+
+    @Override
+    protected final void initState(boolean randomAge)
+    {
         if(randomAge) {
             age = rand.nextInt(MAX_AGE);
         }
@@ -45,6 +52,9 @@ public class Owl extends Animal
             }
       
             Location nextLocation = findFood(currentField);
+            if(nextLocation == null) {
+                nextLocation = huntToward(currentField, freeLocations, currentField.getSensingRadius(Species.OWL), PREY);
+            }
             if(nextLocation == null && !freeLocations.isEmpty()) {
           
                 nextLocation = freeLocations.remove(0);
@@ -55,7 +65,7 @@ public class Owl extends Animal
                 nextFieldState.placeAnimal(this, nextLocation);
             }
             else {
-                setDead();
+                setDead(DeathCause.CROWDING);
             }
         }
     }
@@ -70,11 +80,30 @@ public class Owl extends Animal
                 '}';
     }
 
+    @Override
+    public int getAge()
+    {
+        return age;
+    }
+
+    @Override
+    public int getFoodLevel()
+    {
+        return foodLevel;
+    }
+
+    @Override
+    protected void restoreState(int age, int foodLevel)
+    {
+        this.age = age;
+        this.foodLevel = foodLevel;
+    }
+
     private void incrementAge()
     {
         age++;
         if(age > MAX_AGE) {
-            setDead();
+            setDead(DeathCause.AGE);
         }
     }
     
@@ -82,17 +111,16 @@ public class Owl extends Animal
     {
         foodLevel--;
         if(foodLevel <= 0) {
-            setDead();
+            setDead(DeathCause.HUNGER);
         }
     }
     
     private Location findFood(Field field)
     {
         List<Location> adjacent = field.getAdjacentLocations(getLocation());
-        Iterator<Location> it = adjacent.iterator();
         Location foodLocation = null;
-        while(foodLocation == null && it.hasNext()) {
-            Location loc = it.next();
+        for(int i = 0; foodLocation == null && i < adjacent.size(); i++) {
+            Location loc = adjacent.get(i);
             Animal animal = field.getAnimalAt(loc);
             if (animal == null){
                 continue;
@@ -100,14 +128,14 @@ public class Owl extends Animal
             switch (animal) {
                 case Mouse mouse -> {
                     if(mouse.isAlive()) {
-                        mouse.setDead();
+                        kill(mouse, loc);
                         foodLevel = MOUSE_FOOD_VALUE;
                         foodLocation = loc;
                     }
                 }
                 case Cat cat -> {
                     if(cat.isAlive()) {
-                        cat.setDead();
+                        kill(cat, loc);
                         foodLevel = CAT_FOOD_VALUE;
                         foodLocation = loc;
                     }
@@ -125,8 +153,9 @@ public class Owl extends Animal
         if(births > 0) {
             for (int b = 0; b < births && ! freeLocations.isEmpty(); b++) {
                 Location loc = freeLocations.remove(0);
-                Owl young = new Owl(false, loc);
+                Animal young = nextFieldState.getPool().newborn(Species.OWL, loc);
                 nextFieldState.placeAnimal(young, loc);
+                recordBirth(loc);
             }
         }
     }
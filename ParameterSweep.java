@@ -0,0 +1,139 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Runs every combination of field side, density scale and seed as a
+ * headless simulation and reports how each one ended. Results come from
+ * a ResultCache where possible, so a sweep that repeats or extends an
+ * earlier one only simulates the combinations it has not seen. Runs
+ * that are not cached go to one thread per processor.
+ *
+ * The report is tab-separated with one header line and one line per
+ * combination, in the order of the arguments; lines starting with #
+ * describe the arguments and the cache.
+ *
+ * Usage: java ParameterSweep report.tsv cache-dir [steps [sides [scales [seeds [cache-mb]]]]]
+ *        e.g. java ParameterSweep sweep.tsv sweep-cache 700 130,200 0.5,1,2 1111-1120 256
+ */
+public class ParameterSweep {
+
+    private static final String HEADER =
+        "side\tscale\tseed\tcached\tsteps_run\textinct\tmice\towls\tcats\twolves\tdeer\tstate_hash\twall_s";
+
+    private final ResultCache cache;
+    private final int steps;
+
+    public ParameterSweep(ResultCache cache, int steps)
+    {
+        this.cache = cache;
+        this.steps = steps;
+    }
+
+    /**
+     * Run one combination, or read it from the cache.
+     * @return The report line.
+     */
+    public String run(int side, double scale, long seed)
+    {
+        long start = System.nanoTime();
+        PopulationDensities densities = MacroBenchmark.scaled(scale);
+        ResultCache.RunResult result = cache.get(ResultCache.configuration(side, side, seed, steps, densities));
+        boolean cached = result != null;
+        if(!cached) {
+            result = ResultCache.run(side, side, seed, steps, densities);
+            try {
+                cache.put(result);
+            }
+            catch(IOException e) {
+                // The result is still good; it just is not kept.
+                System.err.println("Could not cache side " + side + ", scale " + scale + ", seed " + seed
+                                   + ": " + e.getMessage());
+            }
+        }
+        int[] counts = result.finalPopulations();
+        boolean extinct = Arrays.stream(counts).allMatch(count -> count == 0);
+        StringBuilder line = new StringBuilder();
+        line.append(side).append('\t').append(scale).append('\t').append(seed).append('\t').append(cached)
+            .append('\t').append(result.stepsRun()).append('\t').append(extinct);
+        for(int count : counts) {
+            line.append('\t').append(count);
+        }
+        line.append('\t').append(result.stateHash())
+            .append('\t').append(String.format(Locale.ROOT, "%.3f", (System.nanoTime() - start) / 1e9));
+        return line.toString();
+    }
+
+    private static int[] ints(String list)
+    {
+        return Arrays.stream(list.split(",")).mapToInt(Integer::parseInt).toArray();
+    }
+
+    private static double[] doubles(String list)
+    {
+        return Arrays.stream(list.split(",")).mapToDouble(Double::parseDouble).toArray();
+    }
+
+    /**
+     * @return The seeds of a list such as 1,5,9 or a range such as 1-10.
+     */
+    private static long[] seeds(String list)
+    {
+        int dash = list.indexOf('-', 1);
+        if(dash < 0) {
+            return Arrays.stream(list.split(",")).mapToLong(Long::parseLong).toArray();
+        }
+        long first = Long.parseLong(list.substring(0, dash));
+        long last = Long.parseLong(list.substring(dash + 1));
+        long[] seeds = new long[(int) (last - first + 1)];
+        for(int i = 0; i < seeds.length; i++) {
+            seeds[i] = first + i;
+        }
+        return seeds;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException, ExecutionException
+    {
+        if(args.length < 2) {
+            System.out.println("Usage: java ParameterSweep report.tsv cache-dir [steps [sides [scales [seeds [cache-mb]]]]]");
+            return;
+        }
+        Path report = Path.of(args[0]);
+        int steps = args.length > 2 ? Integer.parseInt(args[2]) : 700;
+        int[] sides = ints(args.length > 3 ? args[3] : "130");
+        double[] scales = doubles(args.length > 4 ? args[4] : "0.5,1,2");
+        long[] seeds = seeds(args.length > 5 ? args[5] : "1111-1120");
+        long cacheBytes = (args.length > 6 ? Long.parseLong(args[6]) : 256) * 1024 * 1024;
+
+        ResultCache cache = new ResultCache(Path.of(args[1]), cacheBytes);
+        ParameterSweep sweep = new ParameterSweep(cache, steps);
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        List<Future<String>> lines = new ArrayList<>();
+        for(int side : sides) {
+            for(double scale : scales) {
+                for(long seed : seeds) {
+                    lines.add(executor.submit(() -> sweep.run(side, scale, seed)));
+                }
+            }
+        }
+        long start = System.nanoTime();
+        try(PrintWriter out = new PrintWriter(Files.newBufferedWriter(report))) {
+            out.println("# steps " + steps + ", engine version " + Simulator.ENGINE_VERSION + ", cache " + args[1]);
+            out.println(HEADER);
+            for(Future<String> line : lines) {
+                out.println(line.get());
+                out.flush();
+            }
+            out.printf(Locale.ROOT, "# %d runs, %d simulated, %.1f s%n", lines.size(), cache.getMisses(),
+                       (System.nanoTime() - start) / 1e9);
+        }
+        finally {
+            executor.shutdown();
+        }
+        System.out.printf(Locale.ROOT, "%d runs, %d from the cache, %d simulated, %.1f s%n", lines.size(),
+                          lines.size() - cache.getMisses(), cache.getMisses(), (System.nanoTime() - start) / 1e9);
+    }
+}
@@ -1,10 +1,12 @@
-
 import java.util.*;
 
-public class Plant{
+public class Plant {
 
     private Location location;
     private boolean consumed;
+    // The step of this plant's next growth event, or -1 while it has no
+    // free neighbour to grow into.
+    private int growthStep = -1;
     private static final double GROWTH_RATE = 0.05;
     private static final int MAX_CHILDREN = 3;
     private static final Random rand = Randomizer.getRandom();
@@ -16,31 +18,60 @@ public class Plant{
 
     }
 
-    public void act(Field currentField, Field nextFieldState){
-        if(isAlive()){
-            Location nextLocation = this.location;
-            setLocation(nextLocation);
-            nextFieldState.placePlant(this, nextLocation);
-    
-            List<Location> freeLocations =
-                    nextFieldState.getFreeAdjacentLocations(getLocation());
-            if(! freeLocations.isEmpty()) {
-                reproduce(nextFieldState, freeLocations);
-            }
+    /**
+     * Run one growth event: spread into up to MAX_CHILDREN neighbouring
+     * cells that have no plant, trap or live animal.
+     * @param nextFieldState The field being built for the next step.
+     * @return true if the plant still borders a cell without a plant or
+     *         trap, i.e. it is still on the growth frontier.
+     */
+    public boolean grow(Field nextFieldState){
+        int births = rand.nextInt(MAX_CHILDREN) + 1;
+        // Cells with a live animal stay on the frontier but cannot be grown into.
+        int open = nextFieldState.countUnplantedAdjacent(location);
+        long free = nextFieldState.drawPlantableAdjacent(location);
+        int planted = Math.min(births, Field.drawnCount(free));
+        for(int i = 0; i < planted; i++) {
+            Location loc = nextFieldState.drawnLocation(location, free, i);
+            Plant young = nextFieldState.getPool().newPlant(loc);
+            nextFieldState.placePlant(young, loc);
         }
+        return open > planted;
     }
 
-    public void reproduce(Field nextFieldState, List<Location> freeLocations){
-    int births = grow();
-        if(births > 0) {
-            for (int b = 0; b < births && ! freeLocations.isEmpty(); b++) {
-                Location loc = freeLocations.remove(0);
-                if (!nextFieldState.containsTrap(loc)){
-                    Plant young = new Plant(loc);
-                    nextFieldState.placePlant(young, loc);
-                }
-            }
-        }
+    /**
+     * Draw the number of steps until the next growth event. Growth happens
+     * with probability GROWTH_RATE per step, so the wait is geometric and
+     * one draw replaces a roll on every step.
+     * @param rand The stream to draw from.
+     * @return A delay of at least one step.
+     */
+    public static int growthDelay(Random rand)
+    {
+        double u = rand.nextDouble();
+        return 1 + (int) (Math.log1p(-u) / Math.log1p(-GROWTH_RATE));
+    }
+
+    /**
+     * Bring a dead plant back as a new one at the given location, so that
+     * it can be reused from a pool.
+     */
+    protected void revive(Location location)
+    {
+        this.location = location;
+        consumed = false;
+        growthStep = -1;
+    }
+
+    /**
+     * @return A plant in the same state, for a branch of the simulation.
+     */
+    public Plant copy()
+    {
+        Plant copy = new Plant(location);
+        copy.consumed = consumed;
+        copy.growthStep = growthStep;
+        return copy;
     }
 
     public boolean isAlive(){
@@ -63,15 +94,13 @@ public class Plant{
         this.location = location;
     }
 
-    private int grow()
+    public int getGrowthStep()
     {
-        int births;
-        if(rand.nextDouble() <= GROWTH_RATE) {
-            births = rand.nextInt(MAX_CHILDREN) + 1;
-        }
-        else {
-            births = 0;
-        }
-        return births;
+        return growthStep;
+    }
+
+    public void setGrowthStep(int growthStep)
+    {
+        this.growthStep = growthStep;
     }
 }
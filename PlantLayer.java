@@ -0,0 +1,477 @@
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * The plants of a field, kept from one step to the next.
+ * Plants do not move, so instead of re-placing every plant in each new
+ * field the layer is handed over whole, and only plants on the growth
+ * frontier (those with a neighbouring cell free of plants and traps) are
+ * ever visited. Each frontier plant is scheduled on a timing wheel for
+ * its next growth event; plants that find no free neighbour are parked
+ * until a neighbouring plant is removed.
+ *
+ * A layer can be forked for a branch of the simulation. The fork shares
+ * the grid chunks and bitmap rows, copy-on-write, and the plants in
+ * them: a plant in a shared chunk is never modified, and the first
+ * change to a shared chunk copies the chunk together with its plants.
+ * Wheel entries still naming a plant that has since been copied are
+ * redirected to the copy when they come due.
+ *
+ * The layer can also keep, for one reader such as the view, the cells
+ * whose plant came or went, so the reader does not have to visit every
+ * plant each step.
+ *
+ * The growth events due in a step run in the order of their cells, the
+ * even strips of rows first (see Field.stripParity), and every growth
+ * event and growth delay draws from a stream seeded for its cell. The
+ * plants therefore grow the same whatever order they were scheduled in,
+ * and a band of the field grows like the same rows of the whole field.
+ */
+public class PlantLayer {
+
+    // Growth events further away than this wrap around the wheel.
+    private static final int WHEEL_SIZE = 64;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    // Changes kept at least, however few plants there are.
+    private static final int MIN_CHANGES = 1024;
+    // The order the due growth events run in; see prepareGrowth.
+    private static final Comparator<Plant> GROWTH_ORDER = Comparator.comparingLong(plant -> {
+        Location location = plant.getLocation();
+        return (long) Field.stripParity(location.row()) << 62 | (long) location.row() << 31 | location.col();
+    });
+
+    private final ChunkedGrid<Plant> grid;
+    private final OccupancyBitmap bitmap;
+    private final EntityPool pool;
+    private final List<List<Plant>> wheel = new ArrayList<>(WHEEL_SIZE);
+    private List<Plant> spare = new ArrayList<>();
+    private int step;
+    // Seeds the draws of the growth events and delays of this step.
+    private long seed;
+    private final Random delays = new Random();
+    // The plants whose growth event is due this step, in the order the
+    // events run; see prepareGrowth.
+    private final List<Plant> ready = new ArrayList<>();
+    // The XOR of the Zobrist keys of all plants.
+    private long hash;
+    // Scheduled plants of shared chunks, mapped to this layer's copies.
+    private final Map<Plant, Plant> copies = new IdentityHashMap<>();
+    // Cells whose plant came or went since the reader last took them;
+    // null when the reader has to visit every plant instead.
+    private List<Location> changes;
+    private Object changeReader;
+
+    public PlantLayer(int width, EntityPool pool)
+    {
+        grid = new ChunkedGrid<>(this::copy);
+        bitmap = new OccupancyBitmap(width);
+        this.pool = pool;
+        for(int i = 0; i < WHEEL_SIZE; i++) {
+            wheel.add(new ArrayList<>());
+        }
+    }
+
+    private PlantLayer(PlantLayer original, EntityPool pool)
+    {
+        grid = original.grid.fork(this::copy);
+        bitmap = original.bitmap.fork();
+        this.pool = pool;
+        step = original.step;
+        seed = original.seed;
+        hash = original.hash;
+        for(List<Plant> bucket : original.wheel) {
+            List<Plant> copy = new ArrayList<>(bucket.size());
+            for(Plant queued : bucket) {
+                Plant plant = original.copies.getOrDefault(queued, queued);
+                // Dead plants are only referenced by the original's wheel,
+                // which returns them to its own pool.
+                if(plant.isAlive()) {
+                    copy.add(plant);
+                }
+            }
+            wheel.add(copy);
+        }
+    }
+
+    /**
+     * Create a layer for a branch of the simulation with the same plants
+     * and schedule. It shares its state with this layer copy-on-write, so
+     * memory grows only with the chunks either of them changes.
+     * @param pool The entity pool of the branch.
+     * @return The fork.
+     */
+    public PlantLayer fork(EntityPool pool)
+    {
+        return new PlantLayer(this, pool);
+    }
+
+    /**
+     * @return The plant in a cell, or null. A plant in a shared chunk
+     *         must only be read.
+     */
+    public Plant get(Location location)
+    {
+        return grid.get(location);
+    }
+
+    public Plant get(int row, int col)
+    {
+        return grid.get(row, col);
+    }
+
+    /**
+     * Visit every plant, chunk by chunk.
+     */
+    public void forEach(Consumer<Plant> action)
+    {
+        grid.forEach(action);
+    }
+
+    /**
+     * Visit every plant, scanning the live chunks when DENSE and going
+     * through the occupancy bitmap when SPARSE.
+     */
+    public void forEach(Consumer<Plant> action, ScanStrategy.Mode mode)
+    {
+        if(mode == ScanStrategy.Mode.DENSE) {
+            grid.forEach(action);
+        }
+        else {
+            bitmap.forEachSet((row, col) -> action.accept(grid.get(row, col)));
+        }
+    }
+
+    public int size()
+    {
+        return grid.size();
+    }
+
+    /**
+     * @return The Zobrist hash of the plants in this layer.
+     */
+    public long getHash()
+    {
+        return hash;
+    }
+
+    public OccupancyBitmap getBitmap()
+    {
+        return bitmap;
+    }
+
+    public int getChunkCount()
+    {
+        return grid.getChunkCount();
+    }
+
+    /**
+     * Put a plant in a cell, replacing any plant already there, and
+     * schedule its first growth event.
+     */
+    public void place(Plant plant, Location location)
+    {
+        Plant previous = grid.put(location, plant);
+        if(previous == plant) {
+            return;
+        }
+        if(previous != null) {
+            previous.setGrowthStep(-1);
+        }
+        else {
+            hash ^= Zobrist.key(Species.PLANT, location);
+            changed(location);
+        }
+        bitmap.set(location.row(), location.col());
+        schedule(plant);
+    }
+
+    /**
+     * Remove the plant in a cell, waking its parked neighbours since they
+     * now border a free cell. A dead plant goes back to the pool once the
+     * wheel no longer holds it: now if it was parked, otherwise when its
+     * stale wheel entry comes due.
+     * @return The removed plant, or null.
+     */
+    public Plant remove(Location location)
+    {
+        Plant plant = grid.remove(location);
+        if(plant != null) {
+            hash ^= Zobrist.key(Species.PLANT, location);
+            boolean queued = plant.getGrowthStep() >= 0;
+            plant.setGrowthStep(-1);
+            bitmap.clear(location.row(), location.col());
+            changed(location);
+            wakeNeighbours(location);
+            if(!queued && !plant.isAlive()) {
+                pool.release(plant);
+            }
+        }
+        return plant;
+    }
+
+    /**
+     * Kill the plant in a cell, e.g. because it was eaten, and remove it.
+     * @return The plant, or null if the cell had none.
+     */
+    public Plant destroy(Location location)
+    {
+        Plant plant = grid.own(location.row(), location.col());
+        if(plant != null) {
+            plant.setDead();
+            remove(location);
+        }
+        return plant;
+    }
+
+    /**
+     * Remove the plant in a cell without waking its neighbours, because it
+     * lives on elsewhere, e.g. in the band of the field that owns the cell.
+     * @return The removed plant, or null.
+     */
+    public Plant take(Location location)
+    {
+        Plant plant = grid.remove(location);
+        if(plant != null) {
+            hash ^= Zobrist.key(Species.PLANT, location);
+            plant.setGrowthStep(-1);
+            bitmap.clear(location.row(), location.col());
+            changed(location);
+        }
+        return plant;
+    }
+
+    /**
+     * Schedule the parked plants around a cell whose plant was removed
+     * outside this layer, e.g. a neighbouring band's, as remove does.
+     */
+    public void wake(Location location)
+    {
+        wakeNeighbours(location);
+    }
+
+    /**
+     * Remove every plant in the strip between the old and the new bounds.
+     * The strip is outside the field, so no neighbours are woken.
+     */
+    public void removeOutside(int oldDepth, int oldWidth, int newDepth, int newWidth)
+    {
+        for(int row = 0; row < oldDepth; row++) {
+            int fromCol = row < newDepth ? newWidth : 0;
+            for(int col = fromCol; col < oldWidth; col++) {
+                Plant plant = grid.remove(row, col);
+                if(plant != null) {
+                    Location location = new Location(row, col);
+                    hash ^= Zobrist.key(Species.PLANT, location);
+                    plant.setGrowthStep(-1);
+                    bitmap.clear(row, col);
+                    changed(location);
+                }
+            }
+        }
+    }
+
+    public void clear()
+    {
+        grid.clear();
+        step = 0;
+        hash = 0;
+        copies.clear();
+        changes = null;
+        bitmap.clear();
+        for(List<Plant> bucket : wheel) {
+            bucket.clear();
+        }
+    }
+
+    /**
+     * Hand over the cells whose plant came or went since the reader last
+     * called this. Changes are kept for the latest reader only.
+     * @param reader Whoever keeps track of the plants.
+     * @return The changed cells, or null if the reader has to visit every
+     *         plant instead: on its first call, after the layer was
+     *         cleared or forked, or when so many cells changed that
+     *         visiting every plant is no slower.
+     */
+    public List<Location> takeChanges(Object reader)
+    {
+        List<Location> taken = reader == changeReader ? changes : null;
+        changeReader = reader;
+        changes = new ArrayList<>();
+        return taken;
+    }
+
+    private void changed(Location location)
+    {
+        if(changes != null) {
+            if(changes.size() < Math.max(MIN_CHANGES, grid.size())) {
+                changes.add(location);
+            }
+            else {
+                changes = null;
+            }
+        }
+    }
+
+    /**
+     * Count the plants, the grid, the bitmap and the growth wheel.
+     */
+    public void accountMemory(MemoryFootprint footprint)
+    {
+        MemoryLayout layout = footprint.getLayout();
+        grid.forEach(footprint::addEntity);
+        footprint.add(MemoryFootprint.Part.GRIDS, layout.instance(PlantLayer.class) + grid.estimateBytes(layout));
+        footprint.add(MemoryFootprint.Part.BITMAPS, bitmap.estimateBytes(layout));
+        long lists = layout.arrayList(wheel.size()) + layout.arrayList(spare.size());
+        for(List<Plant> bucket : wheel) {
+            lists += layout.arrayList(bucket.size());
+        }
+        // An IdentityHashMap keeps keys and values in one table, at most
+        // two thirds full.
+        lists += layout.instance(IdentityHashMap.class) + layout.objectArray(Math.max(64, copies.size() * 3));
+        footprint.add(MemoryFootprint.Part.LISTS, lists);
+    }
+
+    /**
+     * Seed the draws of the growth events and growth delays from now on.
+     * Called at the start of every step, with the same seed wherever the
+     * step's cells are handled.
+     */
+    public void setSeed(long seed)
+    {
+        this.seed = seed;
+    }
+
+    /**
+     * Start the growth of this step: take the events due from the wheel
+     * and put them in the order they run, by the strip parity, row and
+     * column of their cells. Growth only adds plants, so the events stay
+     * due until both halves have run.
+     */
+    public void prepareGrowth()
+    {
+        step++;
+        int bucketIndex = step & WHEEL_MASK;
+        List<Plant> due = wheel.get(bucketIndex);
+        wheel.set(bucketIndex, spare);
+        ready.clear();
+        for(Plant queued : due) {
+            Plant plant = copies.isEmpty() ? queued : resolve(queued);
+            int growthStep = plant.getGrowthStep();
+            if(!plant.isAlive()) {
+                // Removed while queued; this was its last reference.
+                pool.release(plant);
+                continue;
+            }
+            if(growthStep < step || (growthStep & WHEEL_MASK) != bucketIndex) {
+                // Replaced, parked or rescheduled since it was queued.
+                continue;
+            }
+            if(growthStep > step) {
+                // A full turn of the wheel away.
+                wheel.get(bucketIndex).add(plant);
+            }
+            else {
+                ready.add(plant);
+            }
+        }
+        due.clear();
+        spare = due;
+        ready.sort(GROWTH_ORDER);
+    }
+
+    /**
+     * Run the growth events prepared for this step in the strips of one
+     * parity. Each plant draws from a stream seeded for its cell.
+     * @param nextFieldState The field that owns this layer and is being built.
+     * @param parity 0 for the even strips, 1 for the odd ones.
+     */
+    public void grow(Field nextFieldState, int parity)
+    {
+        Random draws = Randomizer.keyedStream();
+        Random previous = Randomizer.use(draws);
+        try {
+            for(Plant due : ready) {
+                Location location = due.getLocation();
+                if(Field.stripParity(location.row()) != parity) {
+                    continue;
+                }
+                // Growth may have copied the plant's chunk since it was
+                // prepared.
+                Plant plant = copies.isEmpty() ? due : resolve(due);
+                draws.setSeed(Randomizer.seedFor(seed, Randomizer.PLANT_GROWTH, location.row(), location.col()));
+                if(plant.grow(nextFieldState)) {
+                    schedule(own(plant));
+                }
+                else {
+                    own(plant).setGrowthStep(-1);
+                }
+            }
+        }
+        finally {
+            Randomizer.use(previous);
+        }
+    }
+
+    private void schedule(Plant plant)
+    {
+        Location location = plant.getLocation();
+        delays.setSeed(Randomizer.seedFor(seed ^ step, Randomizer.GROWTH_DELAYS, location.row(), location.col()));
+        int growthStep = step + Plant.growthDelay(delays);
+        plant.setGrowthStep(growthStep);
+        wheel.get(growthStep & WHEEL_MASK).add(plant);
+    }
+
+    private void wakeNeighbours(Location location)
+    {
+        for(int row = location.row() - 1; row <= location.row() + 1; row++) {
+            for(int col = location.col() - 1; col <= location.col() + 1; col++) {
+                Plant plant = grid.get(row, col);
+                if(plant != null && plant.getGrowthStep() < 0) {
+                    schedule(own(plant));
+                }
+            }
+        }
+    }
+
+    /**
+     * Get a plant of this layer for modification.
+     * @param plant A plant in the grid, possibly in a shared chunk.
+     * @return The plant itself, or if its chunk was shared, this layer's
+     *         new copy of it.
+     */
+    private Plant own(Plant plant)
+    {
+        Location location = plant.getLocation();
+        if(!grid.isShared(location.row(), location.col())) {
+            return plant;
+        }
+        // The caller is acting on the plant now, so any wheel entry for it
+        // is being consumed and needs no redirecting.
+        Plant copy = grid.own(location.row(), location.col());
+        copies.remove(plant);
+        return copy;
+    }
+
+    /**
+     * Follow a wheel entry to this layer's copy of the plant, if any. Each
+     * scheduled plant has exactly one entry, so the mapping is dropped.
+     */
+    private Plant resolve(Plant plant)
+    {
+        Plant copy = copies.remove(plant);
+        return copy != null ? copy : plant;
+    }
+
+    /**
+     * The copier of the grid: copy a plant of a shared chunk, remembering
+     * the copy if the original is on the wheel.
+     */
+    private Plant copy(Plant plant)
+    {
+        Plant copy = plant.copy();
+        if(plant.getGrowthStep() >= 0) {
+            copies.put(plant, copy);
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,360 @@
+import java.util.*;
+
+/**
+ * Streaming analysis of the population of each species, fed once per
+ * step. For every species it keeps the running mean and variance over
+ * the whole run, an exponentially weighted average and trend, and the
+ * autocorrelation over a sliding window, from which the period and
+ * amplitude of any oscillation are estimated. For each predator/prey
+ * pair it keeps the cross-correlation over the same window and reports
+ * a Lotka-Volterra cycle when both oscillate with the same period and
+ * the predator peaks after the prey.
+ *
+ * All state is a fixed number of ring buffers and lag sums, so the
+ * memory used does not grow with the length of the run.
+ */
+public class PopulationAnalytics implements SimulationObserver {
+
+    // The sliding window and the largest lag examined within it.
+    private static final int WINDOW = 128;
+    private static final int MAX_LAG = WINDOW / 2;
+    // Smoothing factor of the exponentially weighted average and trend.
+    private static final double EWMA_ALPHA = 0.1;
+    // Autocorrelation a peak needs to count as a period.
+    private static final double PERIOD_THRESHOLD = 0.3;
+
+    private static final Species[] SPECIES = { Species.MOUSE, Species.OWL, Species.CAT, Species.WOLF, Species.DEER };
+    private static final Species[][] PAIRS = {
+        { Species.MOUSE, Species.OWL }, { Species.MOUSE, Species.CAT },
+        { Species.CAT, Species.OWL }, { Species.DEER, Species.WOLF },
+    };
+
+    private final Map<Species, Series> series = new EnumMap<>(Species.class);
+    private final List<Pair> pairs = new ArrayList<>();
+    private int lastStep = -1;
+
+    public PopulationAnalytics()
+    {
+        for(Species species : SPECIES) {
+            series.put(species, new Series());
+        }
+        for(Species[] pair : PAIRS) {
+            pairs.add(new Pair(pair[0], pair[1], series.get(pair[0]), series.get(pair[1])));
+        }
+    }
+
+    @Override
+    public void stepCompleted(int step, Field field, Earthquake earthquake)
+    {
+        record(step, field.getPopulationCounts());
+    }
+
+    /**
+     * Add one step's counts.
+     * @param step The step number.
+     * @param counts Live animals indexed by Species ordinal.
+     */
+    public void record(int step, int[] counts)
+    {
+        lastStep = step;
+        for(Pair pair : pairs) {
+            pair.evict();
+        }
+        for(Map.Entry<Species, Series> entry : series.entrySet()) {
+            entry.getValue().add(counts[entry.getKey().ordinal()]);
+        }
+        for(Pair pair : pairs) {
+            pair.add();
+        }
+    }
+
+    /**
+     * @return The current statistics of one species.
+     */
+    public SpeciesSummary getSummary(Species species)
+    {
+        Series s = series.get(species);
+        if(s == null) {
+            throw new IllegalArgumentException("Not an animal species: " + species);
+        }
+        return s.summary(species);
+    }
+
+    /**
+     * @return The current state of the cycle detector for every
+     *         predator/prey pair.
+     */
+    public List<CycleSummary> getCycles()
+    {
+        List<CycleSummary> cycles = new ArrayList<>();
+        for(Pair pair : pairs) {
+            cycles.add(pair.summary());
+        }
+        return cycles;
+    }
+
+    /**
+     * @return A readable summary of all statistics at the latest step.
+     */
+    public String report()
+    {
+        StringBuilder text = new StringBuilder("Population analytics at step " + lastStep + "\n");
+        for(Species species : SPECIES) {
+            SpeciesSummary s = getSummary(species);
+            text.append(String.format("  %-6s mean %.1f sd %.1f ewma %.1f trend %+.2f period %d amplitude %.1f%n",
+                                      species, s.mean(), Math.sqrt(s.variance()), s.ewma(), s.trend(),
+                                      s.period(), s.amplitude()));
+        }
+        for(CycleSummary c : getCycles()) {
+            text.append(String.format("  %s/%s: %s%n", c.prey(), c.predator(),
+                                      c.detected() ? "cycle, period " + c.period() + ", predator lags by " + c.phaseLag()
+                                                   : "no cycle"));
+        }
+        return text.toString();
+    }
+
+    /**
+     * Statistics of one species' population at the latest step.
+     * @param period The dominant oscillation period in steps, or 0 if none.
+     * @param amplitude Half the range of the population in the window.
+     */
+    public record SpeciesSummary(Species species, long samples, double mean, double variance,
+                                 double ewma, double trend, int period, double amplitude)
+    {
+    }
+
+    /**
+     * The Lotka-Volterra detector's view of one predator/prey pair.
+     * @param phaseLag How many steps the predator's peaks follow the prey's.
+     */
+    public record CycleSummary(Species prey, Species predator, boolean detected, int period, int phaseLag)
+    {
+    }
+
+    /**
+     * The statistics of one time series.
+     */
+    private static class Series
+    {
+        // The last WINDOW values; head is where the next one goes.
+        final long[] ring = new long[WINDOW];
+        int head, filled;
+        long windowSum;
+        // lagSums[k] = sum of x[i] * x[i - k] over pairs inside the window.
+        final long[] lagSums = new long[MAX_LAG + 1];
+
+        long samples;
+        double mean, m2;
+        double ewma, trend;
+        long previous;
+
+        void add(long x)
+        {
+            // Welford's online mean and variance over the whole run.
+            samples++;
+            double delta = x - mean;
+            mean += delta / samples;
+            m2 += delta * (x - mean);
+            if(samples == 1) {
+                ewma = x;
+            }
+            else {
+                ewma += EWMA_ALPHA * (x - ewma);
+                trend += EWMA_ALPHA * ((x - previous) - trend);
+            }
+            previous = x;
+
+            if(filled == WINDOW) {
+                // Pairs that involve the value about to leave the window.
+                long oldest = ring[head];
+                for(int k = 0; k <= MAX_LAG; k++) {
+                    lagSums[k] -= oldest * get(WINDOW - 1 - k);
+                }
+                windowSum -= oldest;
+            }
+            else {
+                filled++;
+            }
+            ring[head] = x;
+            head = (head + 1) % WINDOW;
+            windowSum += x;
+            for(int k = 0; k <= MAX_LAG && k < filled; k++) {
+                lagSums[k] += x * get(k);
+            }
+        }
+
+        /**
+         * @return The value age steps before the latest (0 = latest).
+         */
+        long get(int age)
+        {
+            return ring[Math.floorMod(head - 1 - age, WINDOW)];
+        }
+
+        /**
+         * Sum of the oldest n values in the window.
+         */
+        long sumOldest(int n)
+        {
+            long sum = 0;
+            for(int age = filled - n; age < filled; age++) {
+                sum += get(age);
+            }
+            return sum;
+        }
+
+        /**
+         * Sum of the newest n values in the window.
+         */
+        long sumNewest(int n)
+        {
+            long sum = 0;
+            for(int age = 0; age < n; age++) {
+                sum += get(age);
+            }
+            return sum;
+        }
+
+        /**
+         * @return The autocorrelation of the window at lag k.
+         */
+        double autocorrelation(int k)
+        {
+            if(filled <= k + 1) {
+                return 0;
+            }
+            double m = (double) windowSum / filled;
+            double c0 = lagSums[0] - filled * m * m;
+            if(c0 <= 0) {
+                return 0;
+            }
+            long later = windowSum - sumOldest(k);
+            long earlier = windowSum - sumNewest(k);
+            double ck = lagSums[k] - m * (later + earlier) + (filled - k) * m * m;
+            return (ck / (filled - k)) / (c0 / filled);
+        }
+
+        /**
+         * The first autocorrelation peak after the series has first
+         * decorrelated, if it is strong enough.
+         */
+        int period()
+        {
+            int k = 1;
+            while(k < MAX_LAG && k < filled / 2 && autocorrelation(k) > 0) {
+                k++;
+            }
+            int best = 0;
+            double bestValue = PERIOD_THRESHOLD;
+            for(; k < MAX_LAG && k < filled / 2; k++) {
+                double r = autocorrelation(k);
+                if(r > bestValue && r >= autocorrelation(k - 1) && r >= autocorrelation(k + 1)) {
+                    best = k;
+                    bestValue = r;
+                }
+            }
+            return best;
+        }
+
+        double amplitude()
+        {
+            if(filled == 0) {
+                return 0;
+            }
+            long min = Long.MAX_VALUE, max = Long.MIN_VALUE;
+            for(int age = 0; age < filled; age++) {
+                min = Math.min(min, get(age));
+                max = Math.max(max, get(age));
+            }
+            return (max - min) / 2.0;
+        }
+
+        SpeciesSummary summary(Species species)
+        {
+            return new SpeciesSummary(species, samples, mean, samples > 1 ? m2 / (samples - 1) : 0,
+                                      ewma, trend, period(), amplitude());
+        }
+    }
+
+    /**
+     * Cross-correlation of a prey and a predator series.
+     */
+    private static class Pair
+    {
+        final Species preySpecies, predatorSpecies;
+        final Series prey, predator;
+        // crossSums[k] = sum of predator[i] * prey[i - k] inside the window.
+        final long[] crossSums = new long[MAX_LAG + 1];
+
+        Pair(Species preySpecies, Species predatorSpecies, Series prey, Series predator)
+        {
+            this.preySpecies = preySpecies;
+            this.predatorSpecies = predatorSpecies;
+            this.prey = prey;
+            this.predator = predator;
+        }
+
+        /**
+         * Remove the pairs that involve the oldest values; called before
+         * the series take their new values.
+         */
+        void evict()
+        {
+            if(prey.filled == WINDOW) {
+                long oldestPrey = prey.get(WINDOW - 1);
+                for(int k = 0; k <= MAX_LAG; k++) {
+                    crossSums[k] -= predator.get(WINDOW - 1 - k) * oldestPrey;
+                }
+            }
+        }
+
+        /**
+         * Add the pairs that involve the newest predator value; called
+         * after the series have taken their new values.
+         */
+        void add()
+        {
+            long x = predator.get(0);
+            for(int k = 0; k <= MAX_LAG && k < prey.filled; k++) {
+                crossSums[k] += x * prey.get(k);
+            }
+        }
+
+        CycleSummary summary()
+        {
+            int preyPeriod = prey.period();
+            int predatorPeriod = predator.period();
+            boolean same = preyPeriod > 0 && predatorPeriod > 0
+                           && Math.abs(preyPeriod - predatorPeriod) <= Math.max(2, preyPeriod / 4);
+            if(!same) {
+                return new CycleSummary(preySpecies, predatorSpecies, false, 0, 0);
+            }
+            int lag = 0;
+            double best = Double.NEGATIVE_INFINITY;
+            for(int k = 0; k <= preyPeriod / 2 && k <= MAX_LAG; k++) {
+                double r = crossCorrelation(k);
+                if(r > best) {
+                    best = r;
+                    lag = k;
+                }
+            }
+            return new CycleSummary(preySpecies, predatorSpecies, lag > 0 && best > 0, preyPeriod, lag);
+        }
+
+        double crossCorrelation(int k)
+        {
+            int n = prey.filled - k;
+            if(n <= 1) {
+                return 0;
+            }
+            double mPrey = (double) prey.windowSum / prey.filled;
+            double mPredator = (double) predator.windowSum / predator.filled;
+            long predatorLater = predator.windowSum - predator.sumOldest(k);
+            long preyEarlier = prey.windowSum - prey.sumNewest(k);
+            double c = crossSums[k] - mPrey * predatorLater - mPredator * preyEarlier + n * mPrey * mPredator;
+            double sd = Math.sqrt((prey.lagSums[0] - prey.filled * mPrey * mPrey)
+                                  * (predator.lagSums[0] - predator.filled * mPredator * mPredator)) / prey.filled;
+            return sd <= 0 ? 0 : (c / n) / sd;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+/**
+ * The probability of creating each kind of entity in a cell when a
+ * field is populated. The checks cascade in the order trap, owl, mouse,
+ * cat, wolf, deer, plant; the first one that succeeds fills the cell.
+ */
+public record PopulationDensities(double trap, double owl, double mouse, double cat,
+                                  double wolf, double deer, double plant)
+{
+    public PopulationDensities
+    {
+        for(double p : new double[] { trap, owl, mouse, cat, wolf, deer, plant }) {
+            if(p < 0 || p > 1) {
+                throw new IllegalArgumentException("Creation probabilities must be in [0, 1], got " + p);
+            }
+        }
+    }
+}
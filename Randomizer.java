@@ -4,9 +4,15 @@ public class Randomizer {
     // The default seed for control of randomization.
     private static final int SEED = 1111;
     // A shared Random object, if required.
-    private static final Random rand = new Random(SEED);
+    private static final Random rand = new PerThreadRandom();
     // Determine whether a shared random generator is to be provided.
     private static final boolean useShared = true;
+    // The streams of seedFor: the choice of entities for a row, an
+    // animal's act, a plant's growth event and a plant's growth delay.
+    public static final int POPULATION = 0;
+    public static final int ANIMALS = 1;
+    public static final int PLANT_GROWTH = 2;
+    public static final int GROWTH_DELAYS = 3;
 
     /**
      * Constructor for objects of class Randomizer
@@ -17,6 +23,9 @@ public class Randomizer {
 
     /**
      * Provide a random generator.
+     * The shared generator draws from a separate stream on each thread,
+     * so simulations running on different threads do not disturb each
+     * other's sequences.
      * @return A random object.
      */
     public static Random getRandom()
@@ -40,4 +49,133 @@ public class Randomizer {
             rand.setSeed(SEED);
         }
     }
+
+    /**
+     * Reset the randomization of the calling thread with a specific seed.
+     * This will have no effect if randomization is not
+     * through a shared Random generator.
+     * @param seed The new seed.
+     */
+    public static void reset(long seed)
+    {
+        if(useShared) {
+            rand.setSeed(seed);
+        }
+    }
+
+    /**
+     * Derive the seed of one entity's draws. An entity drawing from a
+     * stream seeded with this draws the same numbers whatever acted
+     * before it, so the run does not depend on how the field is divided
+     * up or in what order its parts are stepped.
+     * @param seed The seed of the step or population.
+     * @param stream Tells apart the draws of different kinds of entity
+     *               in the same cell.
+     * @param row The row of the entity's cell.
+     * @param col The column of the entity's cell.
+     * @return The seed.
+     */
+    public static long seedFor(long seed, int stream, int row, int col)
+    {
+        long h = mix(seed + (stream + 1) * 0x9E3779B97F4A7C15L);
+        h = mix(h ^ row);
+        return mix(h ^ (long) col << 32);
+    }
+
+    // The finaliser of SplitMix64.
+    private static long mix(long z)
+    {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * @return The calling thread's stream for keyed draws: it draws the
+     *         same numbers as a java.util.Random with the same seed, but
+     *         takes no lock, so re-seeding it for every entity with
+     *         seedFor is cheap. Install it with use, and put the previous
+     *         stream back when done.
+     */
+    public static Random keyedStream()
+    {
+        return KEYED.get();
+    }
+
+    /**
+     * Make the shared generator draw from the given stream on the calling
+     * thread, so a simulation can carry its stream from thread to thread.
+     * This will have no effect if randomization is not
+     * through a shared Random generator.
+     * @param stream The stream to draw from.
+     * @return The stream the thread drew from before.
+     */
+    public static Random use(Random stream)
+    {
+        if(!useShared) {
+            return null;
+        }
+        ThreadLocal<Random> streams = ((PerThreadRandom) rand).stream;
+        Random previous = streams.get();
+        streams.set(stream);
+        return previous;
+    }
+
+    // One keyed stream per thread, reused for every entity it steps.
+    private static final ThreadLocal<Random> KEYED = ThreadLocal.withInitial(UnsharedRandom::new);
+
+    /**
+     * A Random whose state lives in a per-thread generator. Every thread
+     * starts from the default seed; setSeed only affects the calling thread.
+     */
+    private static class PerThreadRandom extends Random
+    {
+        private static final long serialVersionUID = 1L;
+
+        // Never serialized: the shared generator is only used in process.
+        private final transient ThreadLocal<Random> stream = ThreadLocal.withInitial(() -> new Random(SEED));
+
+        @Override
+        public void setSeed(long seed)
+        {
+            // Called by the Random constructor before the field is set.
+            if(stream != null) {
+                stream.get().setSeed(seed);
+            }
+        }
+
+        @Override
+        protected int next(int bits)
+        {
+            return stream.get().nextInt() >>> (32 - bits);
+        }
+    }
+
+    /**
+     * The generator of java.util.Random with a plain field for its state,
+     * for a stream only ever used by one thread. nextGaussian keeps the
+     * spare value of Random, which setSeed cannot reset; it is not used.
+     */
+    private static class UnsharedRandom extends Random
+    {
+        private static final long serialVersionUID = 1L;
+        private static final long MULTIPLIER = 0x5DEECE66DL;
+        private static final long ADDEND = 0xBL;
+        private static final long MASK = (1L << 48) - 1;
+
+        private long state;
+
+        @Override
+        public void setSeed(long seed)
+        {
+            state = (seed ^ MULTIPLIER) & MASK;
+        }
+
+        @Override
+        protected int next(int bits)
+        {
+            state = (state * MULTIPLIER + ADDEND) & MASK;
+            return (int) (state >>> (48 - bits));
+        }
+    }
 }
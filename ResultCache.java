@@ -0,0 +1,281 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An on-disk cache of headless run results, so a sweep that meets a
+ * configuration it has already run reads the result back instead of
+ * simulating it again. Seeded runs are deterministic, so a result only
+ * depends on its configuration: the field size, seed, step limit,
+ * creation probabilities, the simulator's calamity constants and the
+ * engine version. A change to the model that alters results must bump
+ * Simulator.ENGINE_VERSION, which retires every older entry.
+ *
+ * Each result is one tab-separated file named by the SHA-256 of its
+ * configuration, which the file also records and which is checked on
+ * every read. The cache holds at most a given number of bytes; writing
+ * beyond that deletes the least recently used entries, where a read
+ * counts as a use. Entries are written to a temporary file and moved
+ * into place, so runs on several threads or processes may share one
+ * directory.
+ */
+public class ResultCache {
+
+    private static final String SUFFIX = ".tsv";
+    private static final String SUMMARY = "# summary";
+    private static final Species[] ANIMALS = { Species.MOUSE, Species.OWL, Species.CAT, Species.WOLF, Species.DEER };
+
+    private final Path directory;
+    private final long maxBytes;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param directory Where the entries are kept; created if missing.
+     * @param maxBytes The most the entries may take together.
+     */
+    public ResultCache(Path directory, long maxBytes) throws IOException
+    {
+        this.directory = Files.createDirectories(directory);
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return The canonical description of a run, from which its key is
+     *         derived.
+     */
+    public static String configuration(int depth, int width, long seed, int steps, PopulationDensities densities)
+    {
+        return "engine=" + Simulator.ENGINE_VERSION + ";depth=" + depth + ";width=" + width + ";seed=" + seed
+               + ";steps=" + steps + ";densities=" + densities
+               + ";earthquake=" + Simulator.EARTHQUAKE_CREATION_PROBABILITY
+               + ";deforestation=" + Simulator.DEFORESTATION_INTERVAL;
+    }
+
+    /**
+     * @return The key of a configuration: its SHA-256 in hex.
+     */
+    public static String key(String configuration)
+    {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(configuration.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        }
+        catch(NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Run a seeded headless simulation until the step limit or until the
+     * ecosystem dies out.
+     */
+    public static RunResult run(int depth, int width, long seed, int steps, PopulationDensities densities)
+    {
+        Simulator simulator = new Simulator(depth, width, seed, densities, false);
+        List<int[]> populations = new ArrayList<>();
+        populations.add(animalCounts(simulator.getField()));
+        simulator.addObserver((step, field, earthquake) -> populations.add(animalCounts(field)));
+        simulator.simulate(steps);
+        return new RunResult(configuration(depth, width, seed, steps, densities), simulator.getStep(),
+                             simulator.getField().getStateHash(), populations, simulator.getAnalytics().report());
+    }
+
+    private static int[] animalCounts(Field field)
+    {
+        int[] counts = field.getPopulationCounts();
+        int[] animals = new int[ANIMALS.length];
+        for(int i = 0; i < ANIMALS.length; i++) {
+            animals[i] = counts[ANIMALS[i].ordinal()];
+        }
+        return animals;
+    }
+
+    /**
+     * @return The cached result of a configuration, or null if there is
+     *         none or the entry cannot be read.
+     */
+    public RunResult get(String configuration)
+    {
+        Path file = entry(configuration);
+        try(BufferedReader in = Files.newBufferedReader(file)) {
+            RunResult result = read(in);
+            if(!result.configuration().equals(configuration)) {
+                throw new IOException("entry holds " + result.configuration());
+            }
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            hits.incrementAndGet();
+            return result;
+        }
+        catch(NoSuchFileException e) {
+            // A miss, or the entry was evicted under us.
+        }
+        catch(IOException | RuntimeException e) {
+            System.err.println("Ignoring cache entry " + file.getFileName() + ": " + e.getMessage());
+            try {
+                Files.deleteIfExists(file);
+            }
+            catch(IOException ignored) {
+                // Another writer will replace it.
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Store a result, then evict the least recently used entries until
+     * the cache fits its size again.
+     */
+    public void put(RunResult result) throws IOException
+    {
+        Path file = entry(result.configuration());
+        Path temporary = Files.createTempFile(directory, "entry", ".tmp");
+        try {
+            try(PrintWriter out = new PrintWriter(Files.newBufferedWriter(temporary))) {
+                write(result, out);
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally {
+            Files.deleteIfExists(temporary);
+        }
+        evict();
+    }
+
+    private synchronized void evict() throws IOException
+    {
+        List<Path> entries = new ArrayList<>();
+        Map<Path, FileTime> used = new HashMap<>();
+        long total = 0;
+        try(DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for(Path file : files) {
+                try {
+                    used.put(file, Files.getLastModifiedTime(file));
+                    total += Files.size(file);
+                    entries.add(file);
+                }
+                catch(NoSuchFileException e) {
+                    // Evicted by another process.
+                }
+            }
+        }
+        entries.sort(Comparator.comparing(used::get));
+        for(Iterator<Path> it = entries.iterator(); total > maxBytes && it.hasNext(); ) {
+            Path file = it.next();
+            try {
+                long size = Files.size(file);
+                Files.deleteIfExists(file);
+                total -= size;
+            }
+            catch(NoSuchFileException e) {
+                // Evicted by another process.
+            }
+        }
+    }
+
+    private Path entry(String configuration)
+    {
+        return directory.resolve(key(configuration) + SUFFIX);
+    }
+
+    public long getHits()
+    {
+        return hits.get();
+    }
+
+    public long getMisses()
+    {
+        return misses.get();
+    }
+
+    private static void write(RunResult result, PrintWriter out)
+    {
+        out.println("# config " + result.configuration());
+        out.println("# steps_run " + result.stepsRun());
+        out.println("# state_hash " + result.stateHash());
+        out.println(header());
+        for(int step = 0; step < result.populations().size(); step++) {
+            out.print(step);
+            for(int count : result.populations().get(step)) {
+                out.print('\t');
+                out.print(count);
+            }
+            out.println();
+        }
+        out.println(SUMMARY);
+        for(String line : result.summary().split("\n")) {
+            out.println("# " + line);
+        }
+    }
+
+    private static RunResult read(BufferedReader in) throws IOException
+    {
+        String configuration = value(in.readLine(), "# config ");
+        int stepsRun = Integer.parseInt(value(in.readLine(), "# steps_run "));
+        long stateHash = Long.parseLong(value(in.readLine(), "# state_hash "));
+        if(!header().equals(in.readLine())) {
+            throw new IOException("unexpected header");
+        }
+        List<int[]> populations = new ArrayList<>();
+        String line;
+        while((line = in.readLine()) != null && !line.equals(SUMMARY)) {
+            String[] fields = line.split("\t");
+            int[] counts = new int[ANIMALS.length];
+            for(int i = 0; i < counts.length; i++) {
+                counts[i] = Integer.parseInt(fields[i + 1]);
+            }
+            populations.add(counts);
+        }
+        if(line == null) {
+            throw new IOException("truncated entry");
+        }
+        StringBuilder summary = new StringBuilder();
+        while((line = in.readLine()) != null) {
+            summary.append(value(line, "# ")).append('\n');
+        }
+        return new RunResult(configuration, stepsRun, stateHash, populations, summary.toString());
+    }
+
+    private static String value(String line, String prefix) throws IOException
+    {
+        if(line == null || !line.startsWith(prefix)) {
+            throw new IOException("expected " + prefix.trim());
+        }
+        return line.substring(prefix.length());
+    }
+
+    private static String header()
+    {
+        StringBuilder header = new StringBuilder("step");
+        for(Species species : ANIMALS) {
+            header.append('\t').append(species.name().toLowerCase());
+        }
+        return header.toString();
+    }
+
+    /**
+     * The outcome of one run.
+     * @param stepsRun The steps run, fewer than the limit if the
+     *                 ecosystem died out.
+     * @param stateHash The state hash of the field after the last step.
+     * @param populations The live mice, owls, cats, wolves and deer
+     *                    after each step, from step 0.
+     * @param summary The population analytics report.
+     */
+    public record RunResult(String configuration, int stepsRun, long stateHash, List<int[]> populations,
+                            String summary)
+    {
+        public int[] finalPopulations()
+        {
+            return populations.get(populations.size() - 1);
+        }
+    }
+}
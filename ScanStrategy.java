@@ -0,0 +1,132 @@
+import java.util.*;
+
+/**
+ * Chooses, once per step and separately for each layer, how visits of
+ * every entity in a layer's grid are made. A DENSE visit scans every
+ * cell of the layer's live chunks; a SPARSE visit goes a word at a time
+ * through the layer's occupancy bitmap and only looks up the occupied
+ * cells. Scanning wins once nearly every cell is occupied, as it needs
+ * no lookups and no unpredictable branches; otherwise the bitmap wins.
+ * On a 1000x1000 world the two cost the same at about 87% occupancy of
+ * the live chunks, and the bitmap takes less than half the time below
+ * 70%.
+ *
+ * A layer turns DENSE when its occupancy reaches ENTER_DENSE and SPARSE
+ * again only when it drops to LEAVE_DENSE, so a population hovering
+ * near the break-even point does not flip modes every step. Mice booms,
+ * predator crashes and deforestation move the plants and animals
+ * across it over a run.
+ *
+ * The animals act in the order of their cells, whatever the mode, so
+ * acting is not affected; only visits whose order does not matter, such
+ * as drawing, statistics and exports, are.
+ */
+public class ScanStrategy {
+
+    /**
+     * How a layer is visited.
+     */
+    public enum Mode {
+        SPARSE,
+        DENSE
+    }
+
+    /**
+     * The layers a mode is kept for.
+     */
+    public enum Layer {
+        ANIMALS,
+        PLANTS
+    }
+
+    private static final double ENTER_DENSE = 0.90;
+    private static final double LEAVE_DENSE = 0.80;
+
+    private final Mode[] modes = new Mode[Layer.values().length];
+    private final double[] occupancy = new double[Layer.values().length];
+    // Steps spent in each mode and mode changes, per layer.
+    private final long[][] steps = new long[Layer.values().length][Mode.values().length];
+    private final int[] switches = new int[Layer.values().length];
+
+    public ScanStrategy()
+    {
+        Arrays.fill(modes, Mode.SPARSE);
+    }
+
+    /**
+     * @return A strategy in the same modes with its own counts, for a
+     *         fork of the simulation.
+     */
+    public ScanStrategy copy()
+    {
+        ScanStrategy copy = new ScanStrategy();
+        System.arraycopy(modes, 0, copy.modes, 0, modes.length);
+        System.arraycopy(occupancy, 0, copy.occupancy, 0, occupancy.length);
+        return copy;
+    }
+
+    /**
+     * Choose the mode of a layer for the next step.
+     * @param occupied The entities in the layer's grid.
+     * @param cells The cells of its live chunks.
+     * @return The mode.
+     */
+    public Mode update(Layer layer, int occupied, long cells)
+    {
+        int index = layer.ordinal();
+        double ratio = cells == 0 ? 0 : occupied / (double) cells;
+        occupancy[index] = ratio;
+        Mode mode = modes[index];
+        if(mode == Mode.SPARSE && ratio >= ENTER_DENSE) {
+            mode = Mode.DENSE;
+        }
+        else if(mode == Mode.DENSE && ratio <= LEAVE_DENSE) {
+            mode = Mode.SPARSE;
+        }
+        if(mode != modes[index]) {
+            modes[index] = mode;
+            switches[index]++;
+        }
+        steps[index][mode.ordinal()]++;
+        return mode;
+    }
+
+    public Mode getMode(Layer layer)
+    {
+        return modes[layer.ordinal()];
+    }
+
+    public double getOccupancy(Layer layer)
+    {
+        return occupancy[layer.ordinal()];
+    }
+
+    /**
+     * @return The steps a layer spent in a mode.
+     */
+    public long getSteps(Layer layer, Mode mode)
+    {
+        return steps[layer.ordinal()][mode.ordinal()];
+    }
+
+    public int getSwitches(Layer layer)
+    {
+        return switches[layer.ordinal()];
+    }
+
+    /**
+     * @return A table of the modes used by each layer.
+     */
+    public String report()
+    {
+        StringBuilder report = new StringBuilder("layer\tmode\toccupancy\tsparse_steps\tdense_steps\tswitches\n");
+        for(Layer layer : Layer.values()) {
+            report.append(layer).append('\t').append(getMode(layer))
+                  .append('\t').append(String.format(Locale.ROOT, "%.3f", getOccupancy(layer)))
+                  .append('\t').append(getSteps(layer, Mode.SPARSE))
+                  .append('\t').append(getSteps(layer, Mode.DENSE))
+                  .append('\t').append(getSwitches(layer)).append('\n');
+        }
+        return report.toString();
+    }
+}
@@ -0,0 +1,43 @@
+/**
+ * How far each animal species can sense food, in cells. A radius of 1
+ * means the adjacent cells only, which every animal searches anyway;
+ * above that, an animal with no food next to it heads for the nearest
+ * food within its radius.
+ */
+public record SensingRadii(int mouse, int owl, int cat, int wolf, int deer)
+{
+    /** Owls spot prey from well beyond the adjacent cells; the others do not. */
+    public static final SensingRadii DEFAULT = new SensingRadii(1, 5, 1, 1, 1);
+
+    public SensingRadii
+    {
+        for(int radius : new int[] { mouse, owl, cat, wolf, deer }) {
+            if(radius < 1) {
+                throw new IllegalArgumentException("Sensing radii must be at least 1, got " + radius);
+            }
+        }
+    }
+
+    /**
+     * @return The radius of an animal species.
+     */
+    public int of(Species species)
+    {
+        return switch (species) {
+            case MOUSE -> mouse;
+            case OWL -> owl;
+            case CAT -> cat;
+            case WOLF -> wolf;
+            case DEER -> deer;
+            default -> throw new IllegalArgumentException("Not an animal species: " + species);
+        };
+    }
+
+    /**
+     * @return The largest radius of any species.
+     */
+    public int max()
+    {
+        return Math.max(Math.max(mouse, owl), Math.max(cat, Math.max(wolf, deer)));
+    }
+}
@@ -0,0 +1,12 @@
+/**
+ * Receives the state of a simulation after every completed step.
+ */
+public interface SimulationObserver {
+
+    /**
+     * @param step The number of the step that has just completed.
+     * @param field The new state of the field.
+     * @param earthquake The earthquake of this step, or null.
+     */
+    void stepCompleted(int step, Field field, Earthquake earthquake);
+}
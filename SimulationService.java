@@ -0,0 +1,442 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A long-lived local service that runs headless simulations on request,
+ * so runs share one warmed-up JVM instead of each paying for start-up
+ * and JIT compilation.
+ *
+ * Every request and every job gets its own virtual thread; the number of
+ * jobs actually stepping at once is capped at the number of processors,
+ * the rest wait in line. Each job has its own seeded random streams, so
+ * concurrent jobs do not affect each other's results. The most recent
+ * finished jobs are kept for inspection; older ones are forgotten.
+ *
+ * A job is refused unless its world, as MemoryFootprint estimates it, and
+ * the lines of its steps fit in its share of the heap: the maximum heap
+ * divided among the jobs that may run at once.
+ *
+ * The JVM stays warm, not the worlds: at start-up the service runs one
+ * small job so the step loop is compiled before the first request, and
+ * the compiled code then serves every later job. Each job still builds
+ * and populates its own world.
+ *
+ *   POST /jobs?depth=&width=&seed=&steps=[&owl=&mouse=&cat=&wolf=&deer=&plant=&trap=]
+ *             [&owlRadius=&mouseRadius=&catRadius=&wolfRadius=&deerRadius=]
+ *        queues a job and answers with its id
+ *   GET  /jobs              lists the jobs and their state
+ *   GET  /jobs/{id}         shows a job's state, latest counts and,
+ *                           once it has finished, its population analytics
+ *   GET  /jobs/{id}/stream  streams the per-step population counts
+ *                           until the job finishes
+ *
+ * Usage: java SimulationService [port]
+ */
+public class SimulationService {
+
+    private static final int DEFAULT_PORT = 8080;
+    private static final int MAX_SIDE = 20000;
+    private static final int MAX_STEPS = 1_000_000;
+    // What a job keeps per step: its line of counts and the state hash.
+    private static final long STEP_BYTES = 128;
+    private static final String HEADER = "step\tmice\towls\tcats\twolves\tdeer";
+    // How many finished jobs, with their lines, are kept.
+    private static final int MAX_FINISHED_JOBS = 100;
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final int processors = Runtime.getRuntime().availableProcessors();
+    private final Semaphore cpuSlots = new Semaphore(processors);
+    private final Map<Integer, Job> jobs = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger(1);
+    // Finished jobs, oldest first.
+    private final Queue<Integer> finished = new ConcurrentLinkedQueue<>();
+
+    public SimulationService(int port) throws IOException
+    {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.setExecutor(executor);
+    }
+
+    public void start()
+    {
+        server.createContext("/jobs", this::handle);
+        server.start();
+        // Compile the step loop before the first real job arrives.
+        executor.submit(() -> runJob(new Job(0, 80, 80, 1, 100, Simulator.DEFAULT_DENSITIES,
+                                             SensingRadii.DEFAULT)));
+    }
+
+    public void stop()
+    {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public int getPort()
+    {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Queue a job; it starts once a processor slot is free.
+     * @return The queued job.
+     * @throws IllegalArgumentException If the job would not fit in its
+     *         share of the heap.
+     */
+    public Job submit(int depth, int width, long seed, int steps, PopulationDensities densities,
+                      SensingRadii radii)
+    {
+        long needed = MemoryFootprint.estimateBytes(depth, width) + steps * STEP_BYTES;
+        long share = Runtime.getRuntime().maxMemory() / processors;
+        if(needed > share) {
+            throw new IllegalArgumentException("Job too large: needs about " + (needed >> 20)
+                                               + " MB, a job may use " + (share >> 20) + " MB");
+        }
+        Job job = new Job(nextId.getAndIncrement(), depth, width, seed, steps, densities, radii);
+        jobs.put(job.id, job);
+        executor.submit(() -> runJob(job));
+        return job;
+    }
+
+    private void runJob(Job job)
+    {
+        try {
+            cpuSlots.acquire();
+        }
+        catch(InterruptedException e) {
+            job.finish(JobState.FAILED);
+            retire(job);
+            return;
+        }
+        JobState outcome = JobState.FAILED;
+        try {
+            job.setState(JobState.RUNNING);
+            Simulator simulator = new Simulator(job.depth, job.width, job.seed, job.densities, false);
+            simulator.setSensingRadii(job.radii);
+            job.record(0, simulator.getField());
+            simulator.addObserver((step, field, earthquake) -> job.record(step, field));
+            simulator.simulate(job.steps);
+            job.setSummary(simulator.getAnalytics().report());
+            outcome = JobState.DONE;
+        }
+        catch(RuntimeException e) {
+            // Reported as FAILED below.
+        }
+        finally {
+            // Also reached by Errors such as running out of memory, so
+            // no job is left RUNNING with clients waiting on it.
+            job.finish(outcome);
+            cpuSlots.release();
+            retire(job);
+        }
+    }
+
+    /**
+     * Keep a finished job, forgetting the oldest once there are too many.
+     */
+    private void retire(Job job)
+    {
+        finished.add(job.id);
+        while(finished.size() > MAX_FINISHED_JOBS) {
+            Integer oldest = finished.poll();
+            if(oldest != null) {
+                jobs.remove(oldest);
+            }
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException
+    {
+        try(exchange) {
+            String[] path = exchange.getRequestURI().getPath().split("/");
+            String method = exchange.getRequestMethod();
+            if(path.length == 2 && method.equals("POST")) {
+                Map<String, String> params = parseParams(exchange);
+                Job job;
+                try {
+                    job = submit(intParam(params, "depth", 130), intParam(params, "width", 130),
+                                 Long.parseLong(params.getOrDefault("seed", "1111")),
+                                 intParam(params, "steps", 700), densities(params), radii(params));
+                }
+                catch(IllegalArgumentException e) {
+                    respond(exchange, 400, e.getMessage() + "\n");
+                    return;
+                }
+                respond(exchange, 202, job.id + "\n");
+            }
+            else if(path.length == 2 && method.equals("GET")) {
+                StringBuilder body = new StringBuilder();
+                for(Job job : new TreeMap<>(jobs).values()) {
+                    body.append(job.id).append('\t').append(job.getState()).append('\n');
+                }
+                respond(exchange, 200, body.toString());
+            }
+            else if(path.length >= 3 && method.equals("GET")) {
+                Job job = jobs.get(parseId(path[2]));
+                if(job == null) {
+                    respond(exchange, 404, "No such job\n");
+                }
+                else if(path.length == 4 && path[3].equals("stream")) {
+                    stream(exchange, job);
+                }
+                else {
+                    respond(exchange, 200, job.getState() + "\n" + HEADER + "\n" + job.lastLine() + "\n"
+                                           + job.getSummary());
+                }
+            }
+            else {
+                respond(exchange, 404, "Unknown request\n");
+            }
+        }
+    }
+
+    /**
+     * Send the job's lines as they are produced, using chunked encoding.
+     */
+    private void stream(HttpExchange exchange, Job job) throws IOException
+    {
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        out.write((HEADER + "\n").getBytes(StandardCharsets.UTF_8));
+        int next = 0;
+        try {
+            List<String> lines;
+            while(!(lines = job.awaitLines(next)).isEmpty()) {
+                StringBuilder chunk = new StringBuilder();
+                for(String line : lines) {
+                    chunk.append(line).append('\n');
+                }
+                out.write(chunk.toString().getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                next += lines.size();
+            }
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        out.write(("# " + job.getState() + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException
+    {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    private static Map<String, String> parseParams(HttpExchange exchange) throws IOException
+    {
+        Map<String, String> params = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        for(String part : (Objects.toString(query, "") + "&" + body.strip()).split("&")) {
+            int eq = part.indexOf('=');
+            if(eq > 0) {
+                params.put(URLDecoder.decode(part.substring(0, eq), StandardCharsets.UTF_8),
+                           URLDecoder.decode(part.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return params;
+    }
+
+    private static int intParam(Map<String, String> params, String name, int defaultValue)
+    {
+        int value = Integer.parseInt(params.getOrDefault(name, String.valueOf(defaultValue)));
+        if(value <= 0 || value > (name.equals("steps") ? MAX_STEPS : MAX_SIDE)) {
+            throw new IllegalArgumentException(name + " out of range: " + value);
+        }
+        return value;
+    }
+
+    private static PopulationDensities densities(Map<String, String> params)
+    {
+        PopulationDensities d = Simulator.DEFAULT_DENSITIES;
+        return new PopulationDensities(doubleParam(params, "trap", d.trap()), doubleParam(params, "owl", d.owl()),
+                                       doubleParam(params, "mouse", d.mouse()), doubleParam(params, "cat", d.cat()),
+                                       doubleParam(params, "wolf", d.wolf()), doubleParam(params, "deer", d.deer()),
+                                       doubleParam(params, "plant", d.plant()));
+    }
+
+    private static SensingRadii radii(Map<String, String> params)
+    {
+        SensingRadii r = SensingRadii.DEFAULT;
+        return new SensingRadii(intParam(params, "mouseRadius", r.mouse()), intParam(params, "owlRadius", r.owl()),
+                                intParam(params, "catRadius", r.cat()), intParam(params, "wolfRadius", r.wolf()),
+                                intParam(params, "deerRadius", r.deer()));
+    }
+
+    private static double doubleParam(Map<String, String> params, String name, double defaultValue)
+    {
+        String value = params.get(name);
+        return value == null ? defaultValue : Double.parseDouble(value);
+    }
+
+    private static int parseId(String text)
+    {
+        try {
+            return Integer.parseInt(text);
+        }
+        catch(NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    public enum JobState { QUEUED, RUNNING, DONE, FAILED }
+
+    /**
+     * One submitted run and the population counts it has produced so far.
+     */
+    public static class Job
+    {
+        private final int id, depth, width, steps;
+        private final long seed;
+        private final PopulationDensities densities;
+        private final SensingRadii radii;
+        // Guards the fields below; virtual threads wait on the condition
+        // without pinning their carrier, unlike with a monitor.
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition changed = lock.newCondition();
+        private final List<String> lines = new ArrayList<>();
+        private JobState state = JobState.QUEUED;
+        private String summary = "";
+
+        Job(int id, int depth, int width, long seed, int steps, PopulationDensities densities, SensingRadii radii)
+        {
+            this.id = id;
+            this.depth = depth;
+            this.width = width;
+            this.seed = seed;
+            this.steps = steps;
+            this.densities = densities;
+            this.radii = radii;
+        }
+
+        public int getId()
+        {
+            return id;
+        }
+
+        public JobState getState()
+        {
+            lock.lock();
+            try {
+                return state;
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        public String getSummary()
+        {
+            lock.lock();
+            try {
+                return summary;
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        void setSummary(String summary)
+        {
+            lock.lock();
+            try {
+                this.summary = summary;
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        void setState(JobState state)
+        {
+            lock.lock();
+            try {
+                this.state = state;
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        void finish(JobState state)
+        {
+            lock.lock();
+            try {
+                this.state = state;
+                changed.signalAll();
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        void record(int step, Field field)
+        {
+            int[] counts = field.getPopulationCounts();
+            String line = step + "\t" + counts[Species.MOUSE.ordinal()] + "\t" + counts[Species.OWL.ordinal()]
+                          + "\t" + counts[Species.CAT.ordinal()] + "\t" + counts[Species.WOLF.ordinal()]
+                          + "\t" + counts[Species.DEER.ordinal()];
+            lock.lock();
+            try {
+                lines.add(line);
+                changed.signalAll();
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        String lastLine()
+        {
+            lock.lock();
+            try {
+                return lines.isEmpty() ? "" : lines.get(lines.size() - 1);
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Wait until there are lines after the given index.
+         * @return The new lines, or an empty list once the job has finished.
+         */
+        List<String> awaitLines(int from) throws InterruptedException
+        {
+            lock.lock();
+            try {
+                while(lines.size() <= from && (state == JobState.QUEUED || state == JobState.RUNNING)) {
+                    changed.await();
+                }
+                return new ArrayList<>(lines.subList(Math.min(from, lines.size()), lines.size()));
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        SimulationService service = new SimulationService(port);
+        service.start();
+        System.out.println("Simulation service listening on http://localhost:" + service.getPort() + "/jobs");
+    }
+}
@@ -1,4 +1,9 @@
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class Simulator
 {
@@ -11,13 +16,43 @@ public class Simulator
     private static final double DEER_CREATION_PROBABILITY = 0.05; 
     private static final double PLANT_CREATION_PROBABILITY = 1; 
     private static final double TRAP_CREATION_PROBABILITY = 0.0007; 
-    private static final double EARTHQUAKE_CREATION_PROBABILITY = 0.05; 
-    private static final int DEFORESTATION_INTERVAL = 3;
+    static final double EARTHQUAKE_CREATION_PROBABILITY = 0.05;
+    static final int DEFORESTATION_INTERVAL = 3;
+    // The version of the model, part of the key of cached results. Bump it
+    // whenever a change alters what a seeded run produces.
+    static final int ENGINE_VERSION = 4;
+    // Runs the phases of steps that overlap the step thread's own work.
+    private static final ExecutorService PHASES = Executors.newCachedThreadPool(task -> {
+        Thread thread = new Thread(task, "step-phase");
+        thread.setDaemon(true);
+        return thread;
+    });
+    static final PopulationDensities DEFAULT_DENSITIES =
+        new PopulationDensities(TRAP_CREATION_PROBABILITY, OWL_CREATION_PROBABILITY,
+                                MOUSE_CREATION_PROBABILITY, CAT_CREATION_PROBABILITY,
+                                WOLF_CREATION_PROBABILITY, DEER_CREATION_PROBABILITY,
+                                PLANT_CREATION_PROBABILITY);
 
     private Field field;
     private int step;
     private final SimulatorView view;
     private final Random rand;
+    // What the shared generator draws from while this simulation steps,
+    // or null to leave the thread's own stream in place.
+    private final Random stream;
+    private final PopulationDensities densities;
+    private final List<SimulationObserver> observers = new ArrayList<>();
+    // The state hash after each step; index 0 is the populated field.
+    private final List<Long> hashHistory = new ArrayList<>();
+    private final PopulationAnalytics analytics = new PopulationAnalytics();
+    private Heatmaps heatmaps;
+    private EventBus events;
+    // Whether the independent phases of a step run on other threads.
+    private boolean concurrentPhases;
+    // The latest published snapshot, or null; see setSnapshots.
+    private volatile WorldSnapshot snapshot;
+    private boolean publishSnapshots;
+    private final Object snapshotLock = new Object();
 
     public Simulator()
     {
@@ -25,6 +60,28 @@ public class Simulator
     }
     
     public Simulator(int depth, int width)
+    {
+        this(depth, width, new Random(), null, DEFAULT_DENSITIES, true);
+    }
+
+    /**
+     * Create a reproducible simulation.
+     * @param depth Depth of the field.
+     * @param width Width of the field.
+     * @param seed Seeds both the simulator and the shared generator it
+     *             draws the seeds of the population and of every step
+     *             from, so the same seed gives the same run.
+     * @param densities The creation probabilities used to populate the field.
+     * @param visual Whether to show the run in a window; a headless
+     *               simulation prints nothing and does not pause between steps.
+     */
+    public Simulator(int depth, int width, long seed, PopulationDensities densities, boolean visual)
+    {
+        this(depth, width, new Random(seed), new Random(seed), densities, visual);
+    }
+
+    private Simulator(int depth, int width, Random rand, Random stream,
+                      PopulationDensities densities, boolean visual)
     {
         if(width <= 0 || depth <= 0) {
             System.out.println("The dimensions must be >= zero.");
@@ -34,12 +91,266 @@ public class Simulator
         }
         
         field = new Field(depth, width);
-        view = new SimulatorView(depth, width);
-        rand = new Random();
+        view = visual ? new SimulatorView(depth, width) : null;
+        this.rand = rand;
+        this.stream = stream;
+        this.densities = densities;
+        observers.add(analytics);
+
+        // As reset, without calling the overridable method here.
+        attach();
+        populate();
+        restart();
+    }
+
+    /**
+     * Branch a headless copy of this simulation at its current step, to
+     * explore a what-if without disturbing this run. The fork shares the
+     * plant state copy-on-write, so it costs memory only for what either
+     * run changes afterwards; it starts with the hash history so far but
+     * fresh analytics and no heatmaps, events or observers.
+     * Both runs may then be stepped on different threads. Call between
+     * steps.
+     * @param seed Seeds the fork's random streams.
+     * @return The fork.
+     */
+    public Simulator fork(long seed)
+    {
+        Random seeds = new Random(seed);
+        return fork(new Random(seeds.nextLong()), new Random(seeds.nextLong()));
+    }
+
+    /**
+     * Branch with the given generators; a fork given copies of this
+     * simulation's generators replays its future exactly.
+     */
+    Simulator fork(Random rand, Random stream)
+    {
+        return new Simulator(this, rand, stream);
+    }
+
+    private Simulator(Simulator parent, Random rand, Random stream)
+    {
+        field = parent.field.fork();
+        step = parent.step;
+        view = null;
+        this.rand = rand;
+        this.stream = stream;
+        densities = parent.densities;
+        hashHistory.addAll(parent.hashHistory);
+        observers.add(analytics);
+        analytics.record(step, field.getPopulationCounts());
+    }
+
+    /**
+     * Point the shared generator, the heatmaps and the event bus of the
+     * calling thread at this run, whichever thread steps it.
+     */
+    private void attach()
+    {
+        if(stream != null) {
+            Randomizer.use(stream);
+        }
+        Heatmaps.attach(heatmaps);
+        if(events != null && events.isClosed()) {
+            events = null;
+        }
+        EventBus.attach(events);
+        if(events != null) {
+            events.setStep(step);
+        }
+    }
+
+    public void addObserver(SimulationObserver observer)
+    {
+        observers.add(observer);
+    }
+
+    public void removeObserver(SimulationObserver observer)
+    {
+        observers.remove(observer);
+    }
+
+    /**
+     * @return The streaming population statistics of this run.
+     */
+    public PopulationAnalytics getAnalytics()
+    {
+        return analytics;
+    }
+
+    /**
+     * @return How the field's grids were visited, per layer; see ScanStrategy.
+     */
+    public ScanStrategy getScanStrategy()
+    {
+        return field.getScanStrategy();
+    }
+
+    public Field getField()
+    {
+        return field;
+    }
+
+    public int getStep()
+    {
+        return step;
+    }
+
+    /**
+     * @return The field's state hash after each step so far, starting
+     *         with the initial population at index 0.
+     */
+    public List<Long> getHashHistory()
+    {
+        return Collections.unmodifiableList(hashHistory);
+    }
 
-        reset();
+    /**
+     * @return The number of steps since the current state last occurred
+     *         within the given window, or 0 if it did not.
+     * @param window How many previous steps to look back.
+     */
+    public int findRepeat(int window)
+    {
+        int last = hashHistory.size() - 1;
+        long current = hashHistory.get(last);
+        for(int back = 1; back <= window && back <= last; back++) {
+            if(hashHistory.get(last - back) == current) {
+                return back;
+            }
+        }
+        return 0;
     }
     
+    /**
+     * Choose how the edges of the field connect. Takes effect from the
+     * next step; the fields of later steps inherit it.
+     */
+    public void setTopology(Topology topology)
+    {
+        field.setTopology(topology);
+    }
+
+    /**
+     * Choose how far each species senses food. Takes effect from the next
+     * step; the fields of later steps inherit it.
+     */
+    public void setSensingRadii(SensingRadii radii)
+    {
+        field.setSensingRadii(radii);
+    }
+
+    /**
+     * Run the phases of a step that do not depend on each other on
+     * separate threads; see advance for which ones. The run is the same
+     * either way. Observers are then called while the view is updated.
+     */
+    public void setConcurrentPhases(boolean concurrent)
+    {
+        concurrentPhases = concurrent;
+    }
+
+    /**
+     * Publish an immutable snapshot of the world at the end of every
+     * step, starting with the current state, for readers on other
+     * threads. Taking one costs a copy of the animal and trap positions;
+     * the plants are shared copy-on-write.
+     */
+    public void setSnapshots(boolean publish)
+    {
+        publishSnapshots = publish;
+        if(publish) {
+            publishSnapshot();
+        }
+    }
+
+    /**
+     * @return The latest snapshot, or null if none has been published.
+     *         Safe to call from any thread; never waits.
+     */
+    public WorldSnapshot getSnapshot()
+    {
+        return snapshot;
+    }
+
+    /**
+     * Wait for a snapshot of a step later than the given one.
+     * @param afterStep The step the caller has already seen.
+     * @param timeoutMillis How long to wait at most.
+     * @return The latest snapshot, which is older if the wait timed out.
+     */
+    public WorldSnapshot awaitSnapshot(int afterStep, long timeoutMillis) throws InterruptedException
+    {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized(snapshotLock) {
+            long remaining = timeoutMillis;
+            while((snapshot == null || snapshot.getStep() <= afterStep) && remaining > 0) {
+                snapshotLock.wait(remaining);
+                remaining = deadline - System.currentTimeMillis();
+            }
+            return snapshot;
+        }
+    }
+
+    private void publishSnapshot()
+    {
+        WorldSnapshot latest = new WorldSnapshot(step, field);
+        synchronized(snapshotLock) {
+            snapshot = latest;
+            snapshotLock.notifyAll();
+        }
+    }
+
+    /**
+     * Start accumulating per-cell occupancy, death and birth heatmaps
+     * from the next step on.
+     * @return The heatmaps, which can be exported at any time.
+     */
+    public Heatmaps enableHeatmaps()
+    {
+        heatmaps = new Heatmaps(field.getDepth(), field.getWidth());
+        return heatmaps;
+    }
+
+    public Heatmaps getHeatmaps()
+    {
+        return heatmaps;
+    }
+
+    /**
+     * Publish births, kills, deaths, infections and earthquakes from the
+     * next step on. The caller subscribes listeners to the bus and closes
+     * it, or calls disableEvents, once the run is over; a closed bus is
+     * dropped before the next step.
+     * @return The bus.
+     */
+    public EventBus enableEvents()
+    {
+        events = new EventBus();
+        return events;
+    }
+
+    /**
+     * Close the event bus, delivering what was published, and stop
+     * publishing.
+     * @throws IllegalStateException If a listener failed; see EventBus.close.
+     */
+    public void disableEvents()
+    {
+        if(events != null) {
+            EventBus closing = events;
+            events = null;
+            EventBus.attach(null);
+            closing.close();
+        }
+    }
+
+    public EventBus getEvents()
+    {
+        return events;
+    }
+
     public void runLongSimulation()
     {
         simulate(700);
@@ -47,107 +358,256 @@ public class Simulator
          
     public void simulate(int numSteps)
     {
-        reportStats();
+        simulate(numSteps, 0);
+    }
+
+    /**
+     * Run the simulation, stopping early if the ecosystem dies out or,
+     * when cycleWindow is positive, as soon as the world returns to a
+     * state seen within the last cycleWindow steps.
+     * @param numSteps The maximum number of steps.
+     * @param cycleWindow How many steps back to look for a repeated
+     *                    state hash; 0 disables cycle detection.
+     * @return The length of the detected cycle, or 0 if none was found.
+     */
+    public int simulate(int numSteps, int cycleWindow)
+    {
+        if(view != null) {
+            reportStats();
+        }
         for(int n = 1; n <= numSteps && field.isViable(); n++) {
             simulateOneStep();
-            delay(50);       
+            if(cycleWindow > 0) {
+                int period = findRepeat(cycleWindow);
+                if(period > 0) {
+                    if(view != null) {
+                        System.out.println("State at step " + step + " repeats step " + (step - period));
+                        System.out.print(analytics.report());
+                    }
+                    return period;
+                }
+            }
+            if(view != null) {
+                delay(50);
+            }
+        }
+        if(view != null) {
+            System.out.print(analytics.report());
+            System.out.print(field.getScanStrategy().report());
         }
+        return 0;
     }
     
     public void simulateOneStep()
     {
         step++;
+        attach();
         if (step % DEFORESTATION_INTERVAL == 0){
             field.triggerDeforestation();
         }
-        Field nextFieldState = new Field(field.getCurrentDepth(), field.getCurrentWidth());
+        Field nextFieldState = field.createNext();
         Earthquake earthquake = null;
 
         if (rand.nextDouble() < EARTHQUAKE_CREATION_PROBABILITY) {
             int x = rand.nextInt(field.getCurrentDepth());
             int y = rand.nextInt(field.getCurrentWidth());
             earthquake = new Earthquake(new Location(x, y));
-            System.out.println("--------Earthquake triggered at step " + step + ". At location: " + x + ", " + y);
+            if(events != null) {
+                events.publish(EventType.CALAMITY, Species.NONE, earthquake.getRadius(), earthquake.getEpicenter());
+            }
+            if(view != null) {
+                System.out.println("--------Earthquake triggered at step " + step + ". At location: " + x + ", " + y);
+            }
         }
 
-        List<Animal> animals = field.getAnimals();
-        for (Animal anAnimal : animals) {
-            if(earthquake != null && earthquake.locationWithinCalamity(anAnimal.getLocation())) {
-                anAnimal.setDead();
-            }else{
-                anAnimal.act(field, nextFieldState);
+        Field previous = field;
+        long stepSeed = Randomizer.getRandom().nextLong();
+        advance(field, nextFieldState, earthquake, stepSeed, concurrentPhases);
+        field = nextFieldState;
+        hashHistory.add(field.getStateHash());
+        field.chooseScanModes();
+        if(publishSnapshots) {
+            publishSnapshot();
+        }
+        Earthquake calamity = earthquake;
+        Runnable recycle = () -> nextFieldState.recycleDead(previous);
+        Runnable census = () -> {
+            for(SimulationObserver observer : observers) {
+                observer.stepCompleted(step, nextFieldState, calamity);
+            }
+        };
+        Runnable snapshot = () -> {
+            if(view != null) {
+                reportStats();
+                view.showStatus(step, nextFieldState, calamity);
             }
+        };
+        if(concurrentPhases) {
+            CompletableFuture<Void> recycling = CompletableFuture.runAsync(recycle, PHASES);
+            CompletableFuture<Void> rendering = CompletableFuture.runAsync(snapshot, PHASES);
+            census.run();
+            CompletableFuture.allOf(recycling, rendering).join();
+        }
+        else {
+            recycle.run();
+            census.run();
+            snapshot.run();
         }
+    }
+
+    /**
+     * Run the animal, trap and plant phases of one step. The phases of a
+     * step, and the ones that simulateOneStep adds, depend on each other
+     * like this:
+     *
+     *   ANIMALS ---------+--> PLANTS --> COMPACT --+--> CENSUS (observers)
+     *   TRAP CARRY-OVER -+                         +--> SNAPSHOT (stats, view)
+     *                                              +--> RECYCLE (pool)
+     *
+     * and the next step's ANIMALS waits for CENSUS, SNAPSHOT and RECYCLE,
+     * since it changes the animals they read and takes from the pool.
+     *
+     * Traps never move, and the animals never look at the traps of the
+     * state being built, so the trap layer can be carried over while the
+     * animals act. Placing a trap also drops an animal that moved onto
+     * its cell from the list; that part waits for the animals.
+     *
+     * The animals act in two passes, those in the even strips of rows
+     * first and then those in the odd ones (see Field.stripParity), in
+     * the order of their cells as the animal bitmap holds them; the
+     * plants grow the same way. Each animal draws from a stream seeded
+     * for the step and its cell, so the run does not depend on the order
+     * of the entity lists, and a band of the field steps like the same
+     * rows of the whole field; see BandWorker. PLANTS still cannot overlap ANIMALS:
+     * the animals eat from the same plant layer, and plants only spread
+     * into cells without a live animal or trap.
+     *
+     * @param field The current state; only its entity lists act.
+     * @param nextFieldState The empty field to fill.
+     * @param earthquake The earthquake of this step, or null.
+     * @param seed The seed of this step's draws.
+     * @param concurrent Whether to carry the traps over on another thread.
+     */
+    private static void advance(Field field, Field nextFieldState, Earthquake earthquake, long seed,
+                                boolean concurrent)
+    {
+        CompletableFuture<Void> trapCarry = concurrent
+            ? CompletableFuture.runAsync(() -> nextFieldState.carryTraps(field), PHASES)
+            : null;
+
+        field.setPlantSeed(seed);
+        actAnimals(field, nextFieldState, 0, earthquake, seed);
+        actAnimals(field, nextFieldState, 1, earthquake, seed);
+
+        if(trapCarry != null) {
+            trapCarry.join();
+            nextFieldState.evictAnimalsOnTraps();
+        }
+        else {
+            actTraps(field, nextFieldState);
+        }
+
+        // Plants stay put, so the next state takes over the plant layer
+        // and only the plants due to grow are visited.
+        nextFieldState.adoptPlants(field);
+        if(earthquake != null) {
+            nextFieldState.destroyPlants(earthquake);
+        }
+        nextFieldState.prepareGrowth();
+        nextFieldState.growPlants(0);
+        nextFieldState.growPlants(1);
+
+        nextFieldState.compactDead();
+    }
 
+    /**
+     * Let the animals in the strips of one parity act, in the order of
+     * their cells, each drawing from a stream seeded for the step and its
+     * cell. An animal within the earthquake dies instead.
+     */
+    static void actAnimals(Field field, Field nextFieldState, int parity, Earthquake earthquake, long seed)
+    {
+        Random draws = Randomizer.keyedStream();
+        Random previous = Randomizer.use(draws);
+        try {
+            field.forEachActingAnimal(parity, anAnimal -> {
+                Location location = anAnimal.getLocation();
+                if(earthquake != null && earthquake.locationWithinCalamity(location)) {
+                    anAnimal.setDead(DeathCause.EARTHQUAKE);
+                }else{
+                    draws.setSeed(Randomizer.seedFor(seed, Randomizer.ANIMALS, location.row(), location.col()));
+                    anAnimal.act(field, nextFieldState);
+                }
+            });
+        }
+        finally {
+            Randomizer.use(previous);
+        }
+    }
+
+    /**
+     * Place the traps of a field in the next one, killing the animals
+     * that moved onto them.
+     */
+    static void actTraps(Field field, Field nextFieldState)
+    {
         List<Trap> traps = field.getTraps();
         for (Trap aTrap : traps) {
             aTrap.act(field, nextFieldState);
         }
-
-        List<Plant> plants = field.getPlants();
-        for (Plant aPlant : plants) {
-            if(earthquake != null && earthquake.locationWithinCalamity(aPlant.getLocation())) {
-                aPlant.setDead();
-            }else{
-                aPlant.act(field, nextFieldState);
-            }
-        }
-        
-        field = nextFieldState;
-        reportStats();
-        view.showStatus(step, field, earthquake);
     }
-        
+
     public void reset()
     {
-        step = 0;
+        attach();
         populate();
-        view.showStatus(step, field, null);
+        restart();
+    }
+
+    /**
+     * Start over with a field populated from the given seed rather than
+     * one drawn from the simulator's generator, as reset does. The world
+     * depends only on the seed and the densities.
+     * @param seed Seeds the population.
+     */
+    public void resetParallel(long seed)
+    {
+        attach();
+        WorldLoader.populate(field, densities, seed);
+        restart();
+    }
+
+    /**
+     * Start over with a world read from an image the size of the field;
+     * see WorldLoader for the format.
+     * @param image The image.
+     * @param seed Seeds the ages of the animals.
+     */
+    public void loadWorld(Path image, long seed) throws IOException
+    {
+        attach();
+        WorldLoader.load(field, image, seed);
+        restart();
+    }
+
+    private void restart()
+    {
+        step = 0;
+        hashHistory.clear();
+        hashHistory.add(field.getStateHash());
+        field.chooseScanModes();
+        analytics.record(step, field.getPopulationCounts());
+        if(publishSnapshots) {
+            publishSnapshot();
+        }
+        if(view != null) {
+            view.showStatus(step, field, null);
+        }
     }
     
     private void populate()
     {
-        Random rand = Randomizer.getRandom();
-        field.clear();
-        for(int row = 0; row < field.getDepth(); row++) {
-            for(int col = 0; col < field.getWidth(); col++) {
-                if(rand.nextDouble() <= TRAP_CREATION_PROBABILITY) {
-                    Location location = new Location(row, col);
-                    Trap trap = new Trap(location);
-                    field.placeTrap(trap, location);
-                }
-                else if(rand.nextDouble() <= OWL_CREATION_PROBABILITY) {
-                    Location location = new Location(row, col);
-                    Owl owl = new Owl(true, location);
-                    field.placeAnimal(owl, location);
-                }
-                else if(rand.nextDouble() <= MOUSE_CREATION_PROBABILITY) {
-                    Location location = new Location(row, col);
-                    Mouse mouse = new Mouse(true, location);
-                    field.placeAnimal(mouse, location);
-                }
-                else if(rand.nextDouble() <= CAT_CREATION_PROBABILITY) {
-                    Location location = new Location(row, col);
-                    Cat cat = new Cat(true, location);
-                    field.placeAnimal(cat, location);
-                }
-                else if(rand.nextDouble() <= WOLF_CREATION_PROBABILITY) {
-                    Location location = new Location(row, col);
-                    Wolf wolf = new Wolf(true, location);
-                    field.placeAnimal(wolf, location);
-                }
-                else if(rand.nextDouble() <= DEER_CREATION_PROBABILITY) {
-                    Location location = new Location(row, col);
-                    Deer deer = new Deer(true, location);
-                    field.placeAnimal(deer, location);
-                }
-                else if(rand.nextDouble() <= PLANT_CREATION_PROBABILITY) {
-                    Location location = new Location(row, col);
-                    Plant plant = new Plant(location);
-                    field.placePlant(plant, location);
-                }
-            }
-        }
+        WorldLoader.populate(field, densities, Randomizer.getRandom().nextLong());
     }
 
     public void reportStats()
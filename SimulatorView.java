@@ -1,8 +1,12 @@
 import java.awt.*;
+import java.awt.event.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
 import javax.swing.*;
 
-public class SimulatorView extends JFrame {
+public final class SimulatorView extends JFrame {
 
     private static final Color EMPTY_COLOR = Color.white;
     private static final Color UNKNOWN_COLOR = Color.gray;
@@ -13,9 +17,21 @@ public class SimulatorView extends JFrame {
     private final JLabel stepLabel;
     private final JLabel population;
     private final FieldView fieldView;
+    // What each cell shows, with a zoomed-out pyramid; also the lock for rendering.
+    private final ViewPyramid pyramid;
     
     private final Map<Class<?>, Color> colors;
     private final FieldStats stats;
+    // The latest status not yet shown; an event is only posted to the
+    // event dispatch thread when there was none, so a fast simulation
+    // skips frames rather than queueing them.
+    private final AtomicReference<Status> pending = new AtomicReference<>();
+
+    /**
+     * What a step leaves for the event dispatch thread to show, read from
+     * the field on the thread that stepped it.
+     */
+    private record Status(int step, String population, int currentDepth, int currentWidth, Earthquake earthquake) {}
 
     public SimulatorView(int height, int width)
     {
@@ -35,6 +51,7 @@ public class SimulatorView extends JFrame {
         
         setLocation(100, 50);
         
+        pyramid = new ViewPyramid(height, width);
         fieldView = new FieldView(height, width);
 
         Container contents = getContentPane();
@@ -61,49 +78,38 @@ public class SimulatorView extends JFrame {
         }
     }
 
+    /**
+     * Show the state of a field after a step. The pyramid is brought up to
+     * date here, on the thread that stepped the field, since the field may
+     * change once this returns; the labels, the image and the repaint are
+     * left to the event dispatch thread, so the image is only ever drawn
+     * and painted there.
+     */
     public void showStatus(int step, Field field, Earthquake earthquake)
     {
-        if(!isVisible()) {
-            setVisible(true);
-        }
-            
-        stepLabel.setText(STEP_PREFIX + step);
         stats.reset();
-        
-        fieldView.preparePaint();
-
-        // Loop through all locations in the field
-        for(int row = 0; row < field.getDepth(); row++) {
-            for(int col = 0; col < field.getWidth(); col++) {
-                Location loc = new Location(row, col);
-                Object animal = field.getAnimalAt(loc);
-                Plant plant = field.getPlantAt(loc);
-                Trap trap = field.getTrapAt(loc);
-                if (row > field.getCurrentDepth() || col > field.getCurrentWidth()){
-                    fieldView.drawMark(col, row, Color.BLACK);
-                }
-                else if (earthquake != null && earthquake.locationWithinCalamity(loc)) {
-                    fieldView.drawMark(col, row, EARTHQUAKE_COLOR);  // Mark affected locations in red
-                } else {
-                    if(trap != null){
-                        fieldView.drawMark(col, row, getColor(Trap.class));
-                    }
-                    else if(animal != null) {
-                        stats.incrementCount(animal.getClass());
-                        fieldView.drawMark(col, row, getColor(animal.getClass()));
-                    }
-                    else if(plant != null){
-                        fieldView.drawMark(col, row, getColor(Plant.class));
-                    }
-                    else {
-                        fieldView.drawMark(col, row, EMPTY_COLOR);
-                    }
-                }
-            }
+
+        // Only the entities are visited; the viewport draws from the pyramid.
+        synchronized(pyramid) {
+            pyramid.update(field);
+        }
+        Status status = new Status(step, stats.getPopulationDetails(field),
+                                   field.getCurrentDepth(), field.getCurrentWidth(), earthquake);
+        if(pending.getAndSet(status) == null) {
+            SwingUtilities.invokeLater(this::showPending);
         }
-        stats.countFinished();
+    }
 
-        population.setText(POPULATION_PREFIX + stats.getPopulationDetails(field));
+    private void showPending()
+    {
+        Status status = pending.getAndSet(null);
+        if(!isVisible()) {
+            setVisible(true);
+        }
+        stepLabel.setText(STEP_PREFIX + status.step());
+        population.setText(POPULATION_PREFIX + status.population());
+        fieldView.setOverlay(status.currentDepth(), status.currentWidth(), status.earthquake());
+        fieldView.render();
         fieldView.repaint();
     }
 
@@ -112,64 +118,225 @@ public class SimulatorView extends JFrame {
         return stats.isViable(field);
     }
 
+    /**
+     * A viewport onto the field that can be panned by dragging and zoomed
+     * with the mouse wheel. Only the visible region is rendered, one pass
+     * over the pixels of the panel. Zoomed in, each cell covers a square of
+     * pixels; zoomed out, each pixel shows a block of cells from the
+     * pyramid, in the colour of its most common occupant faded towards
+     * white by how empty the block is.
+     */
     private class FieldView extends JPanel
     {
         private final int GRID_VIEW_SCALING_FACTOR = 6;
+        // The largest panel asked for initially; bigger worlds start zoomed out.
+        private final int MAX_VIEW_SIZE = 900;
+        private final int MAX_CELL_SIZE = 64;
 
         private final int gridWidth, gridHeight;
-        private int xScale, yScale;
-        Dimension size;
-        private Graphics g;
-        private Image fieldImage;
+        // Pixels per cell while level is 0.
+        private int cellSize;
+        // While above 0, each pixel shows a block of 2^level x 2^level cells.
+        private int level;
+        // The world position, in cells, of the top left corner of the view.
+        private double originRow, originCol;
+        private int currentDepth, currentWidth;
+        private Earthquake earthquake;
+
+        private BufferedImage fieldImage;
+        private int[] pixels;
+        private int[] viewRows = new int[0];
+        private int[] viewCols = new int[0];
+        private int dragX, dragY;
 
         public FieldView(int height, int width)
         {
             gridHeight = height;
             gridWidth = width;
-            size = new Dimension(0, 0);
+            currentDepth = height;
+            currentWidth = width;
+            cellSize = GRID_VIEW_SCALING_FACTOR;
+            while(cellSize > 1 && Math.max(gridWidth, gridHeight) * cellSize > MAX_VIEW_SIZE) {
+                cellSize--;
+            }
+            while(level < pyramid.getLevels() && Math.max(gridWidth, gridHeight) >> level > MAX_VIEW_SIZE) {
+                level++;
+            }
+
+            MouseAdapter mouse = new MouseAdapter() {
+                @Override
+                public void mousePressed(MouseEvent e)
+                {
+                    dragX = e.getX();
+                    dragY = e.getY();
+                }
+
+                @Override
+                public void mouseDragged(MouseEvent e)
+                {
+                    originCol -= (e.getX() - dragX) * cellsPerPixel();
+                    originRow -= (e.getY() - dragY) * cellsPerPixel();
+                    dragX = e.getX();
+                    dragY = e.getY();
+                    render();
+                    repaint();
+                }
+
+                @Override
+                public void mouseWheelMoved(MouseWheelEvent e)
+                {
+                    zoom(e.getWheelRotation() < 0, e.getX(), e.getY());
+                    render();
+                    repaint();
+                }
+            };
+            addMouseListener(mouse);
+            addMouseMotionListener(mouse);
+            addMouseWheelListener(mouse);
         }
 
         public Dimension getPreferredSize()
         {
-            return new Dimension(gridWidth * GRID_VIEW_SCALING_FACTOR,
-                                 gridHeight * GRID_VIEW_SCALING_FACTOR);
+            double scale = 1 / cellsPerPixel();
+            return new Dimension((int) Math.ceil(gridWidth * scale), (int) Math.ceil(gridHeight * scale));
+        }
+
+        public void setOverlay(int currentDepth, int currentWidth, Earthquake earthquake)
+        {
+            this.currentDepth = currentDepth;
+            this.currentWidth = currentWidth;
+            this.earthquake = earthquake;
         }
 
-        public void preparePaint()
+        /**
+         * Zoom in or out by a factor of two, keeping the cell under the
+         * given pixel in place.
+         */
+        private void zoom(boolean in, int x, int y)
         {
-            if(! size.equals(getSize())) {  
-                size = getSize();
-                fieldImage = fieldView.createImage(size.width, size.height);
-                g = fieldImage.getGraphics();
-
-                xScale = size.width / gridWidth;
-                if(xScale < 1) {
-                    xScale = GRID_VIEW_SCALING_FACTOR;
+            double row = originRow + y * cellsPerPixel();
+            double col = originCol + x * cellsPerPixel();
+            if(in) {
+                if(level > 0) {
+                    level--;
                 }
-                yScale = size.height / gridHeight;
-                if(yScale < 1) {
-                    yScale = GRID_VIEW_SCALING_FACTOR;
+                else {
+                    cellSize = Math.min(MAX_CELL_SIZE, cellSize * 2);
+                }
+            }
+            else {
+                if(cellSize > 1) {
+                    cellSize /= 2;
+                }
+                else if(level < pyramid.getLevels()) {
+                    level++;
                 }
             }
+            originRow = row - y * cellsPerPixel();
+            originCol = col - x * cellsPerPixel();
         }
-        
-        public void drawMark(int x, int y, Color color)
+
+        private double cellsPerPixel()
+        {
+            return level > 0 ? 1 << level : 1.0 / cellSize;
+        }
+
+        /**
+         * Draw the visible region into the image. Only called on the event
+         * dispatch thread, like paintComponent; the lock keeps the pyramid
+         * from changing under it.
+         */
+        public void render()
         {
-            g.setColor(color);
-            g.fillRect(x * xScale, y * yScale, xScale-1, yScale-1);
+            synchronized(pyramid) {
+                Dimension size = getSize();
+                if(size.width <= 0 || size.height <= 0) {
+                    return;
+                }
+                if(fieldImage == null || fieldImage.getWidth() != size.width || fieldImage.getHeight() != size.height) {
+                    fieldImage = new BufferedImage(size.width, size.height, BufferedImage.TYPE_INT_RGB);
+                    pixels = ((DataBufferInt) fieldImage.getRaster().getDataBuffer()).getData();
+                    viewRows = new int[size.height];
+                    viewCols = new int[size.width];
+                }
+                // The cell (or block) under each pixel row and column.
+                for(int y = 0; y < size.height; y++) {
+                    viewRows[y] = (int) Math.floor((originRow + y * cellsPerPixel()) / (1 << level));
+                }
+                for(int x = 0; x < size.width; x++) {
+                    viewCols[x] = (int) Math.floor((originCol + x * cellsPerPixel()) / (1 << level));
+                }
+                int[] palette = palette();
+                for(int y = 0; y < size.height; y++) {
+                    int row = viewRows[y];
+                    for(int x = 0; x < size.width; x++) {
+                        int col = viewCols[x];
+                        int rgb;
+                        if(level == 0) {
+                            rgb = palette[pyramid.getCell(row, col)];
+                        }
+                        else {
+                            int category = pyramid.getDominant(level, row, col);
+                            rgb = fade(palette[category], pyramid.getDensity(level, row, col));
+                        }
+                        pixels[y * size.width + x] = overlay(rgb, row << level, col << level);
+                    }
+                }
+            }
+        }
+
+        /**
+         * @return The colour of a cell after marking the area outside the
+         *         world or the current bounds, and the earthquake.
+         */
+        private int overlay(int rgb, int row, int col)
+        {
+            if(row < 0 || col < 0 || row >= gridHeight || col >= gridWidth
+               || row > currentDepth || col > currentWidth) {
+                return 0;
+            }
+            if(earthquake != null) {
+                Location epicenter = earthquake.getEpicenter();
+                int radius = earthquake.getRadius();
+                if(Math.abs(row - epicenter.row()) <= radius && Math.abs(col - epicenter.col()) <= radius
+                   && earthquake.locationWithinCalamity(new Location(row, col))) {
+                    return EARTHQUAKE_COLOR.getRGB() & 0xFFFFFF;
+                }
+            }
+            return rgb;
+        }
+
+        private int[] palette()
+        {
+            int[] palette = new int[ViewPyramid.CATEGORIES];
+            palette[ViewPyramid.EMPTY] = EMPTY_COLOR.getRGB() & 0xFFFFFF;
+            palette[ViewPyramid.PLANT] = getColor(Plant.class).getRGB() & 0xFFFFFF;
+            palette[ViewPyramid.MOUSE] = getColor(Mouse.class).getRGB() & 0xFFFFFF;
+            palette[ViewPyramid.OWL] = getColor(Owl.class).getRGB() & 0xFFFFFF;
+            palette[ViewPyramid.CAT] = getColor(Cat.class).getRGB() & 0xFFFFFF;
+            palette[ViewPyramid.DEER] = getColor(Deer.class).getRGB() & 0xFFFFFF;
+            palette[ViewPyramid.WOLF] = getColor(Wolf.class).getRGB() & 0xFFFFFF;
+            palette[ViewPyramid.TRAP] = getColor(Trap.class).getRGB() & 0xFFFFFF;
+            return palette;
+        }
+
+        /**
+         * @return The colour mixed with white, keeping the given fraction of it.
+         */
+        private int fade(int rgb, double density)
+        {
+            int r = 255 - (int) ((255 - (rgb >> 16 & 0xFF)) * density);
+            int g = 255 - (int) ((255 - (rgb >> 8 & 0xFF)) * density);
+            int b = 255 - (int) ((255 - (rgb & 0xFF)) * density);
+            return r << 16 | g << 8 | b;
         }
 
         @Override
         public void paintComponent(Graphics g)
         {
+            super.paintComponent(g);
             if(fieldImage != null) {
-                Dimension currentSize = getSize();
-                if(size.equals(currentSize)) {
-                    g.drawImage(fieldImage, 0, 0, null);
-                }
-                else {
-                    g.drawImage(fieldImage, 0, 0, currentSize.width, currentSize.height, null);
-                }
+                g.drawImage(fieldImage, 0, 0, null);
             }
         }
     }
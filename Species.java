@@ -0,0 +1,51 @@
+/**
+ * Compact identifiers for the kinds of entity that can occupy a cell.
+ * The ordinal is what gets stored in primitive world layers.
+ */
+public enum Species {
+    NONE,
+    MOUSE,
+    OWL,
+    CAT,
+    WOLF,
+    DEER,
+    PLANT,
+    TRAP;
+
+    private static final Species[] VALUES = values();
+
+    /**
+     * @return The species of the given entity, or NONE for null.
+     */
+    public static Species of(Object entity)
+    {
+        return switch (entity) {
+            case Mouse mouse -> MOUSE;
+            case Owl owl -> OWL;
+            case Cat cat -> CAT;
+            case Wolf wolf -> WOLF;
+            case Deer deer -> DEER;
+            case Plant plant -> PLANT;
+            case Trap trap -> TRAP;
+            case null, default -> NONE;
+        };
+    }
+
+    public static Species fromId(int id)
+    {
+        return VALUES[id];
+    }
+
+    public byte id()
+    {
+        return (byte) ordinal();
+    }
+
+    public boolean isAnimal()
+    {
+        return switch (this) {
+            case MOUSE, OWL, CAT, WOLF, DEER -> true;
+            default -> false;
+        };
+    }
+}
@@ -0,0 +1,22 @@
+/**
+ * How the edges of the field connect.
+ */
+public enum Topology {
+    /** Cells on the edge have fewer neighbours. */
+    BOUNDED,
+    /**
+     * Opposite edges of the full field are joined, so every cell has eight
+     * neighbours. Deforestation does not shrink a torus.
+     */
+    TORUS,
+    /**
+     * Opposite edges of the current, deforested bounds are joined; the
+     * torus shrinks as deforestation moves the bounds in.
+     */
+    TORUS_WITHIN_BOUNDS;
+
+    public boolean wraps()
+    {
+        return this != BOUNDED;
+    }
+}
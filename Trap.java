@@ -1,6 +1,7 @@
-public class Trap{
+public class Trap implements FieldEntity {
 
     private Location location;
+    private int slot = -1;
     
     public Trap(Location location){
 
@@ -14,6 +15,14 @@ public class Trap{
             nextFieldState.placeTrap(this, nextLocation);
     }
 
+    /**
+     * @return A trap in the same place, for a branch of the simulation.
+     */
+    public Trap copy()
+    {
+        return new Trap(location);
+    }
+
     public Location getLocation()
     {
         return location;
@@ -24,6 +33,18 @@ public class Trap{
         this.location = location;
     }
 
+    @Override
+    public int getSlot()
+    {
+        return slot;
+    }
+
+    @Override
+    public void setSlot(int slot)
+    {
+        this.slot = slot;
+    }
+
     public void removeTrap(Location location){
         this.location = null;
     }
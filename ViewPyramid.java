@@ -0,0 +1,343 @@
+import java.util.*;
+
+/**
+ * What the view shows in each cell, plus a mipmap pyramid over it for
+ * zoomed-out rendering. Level 0 holds one category per cell; level L
+ * holds, for each block of 2^L x 2^L cells, how many of its cells are in
+ * each category. Each step only the cells whose category changed are
+ * written, and a change updates one block per level. Animals and traps
+ * are visited every step, but plants only where the plant layer reports
+ * a plant came or went, so keeping the pyramid current costs the number
+ * of animals and traps plus the plant changes, not the world size.
+ * Level 1 is not stored, since its counts would take four times the
+ * memory of all the cells and its blocks are cheap to count directly.
+ *
+ * Like the field's layers, every level is kept in chunks that are only
+ * allocated once something other than an empty cell is written to them,
+ * so memory follows the area that has been occupied, not the map size.
+ * Empty cells are not counted; a block's empty cells are its area less
+ * the cells counted.
+ */
+public class ViewPyramid {
+
+    // Cell categories. When several entities share a cell the highest
+    // priority one is shown: traps, then animals, then plants.
+    public static final int EMPTY = 0;
+    public static final int PLANT = 1;
+    public static final int MOUSE = 2;
+    public static final int OWL = 3;
+    public static final int CAT = 4;
+    public static final int DEER = 5;
+    public static final int WOLF = 6;
+    public static final int TRAP = 7;
+    public static final int CATEGORIES = 8;
+
+    // Level 0 chunks are as large as those of a ChunkedGrid.
+    private static final int CELL_SHIFT = ChunkedGrid.CHUNK_SHIFT;
+    private static final int CELL_MASK = (1 << CELL_SHIFT) - 1;
+    // Count chunks hold 16 x 16 blocks of their level.
+    private static final int BLOCK_SHIFT = 4;
+    private static final int BLOCK_MASK = (1 << BLOCK_SHIFT) - 1;
+
+    private final int depth, width;
+    // cells[chunkRow * cellChunkCols + chunkCol][(row & CELL_MASK) << CELL_SHIFT | (col & CELL_MASK)]
+    private final byte[][] cells;
+    private final int cellChunkCols;
+    // counts[L - 2][chunk][block * CATEGORIES + category] for level L >= 2,
+    // with chunks laid out like those of the cells.
+    private final int[][][] counts;
+    private final int[] countChunkCols;
+    private final int[] levelWidths;
+    private final int levels;
+
+    // The incoming category of each cell while an update is in progress,
+    // chunked like the cells.
+    private final byte[][] incoming;
+    // Cells as row << 32 | col.
+    private long[] shown = new long[64];
+    private int shownCount;
+    private long[] touched = new long[64];
+    private int touchedCount;
+    private final int[] blockCounts = new int[CATEGORIES];
+
+    public ViewPyramid(int depth, int width)
+    {
+        this.depth = depth;
+        this.width = width;
+        cellChunkCols = blocks(width, CELL_SHIFT);
+        cells = new byte[blocks(depth, CELL_SHIFT) * cellChunkCols][];
+        incoming = new byte[cells.length][];
+        int levels = 0;
+        while((Math.max(depth, width) - 1) >> levels > 0) {
+            levels++;
+        }
+        this.levels = levels;
+        levelWidths = new int[levels + 1];
+        for(int level = 0; level <= levels; level++) {
+            levelWidths[level] = blocks(width, level);
+        }
+        counts = new int[Math.max(levels - 1, 0)][][];
+        countChunkCols = new int[counts.length];
+        for(int level = 2; level <= levels; level++) {
+            countChunkCols[level - 2] = blocks(levelWidths[level], BLOCK_SHIFT);
+            counts[level - 2] = new int[blocks(blocks(depth, level), BLOCK_SHIFT) * countChunkCols[level - 2]][];
+        }
+    }
+
+    /**
+     * Bring the pyramid up to date with a field, visiting only its
+     * animals and traps, the plant cells that changed and the cells that
+     * were shown as an animal or trap before. The first update, and one
+     * after the plant layer was replaced or changed wholesale, visits
+     * every cell.
+     */
+    public void update(Field field)
+    {
+        List<Location> plantChanges = field.takePlantChanges(this);
+        touchedCount = 0;
+        for(Trap trap : field.getTraps()) {
+            offer(trap.getLocation(), TRAP);
+        }
+        for(Animal animal : field.getAnimals()) {
+            if(animal.isAlive()) {
+                offer(animal.getLocation(), categoryOf(animal));
+            }
+        }
+        if(plantChanges == null) {
+            for(int row = 0; row < depth; row++) {
+                for(int col = 0; col < width; col++) {
+                    change(row, col, Math.max(get(incoming, row, col), plantOrEmpty(field, row, col)));
+                }
+            }
+        }
+        else {
+            // Cells shown before but not offered now show what is under them.
+            for(int i = 0; i < shownCount; i++) {
+                int row = (int) (shown[i] >>> 32);
+                int col = (int) shown[i];
+                if(get(incoming, row, col) == EMPTY) {
+                    change(row, col, plantOrEmpty(field, row, col));
+                }
+            }
+            for(Location location : plantChanges) {
+                int row = location.row();
+                int col = location.col();
+                if(inside(row, col) && get(incoming, row, col) == EMPTY) {
+                    change(row, col, plantOrEmpty(field, row, col));
+                }
+            }
+            for(int i = 0; i < touchedCount; i++) {
+                int row = (int) (touched[i] >>> 32);
+                int col = (int) touched[i];
+                change(row, col, Math.max(get(incoming, row, col), plantOrEmpty(field, row, col)));
+            }
+        }
+        for(int i = 0; i < touchedCount; i++) {
+            set(incoming, (int) (touched[i] >>> 32), (int) touched[i], EMPTY);
+        }
+        long[] previous = shown;
+        shown = touched;
+        shownCount = touchedCount;
+        touched = previous;
+    }
+
+    /**
+     * @return The category of a cell, or EMPTY outside the world.
+     */
+    public int getCell(int row, int col)
+    {
+        if(!inside(row, col)) {
+            return EMPTY;
+        }
+        return get(cells, row, col);
+    }
+
+    /**
+     * @return The number of levels above the cell level.
+     */
+    public int getLevels()
+    {
+        return levels;
+    }
+
+    /**
+     * Find the most common non-empty category in a block.
+     * @param level The level, at least 1.
+     * @return The category, or EMPTY if the block is empty or outside the world.
+     */
+    public int getDominant(int level, int blockRow, int blockCol)
+    {
+        int[] levelCounts = blockCounts(level, blockRow, blockCol);
+        if(levelCounts == null) {
+            return EMPTY;
+        }
+        int base = level == 1 ? 0 : countIndex(blockRow, blockCol);
+        int dominant = EMPTY;
+        int most = 0;
+        for(int category = EMPTY + 1; category < CATEGORIES; category++) {
+            if(levelCounts[base + category] > most) {
+                dominant = category;
+                most = levelCounts[base + category];
+            }
+        }
+        return dominant;
+    }
+
+    /**
+     * @return The fraction of the cells of a block that are not empty.
+     */
+    public double getDensity(int level, int blockRow, int blockCol)
+    {
+        int[] levelCounts = blockCounts(level, blockRow, blockCol);
+        if(levelCounts == null) {
+            return 0;
+        }
+        int base = level == 1 ? 0 : countIndex(blockRow, blockCol);
+        int occupied = 0;
+        for(int category = EMPTY + 1; category < CATEGORIES; category++) {
+            occupied += levelCounts[base + category];
+        }
+        return occupied / (double) blockArea(blockRow, blockCol, level);
+    }
+
+    /**
+     * @return The array holding the counts of a block, the shared one for
+     *         level 1; null if the block is outside the world or all empty.
+     */
+    private int[] blockCounts(int level, int blockRow, int blockCol)
+    {
+        if(blockRow < 0 || blockCol < 0 || blockRow >= blocks(depth, level) || blockCol >= levelWidths[level]) {
+            return null;
+        }
+        if(level == 1) {
+            return countCells(blockRow, blockCol);
+        }
+        return counts[level - 2][countChunk(level, blockRow, blockCol)];
+    }
+
+    private boolean inside(int row, int col)
+    {
+        return row >= 0 && row < depth && col >= 0 && col < width;
+    }
+
+    private static int plantOrEmpty(Field field, int row, int col)
+    {
+        return field.hasPlant(row, col) ? PLANT : EMPTY;
+    }
+
+    private void offer(Location location, int category)
+    {
+        if(location == null || !inside(location.row(), location.col())) {
+            return;
+        }
+        int row = location.row();
+        int col = location.col();
+        int current = get(incoming, row, col);
+        if(current == EMPTY) {
+            if(touchedCount == touched.length) {
+                touched = Arrays.copyOf(touched, touchedCount * 2);
+            }
+            touched[touchedCount++] = (long) row << 32 | col;
+        }
+        if(category > current) {
+            set(incoming, row, col, category);
+        }
+    }
+
+    private void change(int row, int col, int category)
+    {
+        int old = get(cells, row, col);
+        if(old == category) {
+            return;
+        }
+        set(cells, row, col, category);
+        for(int level = 2; level <= levels; level++) {
+            int[][] levelCounts = counts[level - 2];
+            int chunk = countChunk(level, row >> level, col >> level);
+            int base = countIndex(row >> level, col >> level);
+            if(old != EMPTY) {
+                levelCounts[chunk][base + old]--;
+            }
+            if(category != EMPTY) {
+                if(levelCounts[chunk] == null) {
+                    levelCounts[chunk] = new int[CATEGORIES << (2 * BLOCK_SHIFT)];
+                }
+                levelCounts[chunk][base + category]++;
+            }
+        }
+    }
+
+    private int get(byte[][] layer, int row, int col)
+    {
+        byte[] chunk = layer[(row >> CELL_SHIFT) * cellChunkCols + (col >> CELL_SHIFT)];
+        return chunk == null ? EMPTY : chunk[(row & CELL_MASK) << CELL_SHIFT | (col & CELL_MASK)];
+    }
+
+    private void set(byte[][] layer, int row, int col, int category)
+    {
+        int index = (row >> CELL_SHIFT) * cellChunkCols + (col >> CELL_SHIFT);
+        if(layer[index] == null) {
+            if(category == EMPTY) {
+                return;
+            }
+            layer[index] = new byte[1 << (2 * CELL_SHIFT)];
+        }
+        layer[index][(row & CELL_MASK) << CELL_SHIFT | (col & CELL_MASK)] = (byte) category;
+    }
+
+    private int countChunk(int level, int blockRow, int blockCol)
+    {
+        return (blockRow >> BLOCK_SHIFT) * countChunkCols[level - 2] + (blockCol >> BLOCK_SHIFT);
+    }
+
+    /**
+     * @return Where the counts of a block start within its chunk.
+     */
+    private static int countIndex(int blockRow, int blockCol)
+    {
+        return ((blockRow & BLOCK_MASK) << BLOCK_SHIFT | (blockCol & BLOCK_MASK)) * CATEGORIES;
+    }
+
+    /**
+     * @return The category counts of a level 1 block, read from its cells
+     *         into a shared array.
+     */
+    private int[] countCells(int blockRow, int blockCol)
+    {
+        Arrays.fill(blockCounts, 0);
+        for(int row = blockRow << 1; row < Math.min(depth, (blockRow + 1) << 1); row++) {
+            for(int col = blockCol << 1; col < Math.min(width, (blockCol + 1) << 1); col++) {
+                blockCounts[get(cells, row, col)]++;
+            }
+        }
+        return blockCounts;
+    }
+
+    /**
+     * @return The number of cells of a block that lie inside the world;
+     *         blocks on the far edges may be partial.
+     */
+    private int blockArea(int blockRow, int blockCol, int level)
+    {
+        int rows = Math.min(depth, (blockRow + 1) << level) - (blockRow << level);
+        int cols = Math.min(width, (blockCol + 1) << level) - (blockCol << level);
+        return rows * cols;
+    }
+
+    private static int blocks(int cells, int level)
+    {
+        return ((cells - 1) >> level) + 1;
+    }
+
+    private static int categoryOf(Animal animal)
+    {
+        return switch (animal) {
+            case Mouse mouse -> MOUSE;
+            case Owl owl -> OWL;
+            case Cat cat -> CAT;
+            case Deer deer -> DEER;
+            case Wolf wolf -> WOLF;
+            default -> EMPTY;
+        };
+    }
+}
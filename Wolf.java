@@ -1,4 +1,3 @@
-import java.util.Iterator;
 import java.util.List;
 import java.util.Random;
 
@@ -9,6 +8,7 @@ public class Wolf extends Animal
     private static final double BREEDING_PROBABILITY = 0.25;
     private static final int MAX_LITTER_SIZE = 8;
     private static final int DEER_FOOD_VALUE = 9;
+    private static final Species[] PREY = { Species.DEER };
     private static final Random rand = Randomizer.getRandom();
     private int age;
     private int foodLevel;
@@ -16,6 +16,12 @@ public class Wolf extends Animal
     public Wolf(boolean randomAge, Location location)
     {
         super(location);
+        initState(randomAge);
+    }
+
+    @Override
+    protected final void initState(boolean randomAge)
+    {
         if(randomAge) {
             age = rand.nextInt(MAX_AGE);
         }
@@ -43,6 +49,9 @@ public class Wolf extends Animal
                 spreadDisease(currentField);
             }
             Location nextLocation = findFood(currentField);
+            if(nextLocation == null) {
+                nextLocation = huntToward(currentField, freeLocations, currentField.getSensingRadius(Species.WOLF), PREY);
+            }
             if(nextLocation == null && ! freeLocations.isEmpty()) {
                 nextLocation = freeLocations.remove(0);
             }
@@ -51,7 +60,7 @@ public class Wolf extends Animal
                 nextFieldState.placeAnimal(this, nextLocation);
             }
             else {
-                setDead();
+                setDead(DeathCause.CROWDING);
             }
         }
     }
@@ -66,11 +75,30 @@ public class Wolf extends Animal
                 '}';
     }
 
+    @Override
+    public int getAge()
+    {
+        return age;
+    }
+
+    @Override
+    public int getFoodLevel()
+    {
+        return foodLevel;
+    }
+
+    @Override
+    protected void restoreState(int age, int foodLevel)
+    {
+        this.age = age;
+        this.foodLevel = foodLevel;
+    }
+
     private void incrementAge()
     {
         age++;
         if(age > MAX_AGE) {
-            setDead();
+            setDead(DeathCause.AGE);
         }
     }
     
@@ -78,21 +106,20 @@ public class Wolf extends Animal
     {
         foodLevel--;
         if(foodLevel <= 0) {
-            setDead();
+            setDead(DeathCause.HUNGER);
         }
     }
     
     private Location findFood(Field field)
     {
         List<Location> adjacent = field.getAdjacentLocations(getLocation());
-        Iterator<Location> it = adjacent.iterator();
         Location foodLocation = null;
-        while(foodLocation == null && it.hasNext()) {
-            Location loc = it.next();
+        for(int i = 0; foodLocation == null && i < adjacent.size(); i++) {
+            Location loc = adjacent.get(i);
             Animal animal = field.getAnimalAt(loc);
             if(animal instanceof Deer deer) {
                 if(deer.isAlive()) {
-                    deer.setDead();
+                    kill(deer, loc);
                     foodLevel = DEER_FOOD_VALUE;
                     foodLocation = loc;
                 }
@@ -107,8 +134,9 @@ public class Wolf extends Animal
         if(births > 0) {
             for (int b = 0; b < births && ! freeLocations.isEmpty(); b++) {
                 Location loc = freeLocations.remove(0);
-                Wolf young = new Wolf(false, loc);
+                Animal young = nextFieldState.getPool().newborn(Species.WOLF, loc);
                 nextFieldState.placeAnimal(young, loc);
+                recordBirth(loc);
             }
         }
     }
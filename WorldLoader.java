@@ -0,0 +1,255 @@
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Fills a field with a new world, either at random or from an image.
+ * This is how every simulation is populated, so large fields do not
+ * take longer to populate than the first steps of the run.
+ *
+ * Every row draws from its own stream, keyed by Randomizer.seedFor on the
+ * seed and the row number, so rows can be generated on any number of
+ * threads, or by the band that owns them, and the same seed still gives
+ * the same world. A random world takes a single draw per cell to choose
+ * its occupant, with the distribution of the densities' cascade.
+ *
+ * In an image each pixel is one cell, coloured as the view colours its
+ * species by default; white is empty. Animals loaded from an image get
+ * random ages from the row streams, so the seed matters there too.
+ */
+public class WorldLoader {
+
+    // Rows generated in parallel before being installed in order; bounds
+    // the entities held outside the field at once.
+    private static final int BAND_ROWS = ChunkedGrid.CHUNK_SIZE;
+    // Indexed by Species ordinal.
+    private static final Color[] COLORS = {
+        Color.white, Color.orange, Color.magenta, Color.cyan,
+        Color.lightGray, Color.yellow, Color.green, Color.black
+    };
+    // The order in which PopulationDensities cascades over the species.
+    private static final Species[] CASCADE = {
+        Species.TRAP, Species.OWL, Species.MOUSE, Species.CAT,
+        Species.WOLF, Species.DEER, Species.PLANT
+    };
+
+    private WorldLoader()
+    {
+    }
+
+    /**
+     * Clear a field and populate it at random.
+     * @param field The field to fill.
+     * @param densities The creation probabilities.
+     * @param seed Seeds the row streams.
+     */
+    public static void populate(Field field, PopulationDensities densities, long seed)
+    {
+        field.clear();
+        fill(field, 0, field.getDepth(), seed, chooser(densities));
+    }
+
+    /**
+     * Populate some rows of a field at random, as populate would; the
+     * rest of the field is left alone.
+     * @param firstRow The first row to fill.
+     * @param endRow The row after the last to fill.
+     */
+    static void populateRows(Field field, int firstRow, int endRow, PopulationDensities densities, long seed)
+    {
+        fill(field, firstRow, endRow, seed, chooser(densities));
+    }
+
+    private static CellChooser chooser(PopulationDensities densities)
+    {
+        double[] thresholds = thresholds(densities);
+        return (row, col, rand) -> {
+            double draw = rand.nextDouble();
+            for(int i = 0; i < CASCADE.length; i++) {
+                if(draw < thresholds[i]) {
+                    return CASCADE[i];
+                }
+            }
+            return Species.NONE;
+        };
+    }
+
+    /**
+     * Clear a field and fill it from an image of the same size.
+     * @param field The field to fill.
+     * @param image A PNG or other image ImageIO can read.
+     * @param seed Seeds the ages of the animals.
+     * @throws IllegalArgumentException if the image does not match the
+     *         field's size or has a pixel of no species' colour; the field
+     *         is then left untouched.
+     */
+    public static void load(Field field, Path image, long seed) throws IOException
+    {
+        BufferedImage picture = ImageIO.read(image.toFile());
+        if(picture == null) {
+            throw new IOException("Not a readable image: " + image);
+        }
+        int depth = field.getDepth();
+        int width = field.getWidth();
+        if(picture.getHeight() != depth || picture.getWidth() != width) {
+            throw new IllegalArgumentException("The image is " + picture.getHeight() + "x" + picture.getWidth()
+                                               + " but the field is " + depth + "x" + width);
+        }
+        Map<Integer, Species> species = new HashMap<>();
+        for(Species kind : Species.values()) {
+            species.put(COLORS[kind.ordinal()].getRGB() & 0xFFFFFF, kind);
+        }
+        // Check every pixel before touching the field, a row at a time;
+        // the rows are then read again as they are generated.
+        int[] pixels = new int[width];
+        for(int row = 0; row < depth; row++) {
+            picture.getRGB(0, row, width, 1, pixels, 0, width);
+            for(int col = 0; col < width; col++) {
+                if(!species.containsKey(pixels[col] & 0xFFFFFF)) {
+                    throw new IllegalArgumentException(String.format("Unknown colour #%06x at %d, %d",
+                                                                     pixels[col] & 0xFFFFFF, row, col));
+                }
+            }
+        }
+        field.clear();
+        fill(field, 0, depth, seed, (row, col, rand) -> species.get(picture.getRGB(col, row) & 0xFFFFFF));
+    }
+
+    /**
+     * Write a field as an image that load reads back. Where a cell holds
+     * several entities the trap wins over the animal, and the animal
+     * over the plant.
+     */
+    public static void save(Field field, Path image) throws IOException
+    {
+        BufferedImage picture = new BufferedImage(field.getWidth(), field.getDepth(), BufferedImage.TYPE_INT_RGB);
+        int empty = COLORS[Species.NONE.ordinal()].getRGB();
+        for(int row = 0; row < field.getDepth(); row++) {
+            for(int col = 0; col < field.getWidth(); col++) {
+                picture.setRGB(col, row, empty);
+            }
+        }
+        field.forEachPlant(plant -> paint(picture, plant.getLocation(), Species.PLANT));
+        for(Animal animal : field.getAnimals()) {
+            if(animal.isAlive()) {
+                paint(picture, animal.getLocation(), Species.of(animal));
+            }
+        }
+        for(Trap trap : field.getTraps()) {
+            paint(picture, trap.getLocation(), Species.TRAP);
+        }
+        ImageIO.write(picture, "png", image.toFile());
+    }
+
+    /**
+     * @return The colour of a species in images, as 0xRRGGBB.
+     */
+    static int rgb(Species species)
+    {
+        return COLORS[species.ordinal()].getRGB() & 0xFFFFFF;
+    }
+
+    private static void paint(BufferedImage picture, Location location, Species species)
+    {
+        if(location.row() < picture.getHeight() && location.col() < picture.getWidth()) {
+            picture.setRGB(location.col(), location.row(), COLORS[species.ordinal()].getRGB());
+        }
+    }
+
+    /**
+     * @return The cumulative probability of each species of the cascade
+     *         filling a cell, so one uniform draw chooses among them.
+     */
+    private static double[] thresholds(PopulationDensities densities)
+    {
+        double[] probabilities = {
+            densities.trap(), densities.owl(), densities.mouse(), densities.cat(),
+            densities.wolf(), densities.deer(), densities.plant()
+        };
+        double[] thresholds = new double[CASCADE.length];
+        double reached = 0, remaining = 1;
+        for(int i = 0; i < CASCADE.length; i++) {
+            reached += remaining * probabilities[i];
+            remaining *= 1 - probabilities[i];
+            thresholds[i] = reached;
+        }
+        return thresholds;
+    }
+
+    private static void fill(Field field, int firstRow, int endRow, long seed, CellChooser chooser)
+    {
+        int width = field.getWidth();
+        Object[][] band = new Object[BAND_ROWS][];
+        for(int first = firstRow; first < endRow; first += BAND_ROWS) {
+            int start = first;
+            int rows = Math.min(BAND_ROWS, endRow - first);
+            IntStream.range(0, rows).parallel()
+                     .forEach(i -> band[i] = generateRow(start + i, width, seed, chooser));
+            // The field is not thread-safe, so the rows go in one by one.
+            for(int i = 0; i < rows; i++) {
+                field.fillRow(band[i]);
+                band[i] = null;
+            }
+        }
+    }
+
+    private static Object[] generateRow(int row, int width, long seed, CellChooser chooser)
+    {
+        Random rand = Randomizer.keyedStream();
+        rand.setSeed(Randomizer.seedFor(seed, Randomizer.POPULATION, row, 0));
+        // The animals draw their ages from the shared generator.
+        Random previous = Randomizer.use(rand);
+        try {
+            Object[] entities = new Object[width];
+            for(int col = 0; col < width; col++) {
+                Species species = chooser.choose(row, col, rand);
+                if(species != Species.NONE) {
+                    entities[col] = create(species, new Location(row, col));
+                }
+            }
+            return entities;
+        }
+        finally {
+            Randomizer.use(previous);
+        }
+    }
+
+    private static Object create(Species species, Location location)
+    {
+        return switch (species) {
+            case MOUSE -> new Mouse(true, location);
+            case OWL -> new Owl(true, location);
+            case CAT -> new Cat(true, location);
+            case WOLF -> new Wolf(true, location);
+            case DEER -> new Deer(true, location);
+            case PLANT -> new Plant(location);
+            case TRAP -> new Trap(location);
+            case NONE -> null;
+        };
+    }
+
+    /**
+     * Decides what a cell starts with.
+     */
+    private interface CellChooser {
+        Species choose(int row, int col, Random rand);
+    }
+
+    /**
+     * Write a random world to an image, to be loaded by later runs.
+     * Usage: java WorldLoader world.png depth width [seed]
+     */
+    public static void main(String[] args) throws IOException
+    {
+        int depth = Integer.parseInt(args[1]);
+        int width = Integer.parseInt(args[2]);
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 1111;
+        Field field = new Field(depth, width);
+        populate(field, Simulator.DEFAULT_DENSITIES, seed);
+        save(field, Path.of(args[0]));
+    }
+}
@@ -0,0 +1,177 @@
+import java.util.Arrays;
+
+/**
+ * An immutable view of the world as it was at the end of one step, for
+ * readers on other threads: the view, exporters, analytics or a remote
+ * viewer. Any number of threads may read a snapshot while the simulation
+ * goes on, without locks on either side.
+ *
+ * Nothing is copied per entity. The snapshot forks the occupancy bitmaps
+ * of the plants, the traps and each animal species, which share their
+ * chunks with the live field until the simulation next writes to one,
+ * and the live side then copies that chunk. Taking a snapshot therefore
+ * costs a few arrays per row of chunks, whatever the population. Old
+ * snapshots are reclaimed by the garbage collector once the last reader
+ * drops them.
+ */
+public class WorldSnapshot {
+
+    private final int step;
+    private final int depth, width;
+    private final int currentDepth, currentWidth;
+    private final long stateHash;
+    // The live animals of each species, indexed by Species ordinal; null
+    // for the species that are not animals.
+    private final OccupancyBitmap[] animals;
+    private final OccupancyBitmap traps;
+    private final OccupancyBitmap plants;
+    private final int plantCount;
+    // Counted from the bitmaps by the first reader that asks.
+    private volatile int[] populationCounts;
+
+    /**
+     * Take a snapshot of a field between steps.
+     * @param step The step the field is the result of.
+     */
+    public WorldSnapshot(int step, Field field)
+    {
+        this.step = step;
+        depth = field.getDepth();
+        width = field.getWidth();
+        currentDepth = field.getCurrentDepth();
+        currentWidth = field.getCurrentWidth();
+        stateHash = field.getStateHash();
+        animals = field.forkAnimalBits();
+        traps = field.forkTrapBits();
+        plants = field.forkPlantBits();
+        plantCount = field.getPlantCount();
+    }
+
+    /**
+     * @return The version of the snapshot: the step it shows.
+     */
+    public int getStep()
+    {
+        return step;
+    }
+
+    public int getDepth()
+    {
+        return depth;
+    }
+
+    public int getWidth()
+    {
+        return width;
+    }
+
+    /**
+     * @return The depth of the habitable area, which deforestation shrinks.
+     */
+    public int getCurrentDepth()
+    {
+        return currentDepth;
+    }
+
+    public int getCurrentWidth()
+    {
+        return currentWidth;
+    }
+
+    public long getStateHash()
+    {
+        return stateHash;
+    }
+
+    /**
+     * @return The number of live animals.
+     */
+    public int getAnimalCount()
+    {
+        return Arrays.stream(getPopulationCounts()).sum();
+    }
+
+    /**
+     * @return The species of the live animal in a cell, or NONE.
+     */
+    public Species getAnimalAt(int row, int col)
+    {
+        for(Species species : Species.values()) {
+            if(species.isAnimal() && animals[species.ordinal()].get(row, col)) {
+                return species;
+            }
+        }
+        return Species.NONE;
+    }
+
+    /**
+     * Visit every cell with a live animal of a species, a word of the
+     * bitmap at a time.
+     */
+    public void forEachAnimal(Species species, OccupancyBitmap.CellVisitor action)
+    {
+        if(!species.isAnimal()) {
+            throw new IllegalArgumentException("Not an animal species: " + species);
+        }
+        animals[species.ordinal()].forEachSet(action);
+    }
+
+    public int getTrapCount()
+    {
+        return traps.count();
+    }
+
+    public boolean isTrap(int row, int col)
+    {
+        return traps.get(row, col);
+    }
+
+    public void forEachTrap(OccupancyBitmap.CellVisitor action)
+    {
+        traps.forEachSet(action);
+    }
+
+    public int getPlantCount()
+    {
+        return plantCount;
+    }
+
+    public boolean isPlant(int row, int col)
+    {
+        return plants.get(row, col);
+    }
+
+    /**
+     * Visit every cell with a plant, a word of the bitmap at a time.
+     */
+    public void forEachPlant(OccupancyBitmap.CellVisitor action)
+    {
+        plants.forEachSet(action);
+    }
+
+    /**
+     * Count the live animals of each species.
+     * @return Counts indexed by Species ordinal, as Field.getPopulationCounts.
+     */
+    public int[] getPopulationCounts()
+    {
+        int[] counts = populationCounts;
+        if(counts == null) {
+            counts = new int[Species.values().length];
+            for(Species species : Species.values()) {
+                if(species.isAnimal()) {
+                    counts[species.ordinal()] = animals[species.ordinal()].count();
+                }
+            }
+            populationCounts = counts;
+        }
+        return counts.clone();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "WorldSnapshot[step " + step + ", " + getAnimalCount() + " animals, " + plantCount
+               + " plants, " + getTrapCount() + " traps, populations " + Arrays.toString(getPopulationCounts()) + "]";
+    }
+}
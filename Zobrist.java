@@ -0,0 +1,35 @@
+/**
+ * Zobrist keys for (species, cell) pairs. The state hash of a field is
+ * the XOR of the keys of everything in it, so placing or removing an
+ * entity updates the hash with a single XOR.
+ *
+ * Keys are derived from the coordinates with a fixed mixing function
+ * rather than looked up in a table, so they cost no memory and are the
+ * same in every process and for every world size.
+ */
+public class Zobrist {
+
+    private static final long SEED = 0x5DEECE66DL;
+
+    private Zobrist()
+    {
+    }
+
+    /**
+     * @return The key of the given species occupying the given cell.
+     */
+    public static long key(Species species, Location location)
+    {
+        long h = SEED + species.ordinal() * 0x9E3779B97F4A7C15L;
+        h = mix(h ^ location.row());
+        return mix(h ^ ((long) location.col() << 32));
+    }
+
+    // The SplitMix64 finaliser.
+    private static long mix(long z)
+    {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}